@@ -8,6 +8,7 @@ import sg.edu.nus.comp.codis.ast.theory.Equal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -18,8 +19,7 @@ public class AssignmentTestCase implements TestCase {
     private Node outputValue;
 
     public AssignmentTestCase(Map<ProgramVariable, ? extends Node> assignment, Node outputValue) {
-        objectCounter = classCounter;
-        classCounter++;
+        objectCounter = classCounter.getAndIncrement();
 
         this.assignment = assignment;
         this.outputValue = outputValue;
@@ -56,7 +56,7 @@ public class AssignmentTestCase implements TestCase {
         this.id = id;
     }
 
-    private static int classCounter = 0;
+    private static final AtomicInteger classCounter = new AtomicInteger();
     private final int objectCounter;
 
     @Override
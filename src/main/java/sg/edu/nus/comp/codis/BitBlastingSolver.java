@@ -0,0 +1,828 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Pure-Java solver for the Bool and BV fragment: formulas are bit-blasted to CNF and solved with SATSolver.
+ * Integer and uninterpreted function terms are not supported.
+ */
+public class BitBlastingSolver implements Solver {
+
+    private long lastConflicts = 0;
+    private int lastVariables = 0;
+
+    public static BitBlastingSolver build() {
+        return new BitBlastingSolver();
+    }
+
+    public long getLastConflicts() {
+        return lastConflicts;
+    }
+
+    public int getLastVariables() {
+        return lastVariables;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        SATSolver sat = new SATSolver();
+        BitBlaster blaster = new BitBlaster(sat);
+        for (Node clause : clauses) {
+            sat.addClause(blaster.blastFormula(clause));
+        }
+        int[] literals = new int[assumptions.size()];
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = blaster.blastFormula(assumptions.get(i));
+        }
+        boolean result = sat.solve(literals);
+        record(sat);
+        if (result) {
+            return Either.left(blaster.getModel());
+        }
+        Set<Integer> failed = new HashSet<>();
+        for (int literal : sat.getFailedAssumptions()) {
+            failed.add(literal);
+        }
+        List<Node> core = new ArrayList<>();
+        for (int i = 0; i < literals.length; i++) {
+            if (failed.contains(literals[i])) {
+                core.add(assumptions.get(i));
+            }
+        }
+        return Either.right(core);
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        SATSolver sat = new SATSolver();
+        BitBlaster blaster = new BitBlaster(sat);
+        for (Node clause : clauses) {
+            sat.addClause(blaster.blastFormula(clause));
+        }
+        boolean result = sat.solve();
+        record(sat);
+        if (result) {
+            return Optional.of(blaster.getModel());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isSatisfiable(List<Node> clauses) {
+        return getModel(clauses).isPresent();
+    }
+
+    private void record(SATSolver sat) {
+        lastConflicts = sat.getConflicts();
+        lastVariables = sat.getVariables();
+    }
+
+    /**
+     * Translates nodes into vectors of SAT literals, least significant bit first. Boolean terms are vectors of size one.
+     */
+    private static class BitBlaster implements BottomUpMemoVisitor {
+
+        private final SATSolver sat;
+
+        private final int TRUE;
+        private final int FALSE;
+
+        private final Stack<int[]> bits = new Stack<>();
+        private Map<Node, int[]> cache = new HashMap<>();
+        private final Map<Variable, int[]> variables = new HashMap<>();
+
+        // instantiated clause whose template is being blasted:
+        private InstantiatedClause scope = null;
+
+        // structural hashing of gates
+        private final Map<Long, Integer> andGates = new HashMap<>();
+        private final Map<Long, Integer> xorGates = new HashMap<>();
+
+        BitBlaster(SATSolver sat) {
+            this.sat = sat;
+            this.TRUE = sat.newVariable();
+            this.FALSE = -TRUE;
+            sat.addClause(TRUE);
+        }
+
+        int blastFormula(Node node) {
+            node.accept(this);
+            int[] result = bits.pop();
+            assert bits.isEmpty() && result.length == 1;
+            return result[0];
+        }
+
+        Map<Variable, Constant> getModel() {
+            Map<Variable, Constant> model = new HashMap<>();
+            for (Map.Entry<Variable, int[]> entry : variables.entrySet()) {
+                Type type = TypeInference.typeOf(entry.getKey());
+                int[] vector = entry.getValue();
+                if (type instanceof BVType) {
+                    BigInteger value = BigInteger.ZERO;
+                    for (int i = 0; i < vector.length; i++) {
+                        if (sat.modelValue(vector[i])) {
+                            value = value.setBit(i);
+                        }
+                    }
+                    model.put(entry.getKey(), new BVConst(value, vector.length));
+                } else {
+                    model.put(entry.getKey(), BoolConst.of(sat.modelValue(vector[0])));
+                }
+            }
+            return model;
+        }
+
+        private void push(int[] vector, Node node) {
+            cache.put(node, vector);
+            bits.push(vector);
+        }
+
+        private void pushBit(int literal, Node node) {
+            push(new int[]{ literal }, node);
+        }
+
+        private void processVariable(Variable variable) {
+            Node original = variable;
+            if (scope != null) {
+                variable = scope.resolve(variable);
+            }
+            int[] existing = variables.get(variable);
+            if (existing != null) {
+                push(existing, original);
+                return;
+            }
+            Type type = TypeInference.typeOf(variable);
+            int size;
+            if (type.equals(BoolType.TYPE)) {
+                size = 1;
+            } else if (type instanceof BVType) {
+                size = ((BVType) type).getSize();
+            } else {
+                throw new UnsupportedOperationException("unsupported type of " + variable);
+            }
+            int[] vector = new int[size];
+            for (int i = 0; i < size; i++) {
+                vector[i] = sat.newVariable();
+            }
+            variables.put(variable, vector);
+            push(vector, original);
+        }
+
+        private static long key(int a, int b) {
+            return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xffffffffL);
+        }
+
+        private int and(int a, int b) {
+            if (a == FALSE || b == FALSE || a == -b) return FALSE;
+            if (a == TRUE || a == b) return b;
+            if (b == TRUE) return a;
+            long k = key(a, b);
+            Integer cached = andGates.get(k);
+            if (cached != null) {
+                return cached;
+            }
+            int g = sat.newVariable();
+            sat.addClause(-g, a);
+            sat.addClause(-g, b);
+            sat.addClause(g, -a, -b);
+            andGates.put(k, g);
+            return g;
+        }
+
+        private int or(int a, int b) {
+            return -and(-a, -b);
+        }
+
+        private int xor(int a, int b) {
+            if (a == FALSE) return b;
+            if (b == FALSE) return a;
+            if (a == TRUE) return -b;
+            if (b == TRUE) return -a;
+            if (a == b) return FALSE;
+            if (a == -b) return TRUE;
+            long k = key(Math.abs(a), Math.abs(b));
+            Integer cached = xorGates.get(k);
+            int g;
+            if (cached != null) {
+                g = cached;
+            } else {
+                g = sat.newVariable();
+                int x = Math.abs(a);
+                int y = Math.abs(b);
+                sat.addClause(-g, x, y);
+                sat.addClause(-g, -x, -y);
+                sat.addClause(g, -x, y);
+                sat.addClause(g, x, -y);
+                xorGates.put(k, g);
+            }
+            return ((a < 0) != (b < 0)) ? -g : g;
+        }
+
+        private int mux(int c, int t, int e) {
+            if (c == TRUE || t == e) return t;
+            if (c == FALSE) return e;
+            if (t == TRUE || c == t) return or(c, e);
+            if (t == FALSE || c == -t) return and(-c, e);
+            if (e == TRUE || c == -e) return or(-c, t);
+            if (e == FALSE || c == e) return and(c, t);
+            int g = sat.newVariable();
+            sat.addClause(-c, -t, g);
+            sat.addClause(-c, t, -g);
+            sat.addClause(c, -e, g);
+            sat.addClause(c, e, -g);
+            sat.addClause(-t, -e, g);
+            sat.addClause(t, e, -g);
+            return g;
+        }
+
+        private int[] mux(int c, int[] t, int[] e) {
+            int[] result = new int[t.length];
+            for (int i = 0; i < t.length; i++) {
+                result[i] = mux(c, t[i], e[i]);
+            }
+            return result;
+        }
+
+        private int[] constant(int size, int bit) {
+            int[] result = new int[size];
+            Arrays.fill(result, bit);
+            return result;
+        }
+
+        private int[] not(int[] a) {
+            int[] result = new int[a.length];
+            for (int i = 0; i < a.length; i++) {
+                result[i] = -a[i];
+            }
+            return result;
+        }
+
+        /**
+         * Ripple-carry adder, the carry out is stored at index a.length of the result
+         */
+        private int[] addWithCarry(int[] a, int[] b, int carry) {
+            int[] result = new int[a.length + 1];
+            for (int i = 0; i < a.length; i++) {
+                int x = xor(a[i], b[i]);
+                result[i] = xor(x, carry);
+                carry = or(and(a[i], b[i]), and(x, carry));
+            }
+            result[a.length] = carry;
+            return result;
+        }
+
+        private int[] add(int[] a, int[] b) {
+            return Arrays.copyOf(addWithCarry(a, b, FALSE), a.length);
+        }
+
+        private int[] sub(int[] a, int[] b) {
+            return Arrays.copyOf(addWithCarry(a, not(b), TRUE), a.length);
+        }
+
+        private int[] neg(int[] a) {
+            return Arrays.copyOf(addWithCarry(not(a), constant(a.length, FALSE), TRUE), a.length);
+        }
+
+        private int[] mult(int[] a, int[] b) {
+            int n = a.length;
+            int[] result = constant(n, FALSE);
+            for (int i = 0; i < n; i++) {
+                int[] row = new int[n - i];
+                int[] upper = new int[n - i];
+                for (int j = i; j < n; j++) {
+                    row[j - i] = and(a[j - i], b[i]);
+                    upper[j - i] = result[j];
+                }
+                int[] sum = add(upper, row);
+                System.arraycopy(sum, 0, result, i, n - i);
+            }
+            return result;
+        }
+
+        /**
+         * Restoring division, the quotient is all ones and the remainder is the dividend when dividing by zero
+         * @return quotient followed by remainder
+         */
+        private int[][] unsignedDivision(int[] a, int[] b) {
+            int n = a.length;
+            int[] quotient = new int[n];
+            int[] remainder = constant(n, FALSE);
+            int[] divisor = Arrays.copyOf(b, n + 1);
+            divisor[n] = FALSE;
+            for (int i = n - 1; i >= 0; i--) {
+                int[] shifted = new int[n + 1];
+                shifted[0] = a[i];
+                System.arraycopy(remainder, 0, shifted, 1, n);
+                int[] difference = addWithCarry(shifted, not(divisor), TRUE);
+                int greaterOrEqual = difference[n + 1];
+                quotient[i] = greaterOrEqual;
+                remainder = mux(greaterOrEqual, Arrays.copyOf(difference, n), Arrays.copyOf(shifted, n));
+            }
+            return new int[][]{ quotient, remainder };
+        }
+
+        private int[] abs(int[] a) {
+            return mux(a[a.length - 1], neg(a), a);
+        }
+
+        private int[] signedDiv(int[] a, int[] b) {
+            int[] quotient = unsignedDivision(abs(a), abs(b))[0];
+            return mux(xor(a[a.length - 1], b[b.length - 1]), neg(quotient), quotient);
+        }
+
+        private int[] signedRemainder(int[] a, int[] b) {
+            int[] remainder = unsignedDivision(abs(a), abs(b))[1];
+            return mux(a[a.length - 1], neg(remainder), remainder);
+        }
+
+        private int[] signedModulo(int[] a, int[] b) {
+            int n = a.length;
+            int[] remainder = unsignedDivision(abs(a), abs(b))[1];
+            int aNegative = a[n - 1];
+            int bNegative = b[n - 1];
+            int[] negated = neg(remainder);
+            int[] result = mux(aNegative,
+                    mux(bNegative, negated, add(negated, b)),
+                    mux(bNegative, add(remainder, b), remainder));
+            return mux(equal(remainder, constant(n, FALSE)), remainder, result);
+        }
+
+        /**
+         * Barrel shifter, shifting by at least the width produces the fill bits
+         */
+        private int[] shift(int[] a, int[] distance, boolean left, int fill) {
+            int n = a.length;
+            int[] result = a;
+            int overflow = FALSE;
+            for (int k = 0; k < distance.length; k++) {
+                if (k >= 31 || (1 << k) >= n) {
+                    overflow = or(overflow, distance[k]);
+                    continue;
+                }
+                int step = 1 << k;
+                int[] shifted = new int[n];
+                for (int i = 0; i < n; i++) {
+                    int source = left ? i - step : i + step;
+                    shifted[i] = (source >= 0 && source < n) ? result[source] : fill;
+                }
+                result = mux(distance[k], shifted, result);
+            }
+            return mux(overflow, constant(n, fill), result);
+        }
+
+        private int unsignedLess(int[] a, int[] b) {
+            int less = FALSE;
+            for (int i = 0; i < a.length; i++) {
+                less = mux(xor(a[i], b[i]), b[i], less);
+            }
+            return less;
+        }
+
+        private int signedLess(int[] a, int[] b) {
+            int n = a.length;
+            int[] x = Arrays.copyOf(a, n);
+            int[] y = Arrays.copyOf(b, n);
+            x[n - 1] = -x[n - 1];
+            y[n - 1] = -y[n - 1];
+            return unsignedLess(x, y);
+        }
+
+        private int equal(int[] a, int[] b) {
+            int result = TRUE;
+            for (int i = 0; i < a.length; i++) {
+                result = and(result, -xor(a[i], b[i]));
+            }
+            return result;
+        }
+
+        private int[] bitwise(int[] a, int[] b, java.util.function.IntBinaryOperator gate) {
+            int[] result = new int[a.length];
+            for (int i = 0; i < a.length; i++) {
+                result[i] = gate.applyAsInt(a[i], b[i]);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean alreadyVisited(Node node) {
+            return cache.containsKey(node);
+        }
+
+        @Override
+        public void visitAgain(Node node) {
+            bits.push(cache.get(node));
+        }
+
+        @Override
+        public void visit(ProgramVariable programVariable) {
+            processVariable(programVariable);
+        }
+
+        @Override
+        public void visit(Location location) {
+            processVariable(location);
+        }
+
+        @Override
+        public void visit(UIFApplication UIFApplication) {
+            throw new UnsupportedOperationException("uninterpreted functions are not supported");
+        }
+
+        @Override
+        public void visit(Equal equal) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(equal(left, right), equal);
+        }
+
+        @Override
+        public void visit(Add add) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(Sub sub) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(Mult mult) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(Div div) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(And and) {
+            int right = bits.pop()[0];
+            int left = bits.pop()[0];
+            pushBit(and(left, right), and);
+        }
+
+        @Override
+        public void visit(Or or) {
+            int right = bits.pop()[0];
+            int left = bits.pop()[0];
+            pushBit(or(left, right), or);
+        }
+
+        @Override
+        public void visit(AndN andN) {
+            int result = TRUE;
+            for (int i=0; i<andN.getArity(); i++) {
+                result = and(bits.pop()[0], result);
+            }
+            pushBit(result, andN);
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            int result = FALSE;
+            for (int i=0; i<orN.getArity(); i++) {
+                result = or(bits.pop()[0], result);
+            }
+            pushBit(result, orN);
+        }
+
+        @Override
+        public void visit(Iff iff) {
+            int right = bits.pop()[0];
+            int left = bits.pop()[0];
+            pushBit(-xor(left, right), iff);
+        }
+
+        @Override
+        public void visit(Impl impl) {
+            int right = bits.pop()[0];
+            int left = bits.pop()[0];
+            pushBit(or(-left, right), impl);
+        }
+
+        @Override
+        public void visit(Greater greater) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(Less less) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(GreaterOrEqual greaterOrEqual) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(LessOrEqual lessOrEqual) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(Minus minus) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(Not not) {
+            int arg = bits.pop()[0];
+            pushBit(-arg, not);
+        }
+
+        @Override
+        public void visit(IntConst intConst) {
+            throw new UnsupportedOperationException("integer arithmetic is not supported");
+        }
+
+        @Override
+        public void visit(BoolConst boolConst) {
+            pushBit(boolConst.getValue() ? TRUE : FALSE, boolConst);
+        }
+
+        @Override
+        public void visit(ComponentInput componentInput) {
+            processVariable(componentInput);
+        }
+
+        @Override
+        public void visit(ComponentOutput componentOutput) {
+            processVariable(componentOutput);
+        }
+
+        @Override
+        public void visit(TestInstance testInstance) {
+            processVariable(testInstance);
+        }
+
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            // the template is blasted with resolved variables, its nodes are cached only for this clause
+            // since the template is shared between tests; gates are still shared through structural hashing:
+            Map<Node, int[]> outerCache = cache;
+            InstantiatedClause outerScope = scope;
+            cache = new HashMap<>();
+            scope = instantiatedClause;
+            try {
+                instantiatedClause.getTemplate().accept(this);
+            } finally {
+                cache = outerCache;
+                scope = outerScope;
+            }
+            push(bits.pop(), instantiatedClause);
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            arenaNode.toNode().accept(this);
+            push(bits.pop(), arenaNode);
+        }
+
+        @Override
+        public void visit(Parameter parameter) {
+            processVariable(parameter);
+        }
+
+        @Override
+        public void visit(Hole hole) {
+            processVariable(hole);
+        }
+
+        @Override
+        public void visit(ITE ite) {
+            int[] elseBranch = bits.pop();
+            int[] thenBranch = bits.pop();
+            int condition = bits.pop()[0];
+            push(mux(condition, thenBranch, elseBranch), ite);
+        }
+
+        @Override
+        public void visit(Selector selector) {
+            processVariable(selector);
+        }
+
+        @Override
+        public void visit(BVConst bvConst) {
+            int size = bvConst.getType().getSize();
+            int[] vector = new int[size];
+            for (int i = 0; i < size; i++) {
+                vector[i] = bvConst.getValue().testBit(i) ? TRUE : FALSE;
+            }
+            push(vector, bvConst);
+        }
+
+        @Override
+        public void visit(BVAdd bvAdd) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(add(left, right), bvAdd);
+        }
+
+        @Override
+        public void visit(BVAnd bvAnd) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(bitwise(left, right, this::and), bvAnd);
+        }
+
+        @Override
+        public void visit(BVMult bvMult) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(mult(left, right), bvMult);
+        }
+
+        @Override
+        public void visit(BVNeg bvNeg) {
+            int[] arg = bits.pop();
+            push(neg(arg), bvNeg);
+        }
+
+        @Override
+        public void visit(BVNot bvNot) {
+            int[] arg = bits.pop();
+            push(not(arg), bvNot);
+        }
+
+        @Override
+        public void visit(BVOr bvOr) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(bitwise(left, right, this::or), bvOr);
+        }
+
+        @Override
+        public void visit(BVShiftLeft bvShiftLeft) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(shift(left, right, true, FALSE), bvShiftLeft);
+        }
+
+        @Override
+        public void visit(BVSignedDiv bvSignedDiv) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(signedDiv(left, right), bvSignedDiv);
+        }
+
+        @Override
+        public void visit(BVSignedGreater bvSignedGreater) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(signedLess(right, left), bvSignedGreater);
+        }
+
+        @Override
+        public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(-signedLess(left, right), bvSignedGreaterOrEqual);
+        }
+
+        @Override
+        public void visit(BVSignedLess bvSignedLess) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(signedLess(left, right), bvSignedLess);
+        }
+
+        @Override
+        public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(-signedLess(right, left), bvSignedLessOrEqual);
+        }
+
+        @Override
+        public void visit(BVSignedModulo bvSignedModulo) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(signedModulo(left, right), bvSignedModulo);
+        }
+
+        @Override
+        public void visit(BVSignedRemainder bvSignedRemainder) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(signedRemainder(left, right), bvSignedRemainder);
+        }
+
+        @Override
+        public void visit(BVSignedShiftRight bvSignedShiftRight) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(shift(left, right, false, left[left.length - 1]), bvSignedShiftRight);
+        }
+
+        @Override
+        public void visit(BVSub bvSub) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(sub(left, right), bvSub);
+        }
+
+        @Override
+        public void visit(BVUnsignedDiv bvUnsignedDiv) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(unsignedDivision(left, right)[0], bvUnsignedDiv);
+        }
+
+        @Override
+        public void visit(BVUnsignedGreater bvUnsignedGreater) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(unsignedLess(right, left), bvUnsignedGreater);
+        }
+
+        @Override
+        public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(-unsignedLess(left, right), bvUnsignedGreaterOrEqual);
+        }
+
+        @Override
+        public void visit(BVUnsignedLess bvUnsignedLess) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(unsignedLess(left, right), bvUnsignedLess);
+        }
+
+        @Override
+        public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            pushBit(-unsignedLess(right, left), bvUnsignedLessOrEqual);
+        }
+
+        @Override
+        public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(unsignedDivision(left, right)[1], bvUnsignedRemainder);
+        }
+
+        @Override
+        public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(shift(left, right, false, FALSE), bvUnsignedShiftRight);
+        }
+
+        @Override
+        public void visit(BVNand bvNand) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(not(bitwise(left, right, this::and)), bvNand);
+        }
+
+        @Override
+        public void visit(BVXor bvXor) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(bitwise(left, right, this::xor), bvXor);
+        }
+
+        @Override
+        public void visit(BVNor bvNor) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(not(bitwise(left, right, this::or)), bvNor);
+        }
+
+        @Override
+        public void visit(BVXnor bvXnor) {
+            int[] right = bits.pop();
+            int[] left = bits.pop();
+            push(not(bitwise(left, right, this::xor)), bvXnor);
+        }
+
+        @Override
+        public void visit(BranchOutput branchOutput) {
+            processVariable(branchOutput);
+        }
+
+        @Override
+        public void visit(ProgramOutput programOutput) {
+            processVariable(programOutput);
+        }
+
+        @Override
+        public void visit(Dummy dummy) {
+            processVariable(dummy);
+        }
+
+        @Override
+        public void visit(Indexed indexed) {
+            processVariable(indexed);
+        }
+    }
+}
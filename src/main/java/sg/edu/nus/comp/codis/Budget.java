@@ -0,0 +1,104 @@
+package sg.edu.nus.comp.codis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wall-clock deadline and cancellation token checked cooperatively by synthesizers and solvers.
+ * A child budget is exhausted when any of its parents is exhausted.
+ */
+public class Budget {
+
+    private final long deadline; // System.nanoTime(), Long.MAX_VALUE if unlimited
+    private final List<Budget> parents;
+    private volatile boolean cancelled = false;
+
+    private Budget(long deadline, List<Budget> parents) {
+        this.deadline = deadline;
+        this.parents = parents;
+    }
+
+    public static Budget unlimited() {
+        return new Budget(Long.MAX_VALUE, Collections.emptyList());
+    }
+
+    public static Budget ofMillis(long millis) {
+        return new Budget(deadlineAfter(millis), Collections.emptyList());
+    }
+
+    public Budget child() {
+        return new Budget(Long.MAX_VALUE, Collections.singletonList(this));
+    }
+
+    public Budget child(long millis) {
+        return new Budget(deadlineAfter(millis), Collections.singletonList(this));
+    }
+
+    /**
+     * @return child of both budgets, exhausted as soon as either of them is
+     */
+    public Budget child(Budget other) {
+        return new Budget(Long.MAX_VALUE, Arrays.asList(this, other));
+    }
+
+    private static long deadlineAfter(long millis) {
+        long now = System.nanoTime();
+        long nanos = millis * 1000000;
+        if (millis > Long.MAX_VALUE / 1000000 || now + nanos < now) {
+            return Long.MAX_VALUE;
+        }
+        return now + nanos;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        if (cancelled) {
+            return true;
+        }
+        for (Budget parent : parents) {
+            if (parent.isCancelled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isExhausted() {
+        if (cancelled) {
+            return true;
+        }
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+            return true;
+        }
+        for (Budget parent : parents) {
+            if (parent.isExhausted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @throws BudgetExhaustedException if the deadline passed or the budget is cancelled
+     */
+    public void check() {
+        if (isExhausted()) {
+            throw new BudgetExhaustedException(isCancelled() ? "synthesis cancelled" : "synthesis timed out");
+        }
+    }
+
+    public long remainingMillis() {
+        if (isCancelled()) {
+            return 0;
+        }
+        long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : (deadline - System.nanoTime()) / 1000000;
+        for (Budget parent : parents) {
+            remaining = Math.min(remaining, parent.remainingMillis());
+        }
+        return Math.max(remaining, 0);
+    }
+}
@@ -0,0 +1,13 @@
+package sg.edu.nus.comp.codis;
+
+/**
+ * Thrown when synthesis runs out of its Budget
+ */
+public class BudgetExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BudgetExhaustedException(String message) {
+        super(message);
+    }
+}
@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import sg.edu.nus.comp.codis.ast.*;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -15,65 +16,154 @@ public class CEGIS implements Synthesis {
 
     private Synthesis synthesizer;
 
-    private SolverTester tester;
+    private CounterexampleFinder finder;
+
+    // solver of the finder's tester, checking the budget in its queries:
+    private Optional<Solver> solver;
+
+    // maximum number of counterexamples added per iteration:
+    private int batchSize;
 
     private Logger logger = LoggerFactory.getLogger(CEGIS.class);
 
     public CEGIS(Synthesis synthesizer, Solver solver) {
+        this(synthesizer, CounterexampleFinder.sequential(new EvaluationTester(new SolverTester(solver))), 1);
+        this.solver = Optional.of(solver);
+    }
+
+    /**
+     * Candidates are checked by the finder, e.g. on a fork-join pool with a solver per thread.
+     * The finder checks the budget between partitions of the suite.
+     */
+    public CEGIS(Synthesis synthesizer, CounterexampleFinder finder) {
+        this(synthesizer, finder, 1);
+    }
+
+    /**
+     * Adds up to batchSize diverse failing tests per iteration, reducing the number of calls to the synthesizer
+     */
+    public CEGIS(Synthesis synthesizer, CounterexampleFinder finder, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
         this.synthesizer = synthesizer;
-        this.tester = new SolverTester(solver);
+        this.finder = finder;
+        this.batchSize = batchSize;
+        this.solver = Optional.empty();
     }
 
     @Override
     public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite,
                                                                         Multiset<Node> components) {
+        return synthesize(testSuite, components, Budget.unlimited()).getProgram();
+    }
+
+    /**
+     * If timed out, returns the last candidate (passing the tests added so far)
+     */
+    @Override
+    public SynthesisResult synthesize(List<? extends TestCase> testSuite,
+                                      Multiset<Node> components,
+                                      Budget budget) {
         assert testSuite.size() > 0;
 
-        Set<TestCase> remaining = new HashSet<>(testSuite);
-        Set<TestCase> current = new HashSet<>();
+        TestSuite suite = new TestSuite(testSuite);
+        BitSet remaining = suite.all();
+        BitSet current = new BitSet(suite.size());
 
-        Optional<TestCase> counterExample = Optional.of(testSuite.get(0));
+        BitSet counterExamples = new BitSet(suite.size());
+        counterExamples.set(0);
 
         Optional<Pair<Program, Map<Parameter, Constant>>> result = Optional.empty();
 
         int iterationCount = 0;
 
-        while(counterExample.isPresent()) {
+        while(!counterExamples.isEmpty()) {
+            if (budget.isExhausted()) {
+                logger.info("Timed out");
+                return SynthesisResult.timedOut(result);
+            }
 
             iterationCount++;
-            current.add(counterExample.get());
-            logger.debug("Adding test " + counterExample.get());
+            current.or(counterExamples);
+            if (logger.isDebugEnabled()) {
+                for (TestCase test : suite.select(counterExamples)) {
+                    logger.debug("Adding test " + test);
+                }
+            }
 
-            remaining.remove(counterExample.get());
-            counterExample = Optional.empty();
+            remaining.andNot(counterExamples);
+            counterExamples.clear();
 
-            result = synthesizer.synthesize(new ArrayList<>(current), components);
+            SynthesisResult candidate = synthesizer.synthesize(suite.select(current), components, budget);
 
-            if (!result.isPresent()) {
+            if (candidate.isTimedOut()) {
+                logger.info("Timed out");
+                return SynthesisResult.timedOut(result);
+            }
+
+            if (!candidate.isFound()) {
                 logger.info("Failed");
-                return result;
+                return SynthesisResult.notFound();
             }
 
-            boolean counterExampleFound = false;
-            int score = current.size();
-            for (TestCase testCase : remaining) {
-                if (!tester.isPassing(result.get().getLeft(), result.get().getRight(), testCase)) {
-                    if (!counterExampleFound) {
-                        counterExample = Optional.of(testCase);
-                        counterExampleFound = true;
-                    }
-                } else {
-                    score++;
-                }
+            result = candidate.getProgram();
+
+            CounterexampleFinder.Result check;
+            try {
+                check = check(result.get(), suite, remaining, budget);
+            } catch (BudgetExhaustedException e) {
+                logger.info("Timed out");
+                return SynthesisResult.timedOut(result);
+            }
+            if (check.isExhaustive()) {
+                BitSet failing = (BitSet) remaining.clone();
+                failing.andNot(check.getPassing());
+                counterExamples = selectDiverse(suite, failing, batchSize);
+            } else {
+                check.getCounterexample().ifPresent(counterExamples::set);
+            }
+            if (logger.isInfoEnabled()) {
+                int score = current.cardinality() + check.getPassing().cardinality();
+                logger.info("Iteration "  + iterationCount +
+                        " Score: " + score +
+                        " Program: " + Printer.print(result.get().getLeft().getSemantics(result.get().getRight())));
             }
-            logger.info("Iteration "  + iterationCount +
-                    " Score: " + score +
-                    " Program: " + result.get().getLeft().getSemantics(result.get().getRight()));
         }
 
         logger.info("Succeeded");
 
-        return result;
+        return SynthesisResult.found(result.get());
+    }
+
+    private CounterexampleFinder.Result check(Pair<Program, Map<Parameter, Constant>> candidate,
+                                              TestSuite suite,
+                                              BitSet lanes,
+                                              Budget budget) {
+        // all failing tests are only needed for batches and for the score in the log:
+        boolean exhaustive = batchSize > 1 || logger.isInfoEnabled();
+        Supplier<CounterexampleFinder.Result> check =
+                () -> finder.find(candidate.getLeft(), candidate.getRight(), suite, lanes, exhaustive, budget);
+        return solver.isPresent() ? solver.get().withBudget(budget, check) : check.get();
+    }
+
+    /**
+     * Selects up to k failing tests, preferring tests with distinct expected outputs, in the order of the suite
+     */
+    static BitSet selectDiverse(TestSuite suite, BitSet failing, int k) {
+        BitSet selected = new BitSet(suite.size());
+        Set<Object> outputs = new HashSet<>();
+        for (int lane = failing.nextSetBit(0); lane >= 0 && selected.cardinality() < k; lane = failing.nextSetBit(lane + 1)) {
+            TestCase test = suite.get(lane);
+            Object output = test instanceof AssignmentTestCase ? ((AssignmentTestCase) test).getOutputValue() : lane;
+            if (outputs.add(output)) {
+                selected.set(lane);
+            }
+        }
+        for (int lane = failing.nextSetBit(0); lane >= 0 && selected.cardinality() < k; lane = failing.nextSetBit(lane + 1)) {
+            selected.set(lane);
+        }
+        return selected;
     }
 
     @Override
@@ -49,6 +49,10 @@ public class CODIS extends SynthesisWithLearning {
 
     private Map<Type, ProgramOutput> conflictVariables;
 
+    // program with fewest failing tests found so far:
+    private Pair<Program, Map<Parameter, Constant>> bestProgram;
+    private int bestFailing;
+
     private Multiset<Node> remainingComponents(Multiset<Node> total, Program p) {
         Multiset<Node> result = HashMultiset.create(total);
         removeUsedComponents(result, p);
@@ -120,9 +124,12 @@ public class CODIS extends SynthesisWithLearning {
 
 
     private void logSearchTreeNode(SearchTreeNode n, int iteration) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
         logger.info("Iteration " + iteration +
                 " Score: "  + n.fixed.size() + "/" + n.failing.size() +
-                " Program: " + n.program.getLeft().getSemantics(n.program.getRight()));
+                " Program: " + Printer.print(n.program.getLeft().getSemantics(n.program.getRight())));
         //logger.info("Used: " + n.program.getLeft().getComponents());
         List<Component> flattenedComponents = n.remainingComponents.stream().map(Component::new).collect(Collectors.toList());
         //logger.info("Remaining: " + flattenedComponents);
@@ -134,14 +141,10 @@ public class CODIS extends SynthesisWithLearning {
         //logger.info("Explored: " + n.explored);
     }
 
-    private List<TestCase> getFailing(Pair<Program, Map<Parameter, Constant>> p, List<? extends TestCase> t) {
-        List<TestCase> failing = new ArrayList<>();
-        for (TestCase testCase : t) {
-            if (!tester.isPassing(p.getLeft(), p.getRight(), testCase)) {
-                failing.add(testCase);
-            }
-        }
-        return failing;
+    private List<TestCase> getFailing(Pair<Program, Map<Parameter, Constant>> p, TestSuite suite) {
+        BitSet failing = suite.all();
+        failing.andNot(tester.getPassing(p.getLeft(), p.getRight(), suite, suite.all()));
+        return suite.select(failing);
     }
 
     private int leafDepth(Program p, Component leaf) {
@@ -191,9 +194,21 @@ public class CODIS extends SynthesisWithLearning {
 
     }
 
+    @Override
+    protected Optional<Pair<Program, Map<Parameter, Constant>>> getPartialResult() {
+        return Optional.ofNullable(bestProgram);
+    }
+
     public Either<List<Pair<Program, Map<Parameter, Constant>>>, Node> synthesizeAux(List<? extends TestCase> testSuite,
                                                                                      Multiset<Node> components,
                                                                                      boolean findAll) {
+        bestProgram = null;
+        return solver.withBudget(budget, () -> search(testSuite, components, findAll));
+    }
+
+    private Either<List<Pair<Program, Map<Parameter, Constant>>>, Node> search(List<? extends TestCase> testSuite,
+                                                                               Multiset<Node> components,
+                                                                               boolean findAll) {
 
         ConflictDatabase conflicts = new ConflictDatabase(components);
         Stack<SearchTreeNode> synthesisSequence = new Stack<>();
@@ -210,9 +225,14 @@ public class CODIS extends SynthesisWithLearning {
                 new ImmutablePair<>(Program.leaf(new Component(arbitraryLeaf)), new HashMap<>());
 
         List<TestCase> fixed = new ArrayList<>();
-        List<TestCase> failing = getFailing(initial, testSuite);
+        TestSuite suite = new TestSuite(testSuite);
+        List<TestCase> failing = getFailing(initial, suite);
+        bestProgram = initial;
+        bestFailing = failing.size();
 
-        logger.info("Initial program: " + initial.getLeft().getSemantics());
+        if (logger.isInfoEnabled()) {
+            logger.info("Initial program: " + Printer.print(initial.getLeft().getSemantics()));
+        }
 
         if (failing.isEmpty()) {
             found.add(initial);
@@ -233,6 +253,8 @@ public class CODIS extends SynthesisWithLearning {
         int subsumptionCount = 0;
 
         while (!synthesisSequence.isEmpty()) {
+            budget.check();
+
             if (this.iterationsBeforeRestart.isPresent() &&
                     this.iterationsBeforeRestart.get() <= (synthesisIteration - lastRestart)) {
                 logger.info("RESTART");
@@ -268,6 +290,7 @@ public class CODIS extends SynthesisWithLearning {
 
             // constructing synthesizer for expansion:
             TBSBuilder tbsBuilder = new TBSBuilder(iSolver, incrementBound);
+            tbsBuilder.setBudget(budget);
             if (conciseInterpolants) {
                 tbsBuilder.enableConciseInterpolants();
             }
@@ -302,16 +325,34 @@ public class CODIS extends SynthesisWithLearning {
             boolean isSubsumed = false;
             boolean substitutionExists = true; //NOTE: true actually means don't know
 
-            if (checkExpansionSatisfiability && current.explored.isEmpty()) {
-                substitutionExists = substitutionExists(current.leaf, contextTestSuite);
-            }
+            boolean checkSubstitution = checkExpansionSatisfiability && current.explored.isEmpty();
 
             //FIXME: restricted is a bad solution. Should limit the depth for which we perform expansions
-            if (conflictLearning && !restricted && substitutionExists && current.explored.isEmpty()) {
-                List<Node> relevantConflicts = conflicts.query(remainingWithRemovedLeaf);
-                if (!relevantConflicts.isEmpty()) {
-                    isSubsumed = isSubsumedAtLeaf(current.leaf, contextTestSuite, relevantConflicts);
-                    subsumptionCount++;
+            List<Node> relevantConflicts = new ArrayList<>();
+            if (conflictLearning && !restricted && current.explored.isEmpty()) {
+                relevantConflicts = conflicts.query(remainingWithRemovedLeaf);
+            }
+
+            if (checkSubstitution || !relevantConflicts.isEmpty()) {
+                //NOTE: with an incremental solver, the context is asserted once for both checks
+                List<Node> contextClauses = leafContextClauses(current.leaf, contextTestSuite);
+                boolean incremental = solver instanceof IncrementalSolver;
+                if (incremental) {
+                    ((IncrementalSolver) solver).push();
+                    ((IncrementalSolver) solver).assertClauses(contextClauses);
+                }
+                try {
+                    if (checkSubstitution) {
+                        substitutionExists = substitutionExists(contextClauses);
+                    }
+                    if (substitutionExists && !relevantConflicts.isEmpty()) {
+                        isSubsumed = isSubsumedAtLeaf(contextClauses, relevantConflicts);
+                        subsumptionCount++;
+                    }
+                } finally {
+                    if (incremental) {
+                        ((IncrementalSolver) solver).pop();
+                    }
                 }
             }
 
@@ -377,13 +418,19 @@ public class CODIS extends SynthesisWithLearning {
 
             Pair<Program, Map<Parameter, Constant>> next = new ImmutablePair<>(newProgram, newParameterValuation);
 
-            List<TestCase> newFailing = getFailing(next, testSuite);
+            List<TestCase> newFailing = getFailing(next, suite);
+            if (newFailing.size() < bestFailing) {
+                bestProgram = next;
+                bestFailing = newFailing.size();
+            }
             if (newFailing.isEmpty()) {
                 found.add(next);
                 if (!findAll) {
                     return Either.left(found);
                 } else {
-                    logger.info("FOUND: " + next.getLeft().getSemantics(next.getRight()));
+                    if (logger.isInfoEnabled()) {
+                        logger.info("FOUND: " + Printer.print(next.getLeft().getSemantics(next.getRight())));
+                    }
                     continue;
                 }
             }
@@ -415,12 +462,7 @@ public class CODIS extends SynthesisWithLearning {
         }
     }
 
-    private boolean isSubsumedAtLeaf(Component leaf, List<CODISSynthesisContext> context, List<Node> conflicts) {
-        if (conflicts.size() > maximumConflictsCheck) {
-            logger.debug("found " + conflicts.size() + " conflicts, but only " + maximumConflictsCheck + " used");
-            conflicts = conflicts.subList(0, maximumConflictsCheck);
-        }
-
+    private List<Node> leafContextClauses(Component leaf, List<CODISSynthesisContext> context) {
         List<Node> clauses = new ArrayList<>();
 
         Type leafType = TypeInference.typeOf(leaf);
@@ -433,20 +475,39 @@ public class CODIS extends SynthesisWithLearning {
             }
         }
 
+        return clauses;
+    }
+
+    /**
+     * With an incremental solver, contextClauses are expected to be already asserted
+     */
+    private boolean isSubsumedAtLeaf(List<Node> contextClauses, List<Node> conflicts) {
+        if (conflicts.size() > maximumConflictsCheck) {
+            logger.debug("found " + conflicts.size() + " conflicts, but only " + maximumConflictsCheck + " used");
+            conflicts = conflicts.subList(0, maximumConflictsCheck);
+        }
+
         Node conflict;
         if (invertedLearning) {
             conflict = Node.conjunction(conflicts);
         } else {
             conflict = new Not(Node.disjunction(conflicts));
         }
-        clauses.add(conflict);
 
-        if (solver instanceof MathSAT) {
-            ((MathSAT) solver).enableMemoization();
-        }
-        boolean intersected = solver.isSatisfiable(clauses);
-        if (solver instanceof MathSAT) {
-            ((MathSAT) solver).disableMemoization();
+        boolean intersected;
+        if (solver instanceof IncrementalSolver) {
+            IncrementalSolver incrementalSolver = (IncrementalSolver) solver;
+            incrementalSolver.push();
+            try {
+                incrementalSolver.assertClauses(Collections.singletonList(conflict));
+                intersected = incrementalSolver.check();
+            } finally {
+                incrementalSolver.pop();
+            }
+        } else {
+            List<Node> clauses = new ArrayList<>(contextClauses);
+            clauses.add(conflict);
+            intersected = solver.isSatisfiable(clauses);
         }
         if (!intersected) {
             logger.debug("SUBSUMED by " + conflicts.size() + " conflicts");
@@ -455,21 +516,14 @@ public class CODIS extends SynthesisWithLearning {
         return !intersected;
     }
 
-    private boolean substitutionExists(Component leaf, List<CODISSynthesisContext> context) {
-        List<Node> clauses = new ArrayList<>();
-
-        Type leafType = TypeInference.typeOf(leaf);
-
-        for (CODISSynthesisContext testCase : context) {
-            ProgramOutput output = conflictVariables.get(leafType);
-            List<Node> testClauses = testCase.getConstraints(output);
-            for (Node testClause : testClauses) {
-                clauses.add(testClause.instantiate(testCase.getOuterTest()));
-            }
+    /**
+     * With an incremental solver, contextClauses are expected to be already asserted
+     */
+    private boolean substitutionExists(List<Node> contextClauses) {
+        if (solver instanceof IncrementalSolver) {
+            return ((IncrementalSolver) solver).check();
         }
-
-        return solver.isSatisfiable(clauses);
-
+        return solver.isSatisfiable(contextClauses);
     }
 
 }
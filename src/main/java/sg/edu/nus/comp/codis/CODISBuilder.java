@@ -17,6 +17,29 @@ public class CODISBuilder {
         this.instance.incrementBound = incrementBound;
     }
 
+    /**
+     * Candidate programs are scored by compiled evaluation, falling back to interpretation and then to the solver
+     */
+    public CODISBuilder(Solver solver, InterpolatingSolver iSolver, int incrementBound) {
+        this(solver, iSolver, new CompiledTester(new EvaluationTester(new SolverTester(solver))), incrementBound);
+    }
+
+    /**
+     * Conflicts are learned from unsat cores, for solvers and theories without interpolation support
+     */
+    public CODISBuilder(Solver solver, int incrementBound) {
+        this(solver, new CoreInterpolatingSolver(solver), incrementBound);
+    }
+
+    /**
+     * Once the budget is exhausted, synthesis throws BudgetExhaustedException.
+     * Calls given their own budget stop at whichever runs out first and return a timed-out result.
+     */
+    public CODISBuilder setBudget(Budget budget) {
+        this.instance.budget = budget;
+        return this;
+    }
+
     public CODISBuilder setTotalBound(int bound) {
         this.instance.totalBound = Optional.of(bound);
         return this;
@@ -82,6 +105,15 @@ public class CODISBuilder {
         return this;
     }
 
+    /**
+     * Replaces the interpolating solver with interpolants computed from unsat cores of the given solver
+     * @param minimizeCore remove redundant clauses from cores, yielding more general conflicts at the cost of solver calls
+     */
+    public CODISBuilder useCoreInterpolation(Solver solver, boolean minimizeCore) {
+        this.instance.iSolver = new CoreInterpolatingSolver(solver, minimizeCore);
+        return this;
+    }
+
     public CODISBuilder enableDebugMode() {
         this.instance.debugMode = true;
         return this;
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Sergey Mechtaev on 20/9/2016.
@@ -22,8 +23,7 @@ class CODISSynthesisContext implements TestCase {
     private Component leaf;
 
     CODISSynthesisContext(TestCase outerTest, Pair<Program, Map<Parameter, Constant>> context, Component leaf) {
-        objectCounter = classCounter;
-        classCounter++;
+        objectCounter = classCounter.getAndIncrement();
 
         this.outerTest = outerTest;
         this.context = context;
@@ -65,7 +65,7 @@ class CODISSynthesisContext implements TestCase {
         return TypeInference.typeOf(leaf);
     }
 
-    private static int classCounter = 0;
+    private static final AtomicInteger classCounter = new AtomicInteger();
     private final int objectCounter;
 
     @Override
@@ -0,0 +1,95 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Traverse;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * InterpolatingSolver decorator that memoizes models and interpolants of alpha-equivalent queries
+ */
+public class CachingInterpolatingSolver implements InterpolatingSolver {
+
+    private InterpolatingSolver solver;
+
+    private QueryCache<Result> cache;
+
+    private static class Result {
+        private final Map<String, Constant> model; // null if unsatisfiable
+        private final Node interpolant;
+        private final Map<Variable, String> interpolantVariables;
+
+        Result(Map<String, Constant> model, Node interpolant, Map<Variable, String> interpolantVariables) {
+            this.model = model;
+            this.interpolant = interpolant;
+            this.interpolantVariables = interpolantVariables;
+        }
+    }
+
+    public CachingInterpolatingSolver(InterpolatingSolver solver) {
+        this(solver, CachingSolver.DEFAULT_CAPACITY);
+    }
+
+    public CachingInterpolatingSolver(InterpolatingSolver solver, int capacity) {
+        this.solver = solver;
+        this.cache = new QueryCache<>(capacity);
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        CanonicalQuery query = new CanonicalQuery(Arrays.asList(leftClauses, rightClauses));
+        Optional<Result> cached = cache.lookup(query.getFingerprint(), r -> true);
+        if (cached.isPresent()) {
+            Result result = cached.get();
+            if (result.model != null) {
+                return Either.left(CachingSolver.toModel(query, result.model));
+            }
+            Map<Variable, Variable> renaming = new HashMap<>();
+            for (Map.Entry<Variable, String> entry : result.interpolantVariables.entrySet()) {
+                Variable variable = query.variableOf(entry.getValue());
+                if (variable != null) {
+                    renaming.put(entry.getKey(), variable);
+                }
+            }
+            return Either.right(Traverse.substitute(result.interpolant, renaming));
+        }
+        Either<Map<Variable, Constant>, Node> result = solver.getModelOrInterpolant(leftClauses, rightClauses);
+        if (result.isLeft()) {
+            cache.store(query.getFingerprint(),
+                    new Result(CachingSolver.fromModel(query, result.left().value()), null, null));
+        } else {
+            Node interpolant = result.right().value();
+            Map<Variable, String> interpolantVariables = new HashMap<>();
+            for (Variable variable : Traverse.collectByType(interpolant, Variable.class)) {
+                interpolantVariables.put(variable, query.nameOf(variable));
+            }
+            cache.store(query.getFingerprint(), new Result(null, interpolant, interpolantVariables));
+        }
+        return result;
+    }
+
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        return solver.withBudget(budget, action);
+    }
+}
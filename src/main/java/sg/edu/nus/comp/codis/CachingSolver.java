@@ -0,0 +1,140 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Solver decorator that memoizes verdicts, models and unsat cores of alpha-equivalent queries
+ */
+public class CachingSolver implements Solver {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private Solver solver;
+
+    private QueryCache<Result> cache;
+
+    private static class Result {
+        private final boolean satisfiable;
+        private final Map<String, Constant> model; // null if not computed
+        private final List<Integer> core; // canonical positions of assumptions, null if not computed
+
+        Result(boolean satisfiable, Map<String, Constant> model, List<Integer> core) {
+            this.satisfiable = satisfiable;
+            this.model = model;
+            this.core = core;
+        }
+    }
+
+    public CachingSolver(Solver solver) {
+        this(solver, DEFAULT_CAPACITY);
+    }
+
+    public CachingSolver(Solver solver, int capacity) {
+        this.solver = solver;
+        this.cache = new QueryCache<>(capacity);
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        CanonicalQuery query = new CanonicalQuery(Arrays.asList(clauses, assumptions));
+        Optional<Result> cached = cache.lookup(query.getFingerprint(),
+                r -> (r.satisfiable && r.model != null) || (!r.satisfiable && r.core != null));
+        if (cached.isPresent()) {
+            if (cached.get().satisfiable) {
+                return Either.left(toModel(query, cached.get().model));
+            } else {
+                return Either.right(query.fromCanonicalIndices(1, assumptions, cached.get().core));
+            }
+        }
+        Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(clauses, assumptions);
+        if (result.isLeft()) {
+            cache.store(query.getFingerprint(), new Result(true, fromModel(query, result.left().value()), null));
+        } else {
+            List<Integer> core = query.toCanonicalIndices(1, assumptions, result.right().value());
+            cache.store(query.getFingerprint(), new Result(false, null, core));
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        CanonicalQuery query = new CanonicalQuery(Arrays.asList(clauses, Collections.emptyList()));
+        Optional<Result> cached = cache.lookup(query.getFingerprint(), r -> !r.satisfiable || r.model != null);
+        if (cached.isPresent()) {
+            if (cached.get().satisfiable) {
+                return Optional.of(toModel(query, cached.get().model));
+            } else {
+                return Optional.empty();
+            }
+        }
+        Optional<Map<Variable, Constant>> result = solver.getModel(clauses);
+        if (result.isPresent()) {
+            cache.store(query.getFingerprint(), new Result(true, fromModel(query, result.get()), null));
+        } else {
+            cache.store(query.getFingerprint(), new Result(false, null, new ArrayList<>()));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isSatisfiable(List<Node> clauses) {
+        CanonicalQuery query = new CanonicalQuery(Arrays.asList(clauses, Collections.emptyList()));
+        Optional<Result> cached = cache.lookup(query.getFingerprint(), r -> true);
+        if (cached.isPresent()) {
+            return cached.get().satisfiable;
+        }
+        boolean result = solver.isSatisfiable(clauses);
+        if (result) {
+            cache.store(query.getFingerprint(), new Result(true, null, null));
+        } else {
+            cache.store(query.getFingerprint(), new Result(false, null, new ArrayList<>()));
+        }
+        return result;
+    }
+
+    static Map<String, Constant> fromModel(CanonicalQuery query, Map<Variable, Constant> model) {
+        Map<String, Constant> canonical = new HashMap<>();
+        for (Map.Entry<Variable, Constant> entry : model.entrySet()) {
+            canonical.put(query.nameOf(entry.getKey()), entry.getValue());
+        }
+        return canonical;
+    }
+
+    static Map<Variable, Constant> toModel(CanonicalQuery query, Map<String, Constant> canonical) {
+        Map<Variable, Constant> model = new HashMap<>();
+        for (Map.Entry<String, Constant> entry : canonical.entrySet()) {
+            Variable variable = query.variableOf(entry.getKey());
+            if (variable != null) {
+                model.put(variable, entry.getValue());
+            }
+        }
+        return model;
+    }
+
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        return solver.withBudget(budget, action);
+    }
+}
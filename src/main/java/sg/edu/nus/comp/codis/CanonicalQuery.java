@@ -0,0 +1,158 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.UIFApplication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Representation of a solver query that does not depend on clause order and variable names.
+ * Clauses of each group are sorted by their shape (the clause with all variables replaced by their types),
+ * then variables are renamed by VariableMarshaller in the order of first occurrence.
+ * Alpha-equivalent queries that differ only in clause order get equal fingerprints.
+ */
+class CanonicalQuery {
+
+    private final String fingerprint;
+    private final VariableMarshaller marshaller;
+    // order.get(g)[i] is the position in the original group g of the i-th canonical clause
+    private final List<int[]> order;
+
+    CanonicalQuery(List<List<Node>> groups) {
+        this.marshaller = new VariableMarshaller();
+        this.order = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        for (List<Node> group : groups) {
+            List<String> shapes = new ArrayList<>(group.size());
+            for (Node clause : group) {
+                StringBuilder shape = new StringBuilder();
+                print(clause, shape, v -> "?");
+                shapes.add(shape.toString());
+            }
+            Integer[] indices = new Integer[group.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i;
+            }
+            Arrays.sort(indices, Comparator.comparing(shapes::get)); // stable
+            int[] groupOrder = new int[indices.length];
+            builder.append('[');
+            for (int i = 0; i < indices.length; i++) {
+                groupOrder[i] = indices[i];
+                print(group.get(indices[i]), builder, marshaller::toString);
+                builder.append(';');
+            }
+            builder.append(']');
+            order.add(groupOrder);
+        }
+        this.fingerprint = digest(builder.toString());
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    String nameOf(Variable variable) {
+        return marshaller.toString(variable);
+    }
+
+    Variable variableOf(String name) {
+        return marshaller.toVariable(name);
+    }
+
+    /**
+     * Canonical positions of the given clauses of the group
+     */
+    List<Integer> toCanonicalIndices(int group, List<Node> original, Collection<Node> subset) {
+        List<Integer> indices = new ArrayList<>();
+        int[] groupOrder = order.get(group);
+        for (int i = 0; i < groupOrder.length; i++) {
+            if (subset.contains(original.get(groupOrder[i]))) {
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+
+    List<Node> fromCanonicalIndices(int group, List<Node> original, List<Integer> indices) {
+        List<Node> clauses = new ArrayList<>();
+        int[] groupOrder = order.get(group);
+        for (int index : indices) {
+            clauses.add(original.get(groupOrder[index]));
+        }
+        return clauses;
+    }
+
+    private static void print(Node root, StringBuilder builder, Function<Variable, String> names) {
+        Deque<Object> work = new ArrayDeque<>();
+        work.push(root);
+        while (!work.isEmpty()) {
+            Object item = work.pop();
+            if (item instanceof String) {
+                builder.append((String) item);
+                continue;
+            }
+            Node node = (Node) item;
+            // subterms of an instantiated clause are wrapped with its test, so the instance is never materialized:
+            InstantiatedClause clause = null;
+            while (node instanceof InstantiatedClause) {
+                clause = (InstantiatedClause) node;
+                node = clause.getTemplate();
+            }
+            if (node instanceof Variable) {
+                Variable variable = clause == null ? (Variable) node : clause.resolve((Variable) node);
+                builder.append(names.apply(variable)).append(':');
+                printType(variable.getType(), builder);
+            } else if (node instanceof Constant) {
+                builder.append('#').append(node.toString()).append(':');
+                printType(TypeInference.typeOf(node), builder);
+            } else if (node instanceof ArenaNode) {
+                Node unfolded = ((ArenaNode) node).toNode();
+                work.push(clause == null ? unfolded : new InstantiatedClause(unfolded, clause.getTest()));
+            } else if (node instanceof Application) {
+                builder.append('(').append(node.getClass().getSimpleName());
+                if (node instanceof UIFApplication) {
+                    builder.append('!').append(((UIFApplication) node).getUIF().getName());
+                }
+                work.push(")");
+                Application application = (Application) node;
+                for (int i = application.getArity() - 1; i >= 0; i--) {
+                    Node arg = application.getArg(i);
+                    work.push(clause == null ? arg : new InstantiatedClause(arg, clause.getTest()));
+                    work.push(" ");
+                }
+            } else {
+                throw new UnsupportedOperationException("cannot canonicalize " + node.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private static void printType(Type type, StringBuilder builder) {
+        if (type instanceof IntType) {
+            builder.append("Int");
+        } else if (type instanceof BoolType) {
+            builder.append("Bool");
+        } else if (type instanceof BVType) {
+            builder.append("BV").append(((BVType) type).getSize());
+        } else {
+            throw new UnsupportedOperationException("cannot canonicalize type " + type);
+        }
+    }
+
+    private static String digest(String canonical) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
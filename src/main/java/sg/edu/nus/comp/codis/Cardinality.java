@@ -49,60 +49,65 @@ public class Cardinality {
             return new ImmutablePair<>(odd, even);
         }
 
-        private static Pair<List<Node>, List<? extends Variable>> twoComp(Variable x1, Variable x2) {
+        /**
+         * Clauses of the network are added to the arena as roots
+         */
+        private static List<? extends Variable> twoComp(NodeArena arena, Variable x1, Variable x2) {
             Selector y1 = new Selector();
             Selector y2 = new Selector();
             List<Selector> sorted = new ArrayList<>();
             sorted.add(y1);
             sorted.add(y2);
 
-            List<Node> algorithm = new ArrayList<>();
-            algorithm.add(new Impl(x1, y1));
-            algorithm.add(new Impl(x2, y1));
-            algorithm.add(new Impl(new And(x1, x2), y2));
+            int e1 = arena.leaf(x1);
+            int e2 = arena.leaf(x2);
+            int f1 = arena.leaf(y1);
+            int f2 = arena.leaf(y2);
+            arena.addRoot(arena.apply(NodeArena.Op.IMPL, e1, f1));
+            arena.addRoot(arena.apply(NodeArena.Op.IMPL, e2, f1));
+            arena.addRoot(arena.apply(NodeArena.Op.OR_N,
+                    arena.apply(NodeArena.Op.NOT, e1), arena.apply(NodeArena.Op.NOT, e2), f2));
 
-            return new ImmutablePair<>(algorithm, sorted);
+            return sorted;
         }
 
-        private static Pair<List<Node>, List<? extends Variable>> pairwiseComp(List<? extends Variable> left,
-                                                                               List<? extends Variable> right) {
-            List<Node> algorithm = new ArrayList<>();
+        private static List<? extends Variable> pairwiseComp(NodeArena arena,
+                                                             List<? extends Variable> left,
+                                                             List<? extends Variable> right) {
             List<Variable> sorted = new ArrayList<>();
 
             assert (left.size() == right.size());
             int size = left.size();
 
             for (int i=0; i<size; i++) {
-                Pair<List<Node>, List<? extends Variable>> twoCompResult = twoComp(left.get(i), right.get(i));
-                algorithm.addAll(twoCompResult.getLeft());
-                sorted.addAll(twoCompResult.getRight());
+                sorted.addAll(twoComp(arena, left.get(i), right.get(i)));
             }
 
-            return new ImmutablePair<>(algorithm, sorted);
+            return sorted;
         }
 
-        private static Pair<List<Node>, List<? extends Variable>> merge(List<? extends Variable> left,
-                                                                        List<? extends Variable> right) {
+        private static List<? extends Variable> merge(NodeArena arena,
+                                                      List<? extends Variable> left,
+                                                      List<? extends Variable> right) {
             int a = left.size();
             int b = right.size();
 
             if (a == 0) {
-                return new ImmutablePair<>(new ArrayList<>(), right);
+                return right;
             }
 
             if (b == 0) {
-                return new ImmutablePair<>(new ArrayList<>(), left);
+                return left;
             }
 
             if (a == 1 && b == 1) {
-                return twoComp(left.get(0), right.get(0));
+                return twoComp(arena, left.get(0), right.get(0));
             }
 
             if (a % 2 == 1 && b % 2 == 0) {
-                return merge(right, left);
+                return merge(arena, right, left);
             }
 
-            List<Node> algorithm = new ArrayList<>();
             List<Variable> sorted = new ArrayList<>();
 
             Pair<List<? extends Variable>, List<? extends Variable>> splitLeft = splitByEvenness(left);
@@ -112,21 +117,15 @@ public class Cardinality {
             List<? extends Variable> rightOdd = splitRight.getLeft();
             List<? extends Variable> rightEven = splitRight.getRight();
 
-            Pair<List<Node>, List<? extends Variable>> oddResult = merge(leftOdd, rightOdd);
-            Pair<List<Node>, List<? extends Variable>> evenResult = merge(leftEven, rightEven);
-            algorithm.addAll(oddResult.getLeft());
-            algorithm.addAll(evenResult.getLeft());
-            List<? extends Variable> oddResultVariables = oddResult.getRight();
-            List<? extends Variable> evenResultVariables = evenResult.getRight();
+            List<? extends Variable> oddResultVariables = merge(arena, leftOdd, rightOdd);
+            List<? extends Variable> evenResultVariables = merge(arena, leftEven, rightEven);
 
             if (a % 2 == 0 && b % 2 == 0) {
                 Variable z1 = oddResultVariables.get(0);
                 List<? extends Variable> restOfOdds = oddResultVariables.subList(1, oddResultVariables.size());
                 Variable zLast = evenResultVariables.get(evenResultVariables.size() - 1);
                 List<? extends Variable> restOfEvens = evenResultVariables.subList(0, evenResultVariables.size() - 1);
-                Pair<List<Node>, List<? extends Variable>> pairwiseResult = pairwiseComp(restOfEvens, restOfOdds);
-                algorithm.addAll(pairwiseResult.getLeft());
-                List<? extends Variable> pairwiseResultVariables = pairwiseResult.getRight();
+                List<? extends Variable> pairwiseResultVariables = pairwiseComp(arena, restOfEvens, restOfOdds);
                 sorted.add(z1);
                 sorted.addAll(pairwiseResultVariables);
                 sorted.add(zLast);
@@ -136,9 +135,7 @@ public class Cardinality {
                 Variable z1 = oddResultVariables.get(0);
                 Variable zLast = oddResultVariables.get(oddResultVariables.size() - 1);
                 List<? extends Variable> restOfOdds = oddResultVariables.subList(1, oddResultVariables.size() - 1);
-                Pair<List<Node>, List<? extends Variable>> pairwiseResult = pairwiseComp(evenResultVariables, restOfOdds);
-                algorithm.addAll(pairwiseResult.getLeft());
-                List<? extends Variable> pairwiseResultVariables = pairwiseResult.getRight();
+                List<? extends Variable> pairwiseResultVariables = pairwiseComp(arena, evenResultVariables, restOfOdds);
                 sorted.add(z1);
                 sorted.addAll(pairwiseResultVariables);
                 sorted.add(zLast);
@@ -147,50 +144,42 @@ public class Cardinality {
             if (a % 2 == 0 && b % 2 == 1) {
                 Variable z1 = oddResultVariables.get(0);
                 List<? extends Variable> restOfOdds = oddResultVariables.subList(1, oddResultVariables.size());
-                Pair<List<Node>, List<? extends Variable>> pairwiseResult = pairwiseComp(evenResultVariables, restOfOdds);
-                algorithm.addAll(pairwiseResult.getLeft());
-                List<? extends Variable> pairwiseResultVariables = pairwiseResult.getRight();
+                List<? extends Variable> pairwiseResultVariables = pairwiseComp(arena, evenResultVariables, restOfOdds);
                 sorted.add(z1);
                 sorted.addAll(pairwiseResultVariables);
             }
 
-            return new ImmutablePair<>(algorithm, sorted);
+            return sorted;
         }
 
-        private static Pair<List<Node>, List<? extends Variable>> makeSortingNetwork(List<? extends Variable> bits) {
+        private static List<? extends Variable> makeSortingNetwork(NodeArena arena, List<? extends Variable> bits) {
             int n = bits.size();
             if (n == 1) {
-                return new ImmutablePair<>(new ArrayList<>(), bits);
+                return bits;
             }
             if (n == 2) {
-                return twoComp(bits.get(0), bits.get(1));
+                return twoComp(arena, bits.get(0), bits.get(1));
             }
-            List<Node> algorithm = new ArrayList<>();
-            List<Variable> sorted = new ArrayList<>();
 
             int l = n/2;
             List<? extends Variable> left = bits.subList(0, l);
             List<? extends Variable> right = bits.subList(l, n);
-            Pair<List<Node>, List<? extends Variable>> leftNetwork = makeSortingNetwork(left);
-            Pair<List<Node>, List<? extends Variable>> rightNetwork = makeSortingNetwork(right);
-            algorithm.addAll(leftNetwork.getLeft());
-            algorithm.addAll(rightNetwork.getLeft());
-            Pair<List<Node>, List<? extends Variable>> mergeResult = merge(leftNetwork.getRight(), rightNetwork.getRight());
-            algorithm.addAll(mergeResult.getLeft());
-            sorted.addAll(mergeResult.getRight());
-
-            return new ImmutablePair<>(algorithm, sorted);
+            List<? extends Variable> leftNetwork = makeSortingNetwork(arena, left);
+            List<? extends Variable> rightNetwork = makeSortingNetwork(arena, right);
+            return merge(arena, leftNetwork, rightNetwork);
         }
 
+        /**
+         * The network is stored in a NodeArena, the clauses are its facades
+         */
         public static List<Node> atMostK(int k, List<? extends Variable> bits) {
-            ArrayList<Node> result = new ArrayList<>();
             if (k >= bits.size()) {
-                return result;
+                return new ArrayList<>();
             }
-            Pair<List<Node>, List<? extends Variable>> sortingNetwork = makeSortingNetwork(bits);
-            result.addAll(sortingNetwork.getLeft());
-            result.add(new Not(sortingNetwork.getRight().get(k)));
-            return result;
+            NodeArena arena = new NodeArena();
+            List<? extends Variable> sorted = makeSortingNetwork(arena, bits);
+            arena.addRoot(arena.apply(NodeArena.Op.NOT, arena.leaf(sorted.get(k))));
+            return arena.getRoots();
         }
 
         public static List<Node> atLeastK(int k, List<? extends Variable> bits) {
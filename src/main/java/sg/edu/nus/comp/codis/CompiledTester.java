@@ -0,0 +1,168 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.util.*;
+
+/**
+ * This tester runs programs compiled by ProgramCompiler on the inputs of assignment tests.
+ * Inputs and expected outputs are converted once per test, so scoring a candidate is a loop over arrays.
+ *
+ * Other tests, programs that cannot be compiled and undefined outputs are checked by the fallback tester.
+ *
+ * Like its compiler, the tester is not thread-safe. CounterexampleFinder hands each tester to one task at a time.
+ */
+public class CompiledTester implements Tester {
+
+    private static class PreparedTest {
+        private long[] inputs;
+        private final long expected;
+        private final Set<? extends Variable> assigned;
+
+        PreparedTest(long[] inputs, long expected, Set<? extends Variable> assigned) {
+            this.inputs = inputs;
+            this.expected = expected;
+            this.assigned = assigned;
+        }
+    }
+
+    private ProgramCompiler compiler = new ProgramCompiler();
+
+    private Tester fallback;
+
+    // tests are reused for all candidates:
+    private Map<TestCase, Optional<PreparedTest>> prepared = new IdentityHashMap<>();
+
+    public CompiledTester() {
+        this(new EvaluationTester());
+    }
+
+    public CompiledTester(Tester fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public boolean isPassing(Program program, Map<Parameter, Constant> parameterValuation, TestCase test) {
+        return getFailing(program, parameterValuation, Collections.singletonList(test)).isEmpty();
+    }
+
+    @Override
+    public List<TestCase> getFailing(Program program,
+                                     Map<Parameter, Constant> parameterValuation,
+                                     List<? extends TestCase> tests) {
+        ProgramCompiler.CompiledProgram compiled;
+        try {
+            compiled = compiler.compile(program, parameterValuation);
+        } catch (UnsupportedOperationException e) {
+            return fallback.getFailing(program, parameterValuation, tests);
+        }
+        List<TestCase> failing = new ArrayList<>();
+        for (TestCase test : tests) {
+            if (!isPassing(compiled, program, parameterValuation, test)) {
+                failing.add(test);
+            }
+        }
+        return failing;
+    }
+
+    /**
+     * Columnar lanes that assign all variables of the program are run on the columns of the suite,
+     * other lanes are checked test by test
+     */
+    @Override
+    public BitSet getPassing(Program program,
+                             Map<Parameter, Constant> parameterValuation,
+                             TestSuite suite,
+                             BitSet lanes) {
+        ProgramCompiler.CompiledProgram compiled;
+        try {
+            compiled = compiler.compile(program, parameterValuation);
+        } catch (UnsupportedOperationException e) {
+            return fallback.getPassing(program, parameterValuation, suite, lanes);
+        }
+        BitSet passing = new BitSet(suite.size());
+        BitSet regular = (BitSet) lanes.clone();
+        if (!compiled.getType().equals(suite.getOutputType())) {
+            regular.clear();
+        }
+        List<Variable> variables = new ArrayList<>(compiled.getVariables());
+        int[] slots = new int[variables.size()];
+        long[][] columns = new long[variables.size()][];
+        for (int i = 0; i < variables.size(); i++) {
+            slots[i] = compiler.getSlot(variables.get(i));
+            columns[i] = suite.getColumn(variables.get(i));
+            regular.and(suite.getAssigned(variables.get(i)));
+        }
+        BitSet irregular = (BitSet) lanes.clone();
+        long[] inputs = new long[compiler.getSlotCount()];
+        long[] outputs = suite.getOutputs();
+        for (int lane = regular.nextSetBit(0); lane >= 0; lane = regular.nextSetBit(lane + 1)) {
+            if (!suite.isColumnar(lane)) {
+                continue;
+            }
+            for (int i = 0; i < slots.length; i++) {
+                inputs[slots[i]] = columns[i][lane];
+            }
+            try {
+                if (compiled.applyAsLong(inputs) == outputs[lane]) {
+                    passing.set(lane);
+                }
+                irregular.clear(lane);
+            } catch (ArithmeticException e) {
+                // checked by the fallback tester
+            }
+        }
+        for (int lane = irregular.nextSetBit(0); lane >= 0; lane = irregular.nextSetBit(lane + 1)) {
+            if (isPassing(compiled, program, parameterValuation, suite.get(lane))) {
+                passing.set(lane);
+            }
+        }
+        return passing;
+    }
+
+    private boolean isPassing(ProgramCompiler.CompiledProgram compiled,
+                              Program program,
+                              Map<Parameter, Constant> parameterValuation,
+                              TestCase test) {
+        // outputs of different types can have the same representation:
+        if (!compiled.getType().equals(test.getOutputType())) {
+            return fallback.isPassing(program, parameterValuation, test);
+        }
+        Optional<PreparedTest> preparedTest = prepare(test);
+        if (!preparedTest.isPresent() || !preparedTest.get().assigned.containsAll(compiled.getVariables())) {
+            return fallback.isPassing(program, parameterValuation, test);
+        }
+        try {
+            return compiled.applyAsLong(preparedTest.get().inputs) == preparedTest.get().expected;
+        } catch (ArithmeticException e) {
+            return fallback.isPassing(program, parameterValuation, test);
+        }
+    }
+
+    /**
+     * Input arrays are extended when the compiler assigns new slots
+     */
+    private Optional<PreparedTest> prepare(TestCase test) {
+        Optional<PreparedTest> preparedTest = prepared.get(test);
+        if (preparedTest == null) {
+            preparedTest = Optional.empty();
+            if (test instanceof AssignmentTestCase) {
+                AssignmentTestCase assignmentTest = (AssignmentTestCase) test;
+                try {
+                    Constant output = Evaluator.evaluate(assignmentTest.getOutputValue(), Collections.emptyMap());
+                    long expected = Evaluator.leafValue(output, Evaluator.width(test.getOutputType()), Collections.emptyMap());
+                    preparedTest = Optional.of(new PreparedTest(compiler.toInputs(assignmentTest.getAssignment()),
+                            expected, assignmentTest.getAssignment().keySet()));
+                } catch (UnsupportedOperationException | ArithmeticException | IllegalArgumentException e) {
+                    preparedTest = Optional.empty();
+                }
+            }
+            prepared.put(test, preparedTest);
+        }
+        if (preparedTest.isPresent() && preparedTest.get().inputs.length < compiler.getSlotCount()) {
+            preparedTest.get().inputs = compiler.toInputs(((AssignmentTestCase) test).getAssignment());
+        }
+        return preparedTest;
+    }
+
+}
@@ -26,6 +26,8 @@ public class ComponentBasedSynthesis implements Synthesis {
     private Type encodingType;
     private Optional<Integer> sizeBound;
 
+    private ParallelEncoder encoder = ParallelEncoder.sequential();
+
     public ComponentBasedSynthesis(Solver solver, boolean useBV32, Optional<Integer> sizeBound) {
         this.solver = solver;
         if (useBV32) {
@@ -36,6 +38,10 @@ public class ComponentBasedSynthesis implements Synthesis {
         this.sizeBound = sizeBound;
     }
 
+    public void setEncoder(ParallelEncoder encoder) {
+        this.encoder = encoder;
+    }
+
     @Override
     public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite, Multiset<Node> components) {
         List<Component> flattenedComponents = components.stream().map(Component::new).collect(Collectors.toList());
@@ -51,6 +57,16 @@ public class ComponentBasedSynthesis implements Synthesis {
         }
     }
 
+    @Override
+    public SynthesisResult synthesize(List<? extends TestCase> testSuite, Multiset<Node> components, Budget budget) {
+        try {
+            budget.check();
+            return solver.withBudget(budget, () -> SynthesisResult.of(synthesize(testSuite, components)));
+        } catch (BudgetExhaustedException e) {
+            return SynthesisResult.timedOut(Optional.empty());
+        }
+    }
+
     @Override
     public List<Pair<Program, Map<Parameter, Constant>>> synthesizeAll(List<? extends TestCase> testSuite, Multiset<Node> components) {
         // Don't know how to synthesize all with this encoding
@@ -215,15 +231,18 @@ public class ComponentBasedSynthesis implements Synthesis {
         List<Node> connections = connection(components, result);
         List<Node> clauses = new ArrayList<>();
         clauses.addAll(wfp);
-        for (TestCase test : testSuite) {
+        // library and connection clauses are shared between tests and instantiated by the solver:
+        clauses.addAll(encoder.encode(testSuite, test -> {
+            List<Node> block = new ArrayList<>();
             for (Node node : lib) {
-                clauses.add(instantiate(node, test));
+                block.add(new InstantiatedClause(node, test));
             }
             for (Node node : connections) {
-                clauses.add(instantiate(node, test));
+                block.add(new InstantiatedClause(node, test));
             }
-            clauses.addAll(testToConstraint(test, result));
-        }
+            block.addAll(testToConstraint(test, result));
+            return block;
+        }));
         return clauses;
     }
 
@@ -0,0 +1,94 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Selector;
+import sg.edu.nus.comp.codis.ast.Variable;
+import sg.edu.nus.comp.codis.ast.theory.Impl;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Interpolating solver for theories without interpolation support (e.g. bitvectors in MathSAT).
+ * Left clauses are guarded by selectors, and the interpolant is the conjunction of the left clauses in the unsat core.
+ * Such interpolant is implied by the left clauses and inconsistent with the right clauses,
+ * but it is not restricted to the common vocabulary.
+ */
+public class CoreInterpolatingSolver implements InterpolatingSolver {
+
+    private Solver solver;
+
+    private boolean minimizeCore;
+
+    public CoreInterpolatingSolver(Solver solver) {
+        this(solver, false);
+    }
+
+    /**
+     * @param minimizeCore remove redundant clauses from the core, one solver call per clause
+     */
+    public CoreInterpolatingSolver(Solver solver, boolean minimizeCore) {
+        this.solver = solver;
+        this.minimizeCore = minimizeCore;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        List<Node> clauses = new ArrayList<>(rightClauses);
+        List<Node> selectors = new ArrayList<>();
+        Map<Node, Node> guarded = new IdentityHashMap<>();
+        for (Node clause : leftClauses) {
+            Selector selector = new Selector();
+            clauses.add(new Impl(selector, clause));
+            selectors.add(selector);
+            guarded.put(selector, clause);
+        }
+        Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(clauses, selectors);
+        if (result.isLeft()) {
+            Map<Variable, Constant> model = new HashMap<>(result.left().value());
+            model.keySet().removeAll(selectors);
+            return Either.left(model);
+        }
+        List<Node> core = result.right().value();
+        if (minimizeCore) {
+            core = minimize(clauses, core);
+        }
+        List<Node> interpolant = new ArrayList<>();
+        for (Node selector : core) {
+            interpolant.add(guarded.get(selector));
+        }
+        return Either.right(Node.conjunction(interpolant));
+    }
+
+    private List<Node> minimize(List<Node> clauses, List<Node> core) {
+        List<Node> current = new ArrayList<>(core);
+        int i = 0;
+        while (i < current.size()) {
+            List<Node> candidate = new ArrayList<>(current);
+            candidate.remove(i);
+            Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(clauses, candidate);
+            if (result.isRight()) {
+                // the solver may return an even smaller core
+                Set<Node> smaller = Collections.newSetFromMap(new IdentityHashMap<>());
+                smaller.addAll(result.right().value());
+                List<Node> next = new ArrayList<>();
+                for (Node selector : current) {
+                    if (smaller.contains(selector)) {
+                        next.add(selector);
+                    }
+                }
+                current = next;
+            } else {
+                i++;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        return solver.withBudget(budget, action);
+    }
+}
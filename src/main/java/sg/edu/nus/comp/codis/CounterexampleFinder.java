@@ -0,0 +1,315 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Parameter;
+import sg.edu.nus.comp.codis.ast.Program;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Checks a candidate against the lanes of a test suite on a fork-join pool, looking for the first failing lane.
+ * The suite is split into partitions of consecutive lanes. Each partition borrows an idle tester, creating one
+ * if there is none, so testers (and their solvers) are never used by two threads at once.
+ * Closing the finder releases the created testers.
+ *
+ * Unless the exact number of passing lanes is requested, partitions after the first known failure are skipped.
+ * The counterexample does not depend on scheduling: it is always the first failing lane.
+ *
+ * A budget is checked before each block or partition, a running tester is not interrupted.
+ */
+public class CounterexampleFinder implements AutoCloseable {
+
+    private static final int DEFAULT_THRESHOLD = 64;
+
+    private final ForkJoinPool pool;
+
+    // number of lanes in a partition:
+    private final int threshold;
+
+    private final Supplier<Tester> testers;
+
+    private final ConcurrentLinkedQueue<Tester> idle = new ConcurrentLinkedQueue<>();
+
+    // releases the created testers:
+    private final ConcurrentLinkedQueue<Runnable> releases = new ConcurrentLinkedQueue<>();
+
+    private TestSuite partitioned;
+    private List<TestSuite> partitions;
+
+    /**
+     * @param testers creates a new tester on each call, testers such as CompiledTester are not thread-safe
+     * @param release applied to each created tester on close, e.g. to dispose its solver
+     */
+    public <T extends Tester> CounterexampleFinder(Supplier<T> testers,
+                                                   Consumer<? super T> release,
+                                                   ForkJoinPool pool,
+                                                   int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        this.testers = () -> {
+            T tester = testers.get();
+            releases.add(() -> release.accept(tester));
+            return tester;
+        };
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public CounterexampleFinder(Supplier<? extends Tester> testers, ForkJoinPool pool, int threshold) {
+        this(testers, tester -> {}, pool, threshold);
+    }
+
+    public CounterexampleFinder(Supplier<? extends Tester> testers, ForkJoinPool pool) {
+        this(testers, pool, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Checks lanes with the given tester in the calling thread
+     */
+    public static CounterexampleFinder sequential(Tester tester) {
+        return new CounterexampleFinder(() -> tester, null, Integer.MAX_VALUE);
+    }
+
+    private Tester borrow() {
+        Tester tester = idle.poll();
+        return tester != null ? tester : testers.get();
+    }
+
+    private void giveBack(Tester tester) {
+        idle.add(tester);
+    }
+
+    /**
+     * Releases the created testers, the finder can still be used afterwards
+     */
+    @Override
+    public void close() {
+        idle.clear();
+        for (Runnable release = releases.poll(); release != null; release = releases.poll()) {
+            release.run();
+        }
+    }
+
+    public static class Result {
+
+        private final OptionalInt counterexample;
+
+        private final BitSet passing;
+
+        private final boolean exhaustive;
+
+        Result(OptionalInt counterexample, BitSet passing, boolean exhaustive) {
+            this.counterexample = counterexample;
+            this.passing = passing;
+            this.exhaustive = exhaustive;
+        }
+
+        /**
+         * @return first failing lane, or nothing if all lanes pass
+         */
+        public OptionalInt getCounterexample() {
+            return counterexample;
+        }
+
+        /**
+         * @return passing lanes among the checked ones
+         */
+        public BitSet getPassing() {
+            return passing;
+        }
+
+        /**
+         * @return whether all lanes were checked, i.e. the passing lanes are exact
+         */
+        public boolean isExhaustive() {
+            return exhaustive;
+        }
+    }
+
+    /**
+     * @param exhaustive check all lanes even after a failing one is found
+     */
+    public Result find(Program program,
+                       Map<Parameter, Constant> parameterValuation,
+                       TestSuite suite,
+                       BitSet lanes,
+                       boolean exhaustive) {
+        return find(program, parameterValuation, suite, lanes, exhaustive, Budget.unlimited());
+    }
+
+    /**
+     * @param exhaustive check all lanes even after a failing one is found
+     * @throws BudgetExhaustedException if the budget is exhausted before all required lanes are checked
+     */
+    public Result find(Program program,
+                       Map<Parameter, Constant> parameterValuation,
+                       TestSuite suite,
+                       BitSet lanes,
+                       boolean exhaustive,
+                       Budget budget) {
+        if (pool == null || suite.size() <= threshold) {
+            Tester tester = borrow();
+            try {
+                return findInBlocks(tester, program, parameterValuation, suite, lanes, exhaustive, budget);
+            } finally {
+                giveBack(tester);
+            }
+        }
+        List<TestSuite> parts = partition(suite);
+        BitSet[] passing = new BitSet[parts.size()];
+        AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+        pool.invoke(new CheckingTask(program, parameterValuation, parts, lanes, exhaustive, budget, bound, passing, 0, parts.size()));
+        BitSet merged = new BitSet(suite.size());
+        BitSet checked = new BitSet(suite.size());
+        for (int i = 0; i < parts.size(); i++) {
+            if (passing[i] != null) {
+                int offset = i * threshold;
+                checked.set(offset, offset + parts.get(i).size());
+                for (int lane = passing[i].nextSetBit(0); lane >= 0; lane = passing[i].nextSetBit(lane + 1)) {
+                    merged.set(offset + lane);
+                }
+            }
+        }
+        checked.and(lanes);
+        return result(checked, merged, checked.equals(lanes));
+    }
+
+    /**
+     * Checks lanes in blocks of doubling size, so that testers still check many lanes at once,
+     * and unless exhaustive stops after the block with the first failing lane
+     */
+    private static Result findInBlocks(Tester tester,
+                                       Program program,
+                                       Map<Parameter, Constant> parameterValuation,
+                                       TestSuite suite,
+                                       BitSet lanes,
+                                       boolean exhaustive,
+                                       Budget budget) {
+        BitSet passing = new BitSet(suite.size());
+        BitSet checked = new BitSet(suite.size());
+        int from = 0;
+        for (int block = 1; from < suite.size(); block = Math.min(2 * block, suite.size())) {
+            budget.check();
+            int to = Math.min(from + block, suite.size());
+            BitSet blockLanes = (BitSet) lanes.clone();
+            blockLanes.clear(0, from);
+            blockLanes.clear(to, suite.size());
+            BitSet blockPassing = tester.getPassing(program, parameterValuation, suite, blockLanes);
+            passing.or(blockPassing);
+            checked.or(blockLanes);
+            if (!exhaustive && !blockPassing.equals(blockLanes)) {
+                break;
+            }
+            from = to;
+        }
+        checked.and(lanes);
+        return result(checked, passing, checked.equals(lanes));
+    }
+
+    private static Result result(BitSet checked, BitSet passing, boolean exhaustive) {
+        BitSet failing = (BitSet) checked.clone();
+        failing.andNot(passing);
+        int first = failing.nextSetBit(0);
+        return new Result(first < 0 ? OptionalInt.empty() : OptionalInt.of(first), passing, exhaustive);
+    }
+
+    /**
+     * Partitions of the last suite are reused, since CEGIS checks every candidate against the same suite
+     */
+    private synchronized List<TestSuite> partition(TestSuite suite) {
+        if (partitioned != suite) {
+            List<TestSuite> parts = new ArrayList<>();
+            for (int from = 0; from < suite.size(); from += threshold) {
+                parts.add(new TestSuite(suite.getTests().subList(from, Math.min(from + threshold, suite.size()))));
+            }
+            partitions = parts;
+            partitioned = suite;
+        }
+        return partitions;
+    }
+
+    private class CheckingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Program program;
+        private final Map<Parameter, Constant> parameterValuation;
+        private final List<TestSuite> parts;
+        private final BitSet lanes;
+        private final boolean exhaustive;
+        private final Budget budget;
+        // first failing lane found so far:
+        private final AtomicInteger bound;
+        private final BitSet[] passing;
+        private final int from;
+        private final int to;
+
+        CheckingTask(Program program,
+                     Map<Parameter, Constant> parameterValuation,
+                     List<TestSuite> parts,
+                     BitSet lanes,
+                     boolean exhaustive,
+                     Budget budget,
+                     AtomicInteger bound,
+                     BitSet[] passing,
+                     int from,
+                     int to) {
+            this.program = program;
+            this.parameterValuation = parameterValuation;
+            this.parts = parts;
+            this.lanes = lanes;
+            this.exhaustive = exhaustive;
+            this.budget = budget;
+            this.bound = bound;
+            this.passing = passing;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CheckingTask(program, parameterValuation, parts, lanes, exhaustive, budget, bound, passing, from, middle),
+                          new CheckingTask(program, parameterValuation, parts, lanes, exhaustive, budget, bound, passing, middle, to));
+                return;
+            }
+            int offset = from * threshold;
+            if (!exhaustive && offset >= bound.get()) {
+                return;
+            }
+            TestSuite part = parts.get(from);
+            BitSet partLanes = lanes.get(offset, offset + part.size());
+            if (partLanes.isEmpty()) {
+                passing[from] = partLanes;
+                return;
+            }
+            budget.check();
+            Tester tester = borrow();
+            BitSet partPassing;
+            try {
+                partPassing = tester.getPassing(program, parameterValuation, part, partLanes);
+            } finally {
+                giveBack(tester);
+            }
+            BitSet failing = (BitSet) partLanes.clone();
+            failing.andNot(partPassing);
+            if (!failing.isEmpty()) {
+                bound.accumulateAndGet(offset + failing.nextSetBit(0), Math::min);
+            }
+            passing[from] = partPassing;
+        }
+    }
+
+}
@@ -19,8 +19,15 @@ public class DivergentTest {
 
     private Solver solver;
 
+    private ParallelEncoder encoder;
+
     public DivergentTest(Solver solver) {
+        this(solver, ParallelEncoder.sequential());
+    }
+
+    public DivergentTest(Solver solver, ParallelEncoder encoder) {
         this.solver = solver;
+        this.encoder = encoder;
     }
 
     public Optional<Triple<TestCase, Node, Node>> generate(Multiset<Node> components,
@@ -29,6 +36,7 @@ public class DivergentTest {
         assert !testSuite.isEmpty();
 
         ComponentBasedSynthesis cbs = new ComponentBasedSynthesis(solver, false, Optional.empty()); //FIXME: integer encoding is not efficient, why we use it?
+        cbs.setEncoder(encoder);
 
         Type outputType = testSuite.get(0).getOutputType();
 
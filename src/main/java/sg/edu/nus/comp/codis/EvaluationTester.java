@@ -1,23 +1,170 @@
 package sg.edu.nus.comp.codis;
 
 import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.BoolConst;
+import sg.edu.nus.comp.codis.ast.theory.Equal;
 
-import java.util.Map;
-
-import static sg.edu.nus.comp.codis.ast.Traverse.substitute;
+import java.util.*;
 
 /**
- * This tester checks if a test passes through evaluation
- * For this purpose we use simplifier that works only for integer arithmetic expressions
+ * This tester checks if a test passes through concrete evaluation of the program semantics.
+ * Tests other than assignments are evaluated through their constraints:
+ * variables are defined by equalities whose other side can already be evaluated, then all constraints are checked.
+ *
+ * Programs and tests that cannot be evaluated, e.g. with UIFs or division by zero, are checked by the fallback tester.
  */
 public class EvaluationTester implements Tester {
+
+    private Optional<Tester> fallback;
+
+    public EvaluationTester() {
+        this.fallback = Optional.empty();
+    }
+
+    public EvaluationTester(Tester fallback) {
+        this.fallback = Optional.of(fallback);
+    }
+
     @Override
     public boolean isPassing(Program program, Map<Parameter, Constant> parameterValuation, TestCase test) {
-        if (test instanceof AssignmentTestCase) {
-            Node node = Traverse.substitute(program.getSemantics(parameterValuation), ((AssignmentTestCase) test).getAssignment());
-            return Simplifier.simplify(node).equals(((AssignmentTestCase) test).getOutputValue());
-        } else {
-            throw new UnsupportedOperationException();
+        return getFailing(program, parameterValuation, Collections.singletonList(test)).isEmpty();
+    }
+
+    /**
+     * The semantics is compiled once and evaluated for each test
+     */
+    @Override
+    public List<TestCase> getFailing(Program program,
+                                     Map<Parameter, Constant> parameterValuation,
+                                     List<? extends TestCase> tests) {
+        Evaluator evaluator;
+        try {
+            evaluator = new Evaluator(program.getSemantics(parameterValuation));
+        } catch (UnsupportedOperationException e) {
+            if (!fallback.isPresent()) {
+                throw e;
+            }
+            return fallback.get().getFailing(program, parameterValuation, tests);
+        }
+        List<TestCase> failing = new ArrayList<>();
+        for (TestCase test : tests) {
+            Optional<Boolean> passing = evaluate(evaluator, test);
+            if (!passing.isPresent()) {
+                passing = Optional.of(fallback.get().isPassing(program, parameterValuation, test));
+            }
+            if (!passing.get()) {
+                failing.add(test);
+            }
+        }
+        return failing;
+    }
+
+    /**
+     * Columnar lanes are evaluated column-at-a-time, other lanes and lanes with undefined values test by test
+     */
+    @Override
+    public BitSet getPassing(Program program,
+                             Map<Parameter, Constant> parameterValuation,
+                             TestSuite suite,
+                             BitSet lanes) {
+        Evaluator evaluator;
+        try {
+            evaluator = new Evaluator(program.getSemantics(parameterValuation));
+        } catch (UnsupportedOperationException e) {
+            if (!fallback.isPresent()) {
+                throw e;
+            }
+            return fallback.get().getPassing(program, parameterValuation, suite, lanes);
+        }
+        BitSet passing = new BitSet(suite.size());
+        BitSet irregular = (BitSet) lanes.clone();
+        if (TypeInference.typeOf(program.getRoot()).equals(suite.getOutputType())) {
+            BitSet undefined = new BitSet(suite.size());
+            long[] values = evaluator.evaluate(suite, undefined);
+            long[] outputs = suite.getOutputs();
+            for (int lane = 0; lane < values.length; lane++) {
+                if (values[lane] == outputs[lane]) {
+                    passing.set(lane);
+                }
+            }
+            passing.and(lanes);
+            passing.andNot(undefined);
+            irregular.and(undefined);
+        }
+        for (int lane = irregular.nextSetBit(0); lane >= 0; lane = irregular.nextSetBit(lane + 1)) {
+            TestCase test = suite.get(lane);
+            Optional<Boolean> verdict = evaluate(evaluator, test);
+            if (!verdict.isPresent()) {
+                verdict = Optional.of(fallback.get().isPassing(program, parameterValuation, test));
+            }
+            if (verdict.get()) {
+                passing.set(lane);
+            }
+        }
+        return passing;
+    }
+
+    /**
+     * @return verdict, or nothing if the test should be checked by the fallback tester
+     */
+    private Optional<Boolean> evaluate(Evaluator program, TestCase test) {
+        try {
+            if (test instanceof AssignmentTestCase) {
+                AssignmentTestCase assignmentTest = (AssignmentTestCase) test;
+                Constant expected = Evaluator.evaluate(assignmentTest.getOutputValue(), Collections.emptyMap());
+                return Optional.of(program.evaluate(assignmentTest.getAssignment()).equals(expected));
+            }
+            return Optional.of(satisfiesConstraints(program, test));
+        } catch (ArithmeticException e) {
+            if (fallback.isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.of(false); // undefined output
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            if (fallback.isPresent()) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private static boolean satisfiesConstraints(Evaluator program, TestCase test) {
+        Variable output = new ProgramOutput(test.getOutputType());
+        List<Node> constraints = test.getConstraints(output);
+        Map<Variable, Constant> assignment = new HashMap<>();
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            if (!assignment.containsKey(output) && assignment.keySet().containsAll(program.getVariables())) {
+                assignment.put(output, program.evaluate(assignment));
+                progress = true;
+            }
+            for (Node constraint : constraints) {
+                if (constraint instanceof Equal) {
+                    Node left = ((Equal) constraint).getLeft();
+                    Node right = ((Equal) constraint).getRight();
+                    if (define(left, right, assignment) || define(right, left, assignment)) {
+                        progress = true;
+                    }
+                }
+            }
+        }
+        for (Node constraint : constraints) {
+            if (!Evaluator.evaluate(constraint, assignment).equals(BoolConst.TRUE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean define(Node variable, Node value, Map<Variable, Constant> assignment) {
+        if (!(variable instanceof Variable) || assignment.containsKey(variable)) {
+            return false;
+        }
+        if (!assignment.keySet().containsAll(Traverse.collectByType(value, Variable.class))) {
+            return false;
         }
+        assignment.put((Variable) variable, Evaluator.evaluate(value, assignment));
+        return true;
     }
 }
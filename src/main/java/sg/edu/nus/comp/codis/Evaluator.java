@@ -0,0 +1,539 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Concrete interpreter for ground formulas over Int, Bool and bit-vectors of width up to 64.
+ *
+ * The node is copied into a NodeArena once and evaluated for each assignment by a forward scan over its entries.
+ * Integers are evaluated as long, booleans as 0/1, and bit-vectors as unsigned longs masked to their width.
+ * Division follows SMT-LIB: integer division by zero is undefined, bit-vector division by zero is total.
+ * Integers are unbounded in SMT-LIB, so integer arithmetic that overflows a long is also undefined.
+ */
+public class Evaluator {
+
+    private final NodeArena arena;
+
+    private final int root;
+
+    private final Type type;
+
+    // bit-vector width of each entry, 0 for Int and Bool:
+    private final int[] widths;
+
+    public Evaluator(Node node) {
+        this.arena = new NodeArena();
+        this.root = arena.add(node);
+        this.type = TypeInference.typeOf(node);
+        for (int i = 0; i <= root; i++) {
+            if (arena.getOp(i) == NodeArena.Op.LEAF
+                    && !(arena.getLeaf(i) instanceof Variable) && !(arena.getLeaf(i) instanceof Constant)) {
+                throw new UnsupportedOperationException("cannot evaluate " + arena.getLeaf(i).getClass().getSimpleName());
+            }
+        }
+        this.widths = widths(arena, root);
+    }
+
+    /**
+     * @return bit-vector width of each entry up to root, 0 for Int and Bool
+     */
+    static int[] widths(NodeArena arena, int root) {
+        int[] widths = new int[root + 1];
+        for (int i = 0; i <= root; i++) {
+            NodeArena.Op op = arena.getOp(i);
+            if (op == NodeArena.Op.LEAF) {
+                widths[i] = width(TypeInference.typeOf(arena.getLeaf(i)));
+            } else if (!isPredicate(op)) {
+                widths[i] = widths[arena.getChild(i, op == NodeArena.Op.ITE ? 1 : 0)];
+            }
+        }
+        return widths;
+    }
+
+    public List<Variable> getVariables() {
+        return arena.getVariables(root);
+    }
+
+    public static Constant evaluate(Node node, Map<? extends Variable, ? extends Node> assignment) {
+        return new Evaluator(node).evaluate(assignment);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a variable is not assigned
+     * @throws ArithmeticException if the value is undefined because of integer division by zero or overflow
+     */
+    public Constant evaluate(Map<? extends Variable, ? extends Node> assignment) {
+        long[] values = new long[root + 1];
+        boolean[] undefined = new boolean[root + 1];
+        for (int i = 0; i <= root; i++) {
+            NodeArena.Op op = arena.getOp(i);
+            if (op == NodeArena.Op.LEAF) {
+                values[i] = leafValue(arena.getLeaf(i), widths[i], assignment);
+                continue;
+            }
+            if (op == NodeArena.Op.ITE) {
+                int branch = arena.getChild(i, values[arena.getChild(i, 0)] != 0 ? 1 : 2);
+                values[i] = values[branch];
+                undefined[i] = undefined[arena.getChild(i, 0)] || undefined[branch];
+                continue;
+            }
+            for (int j = 0; j < arena.getArity(i); j++) {
+                undefined[i] |= undefined[arena.getChild(i, j)];
+            }
+            if (op == NodeArena.Op.AND_N || op == NodeArena.Op.OR_N) {
+                boolean conjunction = op == NodeArena.Op.AND_N;
+                boolean value = conjunction;
+                for (int j = 0; j < arena.getArity(i); j++) {
+                    value = conjunction ? value && values[arena.getChild(i, j)] != 0 : value || values[arena.getChild(i, j)] != 0;
+                }
+                values[i] = value ? 1 : 0;
+                continue;
+            }
+            long left = values[arena.getChild(i, 0)];
+            long right = arena.getArity(i) > 1 ? values[arena.getChild(i, 1)] : 0;
+            if ((op == NodeArena.Op.DIV) && right == 0) {
+                undefined[i] = true;
+                continue;
+            }
+            try {
+                values[i] = apply(op, left, right, widths[arena.getChild(i, 0)]);
+            } catch (ArithmeticException e) {
+                undefined[i] = true;
+            }
+        }
+        if (undefined[root]) {
+            throw new ArithmeticException("division by zero or integer overflow");
+        }
+        return toConstant(values[root], type);
+    }
+
+    /**
+     * Evaluates the node for all tests of the suite, one column of values per entry.
+     * Lanes of non-columnar tests, tests that do not assign a variable of the node
+     * and tests with undefined values are added to undefined, their values are arbitrary.
+     */
+    public long[] evaluate(TestSuite suite, BitSet undefined) {
+        int size = suite.size();
+        BitSet irregular = suite.all();
+        for (int lane = 0; lane < size; lane++) {
+            if (suite.isColumnar(lane)) {
+                irregular.clear(lane);
+            }
+        }
+        long[][] columns = new long[root + 1][];
+        BitSet[] undefinedLanes = new BitSet[root + 1]; // null if all lanes are defined
+        for (int i = 0; i <= root; i++) {
+            NodeArena.Op op = arena.getOp(i);
+            if (op == NodeArena.Op.LEAF) {
+                Node leaf = arena.getLeaf(i);
+                if (leaf instanceof Variable) {
+                    columns[i] = suite.getColumn((Variable) leaf);
+                    BitSet unassigned = suite.all();
+                    unassigned.andNot(suite.getAssigned((Variable) leaf));
+                    if (columns[i] == null) {
+                        columns[i] = new long[size];
+                    }
+                    undefinedLanes[i] = unassigned.isEmpty() ? null : unassigned;
+                } else {
+                    columns[i] = new long[size];
+                    Arrays.fill(columns[i], leafValue(leaf, widths[i], Collections.emptyMap()));
+                }
+                continue;
+            }
+            long[] column = new long[size];
+            columns[i] = column;
+            BitSet undefinedColumn = null;
+            if (op == NodeArena.Op.ITE) {
+                long[] condition = columns[arena.getChild(i, 0)];
+                long[] thenBranch = columns[arena.getChild(i, 1)];
+                long[] elseBranch = columns[arena.getChild(i, 2)];
+                for (int lane = 0; lane < size; lane++) {
+                    column[lane] = condition[lane] != 0 ? thenBranch[lane] : elseBranch[lane];
+                }
+                BitSet undefinedCondition = undefinedLanes[arena.getChild(i, 0)];
+                BitSet undefinedThen = undefinedLanes[arena.getChild(i, 1)];
+                BitSet undefinedElse = undefinedLanes[arena.getChild(i, 2)];
+                if (undefinedCondition != null || undefinedThen != null || undefinedElse != null) {
+                    undefinedColumn = new BitSet(size);
+                    for (int lane = 0; lane < size; lane++) {
+                        BitSet branch = condition[lane] != 0 ? undefinedThen : undefinedElse;
+                        if ((undefinedCondition != null && undefinedCondition.get(lane)) || (branch != null && branch.get(lane))) {
+                            undefinedColumn.set(lane);
+                        }
+                    }
+                }
+                undefinedLanes[i] = undefinedColumn;
+                continue;
+            }
+            for (int j = 0; j < arena.getArity(i); j++) {
+                BitSet undefinedChild = undefinedLanes[arena.getChild(i, j)];
+                if (undefinedChild != null) {
+                    if (undefinedColumn == null) {
+                        undefinedColumn = new BitSet(size);
+                    }
+                    undefinedColumn.or(undefinedChild);
+                }
+            }
+            if (op == NodeArena.Op.AND_N || op == NodeArena.Op.OR_N) {
+                boolean conjunction = op == NodeArena.Op.AND_N;
+                Arrays.fill(column, conjunction ? 1 : 0);
+                for (int j = 0; j < arena.getArity(i); j++) {
+                    long[] arg = columns[arena.getChild(i, j)];
+                    for (int lane = 0; lane < size; lane++) {
+                        column[lane] = conjunction ? column[lane] & arg[lane] : column[lane] | arg[lane];
+                    }
+                }
+            } else if (op == NodeArena.Op.DIV) {
+                long[] left = columns[arena.getChild(i, 0)];
+                long[] right = columns[arena.getChild(i, 1)];
+                for (int lane = 0; lane < size; lane++) {
+                    if (right[lane] == 0) {
+                        if (undefinedColumn == null) {
+                            undefinedColumn = new BitSet(size);
+                        }
+                        undefinedColumn.set(lane);
+                    } else {
+                        column[lane] = intDiv(left[lane], right[lane]);
+                    }
+                }
+            } else {
+                long[] right = arena.getArity(i) > 1 ? columns[arena.getChild(i, 1)] : new long[size];
+                BitSet overflow = new BitSet();
+                apply(op, columns[arena.getChild(i, 0)], right, column, widths[arena.getChild(i, 0)], overflow);
+                if (!overflow.isEmpty()) {
+                    if (undefinedColumn == null) {
+                        undefinedColumn = new BitSet(size);
+                    }
+                    undefinedColumn.or(overflow);
+                }
+            }
+            undefinedLanes[i] = undefinedColumn;
+        }
+        undefined.or(irregular);
+        if (undefinedLanes[root] != null) {
+            undefined.or(undefinedLanes[root]);
+        }
+        return columns[root];
+    }
+
+    /**
+     * Column version of apply with dedicated loops for common operators
+     * @param overflow lanes where integer arithmetic overflows are added to it
+     */
+    private static void apply(NodeArena.Op op, long[] left, long[] right, long[] out, int width, BitSet overflow) {
+        long mask = mask(width);
+        int size = out.length;
+        switch (op) {
+            case ADD:
+                for (int lane = 0; lane < size; lane++) {
+                    long sum = left[lane] + right[lane];
+                    // overflow iff both arguments have the sign opposite to the result:
+                    if (((left[lane] ^ sum) & (right[lane] ^ sum)) < 0) {
+                        overflow.set(lane);
+                    }
+                    out[lane] = sum;
+                }
+                return;
+            case SUB:
+                for (int lane = 0; lane < size; lane++) {
+                    long difference = left[lane] - right[lane];
+                    if (((left[lane] ^ right[lane]) & (left[lane] ^ difference)) < 0) {
+                        overflow.set(lane);
+                    }
+                    out[lane] = difference;
+                }
+                return;
+            case EQUAL:
+            case IFF:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] == right[lane] ? 1 : 0;
+                }
+                return;
+            case LESS:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] < right[lane] ? 1 : 0;
+                }
+                return;
+            case LESS_OR_EQUAL:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] <= right[lane] ? 1 : 0;
+                }
+                return;
+            case GREATER:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] > right[lane] ? 1 : 0;
+                }
+                return;
+            case GREATER_OR_EQUAL:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] >= right[lane] ? 1 : 0;
+                }
+                return;
+            case AND:
+            case BV_AND:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] & right[lane];
+                }
+                return;
+            case OR:
+            case BV_OR:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] | right[lane];
+                }
+                return;
+            case NOT:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = left[lane] ^ 1;
+                }
+                return;
+            case BV_ADD:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = (left[lane] + right[lane]) & mask;
+                }
+                return;
+            case BV_SUB:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = (left[lane] - right[lane]) & mask;
+                }
+                return;
+            case BV_MULT:
+                for (int lane = 0; lane < size; lane++) {
+                    out[lane] = (left[lane] * right[lane]) & mask;
+                }
+                return;
+            default:
+                for (int lane = 0; lane < size; lane++) {
+                    try {
+                        out[lane] = apply(op, left[lane], right[lane], width);
+                    } catch (ArithmeticException e) {
+                        overflow.set(lane);
+                    }
+                }
+        }
+    }
+
+    private static boolean isPredicate(NodeArena.Op op) {
+        switch (op) {
+            case EQUAL:
+            case GREATER:
+            case LESS:
+            case GREATER_OR_EQUAL:
+            case LESS_OR_EQUAL:
+            case BV_SIGNED_GREATER:
+            case BV_SIGNED_GREATER_OR_EQUAL:
+            case BV_SIGNED_LESS:
+            case BV_SIGNED_LESS_OR_EQUAL:
+            case BV_UNSIGNED_GREATER:
+            case BV_UNSIGNED_GREATER_OR_EQUAL:
+            case BV_UNSIGNED_LESS:
+            case BV_UNSIGNED_LESS_OR_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static int width(Type type) {
+        if (type instanceof BVType) {
+            int size = ((BVType) type).getSize();
+            if (size > 64) {
+                throw new UnsupportedOperationException("bit-vectors wider than 64 bits are not supported");
+            }
+            return size;
+        }
+        return 0;
+    }
+
+    private static long mask(int width) {
+        return width == 64 ? -1L : (1L << width) - 1;
+    }
+
+    private static long signed(long value, int width) {
+        return width == 64 ? value : (value << (64 - width)) >> (64 - width);
+    }
+
+    static long leafValue(Node leaf, int width, Map<? extends Variable, ? extends Node> assignment) {
+        if (leaf instanceof Variable) {
+            Node value = assignment.get(leaf);
+            if (value == null) {
+                throw new IllegalArgumentException("no value for variable " + leaf);
+            }
+            if (!(value instanceof Constant)) {
+                value = evaluate(value, Collections.emptyMap());
+            }
+            return leafValue(value, width, assignment);
+        }
+        if (leaf instanceof IntConst) {
+            return ((IntConst) leaf).getValue();
+        }
+        if (leaf instanceof BoolConst) {
+            return ((BoolConst) leaf).getValue() ? 1 : 0;
+        }
+        if (leaf instanceof BVConst) {
+            return ((BVConst) leaf).getLong() & mask(width);
+        }
+        throw new UnsupportedOperationException("cannot evaluate " + leaf.getClass().getSimpleName());
+    }
+
+    static Constant toConstant(long value, Type type) {
+        if (type instanceof IntType) {
+            return IntConst.of(Math.toIntExact(value));
+        }
+        if (type instanceof BoolType) {
+            return BoolConst.of(value != 0);
+        }
+        if (type instanceof BVType) {
+            return new BVConst(new BigInteger(Long.toUnsignedString(value)), ((BVType) type).getSize());
+        }
+        throw new UnsupportedOperationException("cannot evaluate type " + type);
+    }
+
+    /**
+     * @param width width of the arguments, 0 for Int and Bool
+     * @throws ArithmeticException if integer arithmetic overflows
+     */
+    static long apply(NodeArena.Op op, long left, long right, int width) {
+        long mask = mask(width);
+        switch (op) {
+            case EQUAL:
+            case IFF:
+                return left == right ? 1 : 0;
+            case ADD:
+                return Math.addExact(left, right);
+            case SUB:
+                return Math.subtractExact(left, right);
+            case MULT:
+                return Math.multiplyExact(left, right);
+            case DIV:
+                return intDiv(left, right);
+            case MINUS:
+                return Math.negateExact(left);
+            case AND:
+                return left & right;
+            case OR:
+                return left | right;
+            case IMPL:
+                return (left == 0 || right != 0) ? 1 : 0;
+            case NOT:
+                return left == 0 ? 1 : 0;
+            case GREATER:
+                return left > right ? 1 : 0;
+            case LESS:
+                return left < right ? 1 : 0;
+            case GREATER_OR_EQUAL:
+                return left >= right ? 1 : 0;
+            case LESS_OR_EQUAL:
+                return left <= right ? 1 : 0;
+            case BV_ADD:
+                return (left + right) & mask;
+            case BV_SUB:
+                return (left - right) & mask;
+            case BV_MULT:
+                return (left * right) & mask;
+            case BV_NEG:
+                return (-left) & mask;
+            case BV_NOT:
+                return ~left & mask;
+            case BV_AND:
+                return left & right;
+            case BV_OR:
+                return left | right;
+            case BV_XOR:
+                return left ^ right;
+            case BV_NAND:
+                return ~(left & right) & mask;
+            case BV_NOR:
+                return ~(left | right) & mask;
+            case BV_XNOR:
+                return ~(left ^ right) & mask;
+            case BV_SHIFT_LEFT:
+                return Long.compareUnsigned(right, width) >= 0 ? 0 : (left << right) & mask;
+            case BV_UNSIGNED_SHIFT_RIGHT:
+                return Long.compareUnsigned(right, width) >= 0 ? 0 : left >>> right;
+            case BV_SIGNED_SHIFT_RIGHT:
+                return (signed(left, width) >> (Long.compareUnsigned(right, width) >= 0 ? width - 1 : right)) & mask;
+            case BV_UNSIGNED_DIV:
+                return udiv(left, right, mask);
+            case BV_UNSIGNED_REMAINDER:
+                return urem(left, right);
+            case BV_SIGNED_DIV:
+                return sdiv(left, right, width);
+            case BV_SIGNED_REMAINDER:
+                return srem(left, right, width);
+            case BV_SIGNED_MODULO:
+                return smod(left, right, width);
+            case BV_UNSIGNED_GREATER:
+                return Long.compareUnsigned(left, right) > 0 ? 1 : 0;
+            case BV_UNSIGNED_GREATER_OR_EQUAL:
+                return Long.compareUnsigned(left, right) >= 0 ? 1 : 0;
+            case BV_UNSIGNED_LESS:
+                return Long.compareUnsigned(left, right) < 0 ? 1 : 0;
+            case BV_UNSIGNED_LESS_OR_EQUAL:
+                return Long.compareUnsigned(left, right) <= 0 ? 1 : 0;
+            case BV_SIGNED_GREATER:
+                return signed(left, width) > signed(right, width) ? 1 : 0;
+            case BV_SIGNED_GREATER_OR_EQUAL:
+                return signed(left, width) >= signed(right, width) ? 1 : 0;
+            case BV_SIGNED_LESS:
+                return signed(left, width) < signed(right, width) ? 1 : 0;
+            case BV_SIGNED_LESS_OR_EQUAL:
+                return signed(left, width) <= signed(right, width) ? 1 : 0;
+            default:
+                throw new UnsupportedOperationException("cannot evaluate " + op);
+        }
+    }
+
+    /**
+     * Euclidean division of SMT-LIB: the remainder is non-negative
+     */
+    private static long intDiv(long left, long right) {
+        long quotient = left / right;
+        if (left % right < 0) {
+            quotient += right > 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    private static long udiv(long left, long right, long mask) {
+        return right == 0 ? mask : Long.divideUnsigned(left, right);
+    }
+
+    private static long urem(long left, long right) {
+        return right == 0 ? left : Long.remainderUnsigned(left, right);
+    }
+
+    private static boolean isNegative(long value, int width) {
+        return signed(value, width) < 0;
+    }
+
+    private static long sdiv(long left, long right, int width) {
+        long mask = mask(width);
+        boolean negativeLeft = isNegative(left, width);
+        boolean negativeRight = isNegative(right, width);
+        long quotient = udiv(negativeLeft ? -left & mask : left, negativeRight ? -right & mask : right, mask);
+        return negativeLeft != negativeRight ? -quotient & mask : quotient;
+    }
+
+    private static long srem(long left, long right, int width) {
+        long mask = mask(width);
+        boolean negativeLeft = isNegative(left, width);
+        long remainder = urem(negativeLeft ? -left & mask : left, isNegative(right, width) ? -right & mask : right);
+        return negativeLeft ? -remainder & mask : remainder;
+    }
+
+    private static long smod(long left, long right, int width) {
+        long mask = mask(width);
+        boolean negativeLeft = isNegative(left, width);
+        boolean negativeRight = isNegative(right, width);
+        long remainder = urem(negativeLeft ? -left & mask : left, negativeRight ? -right & mask : right);
+        if (remainder == 0 || negativeLeft == negativeRight) {
+            return negativeLeft ? -remainder & mask : remainder;
+        }
+        return negativeLeft ? (right - remainder) & mask : (remainder + right) & mask;
+    }
+
+}
@@ -10,9 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * This is a temporary solution to avoid configuring SMT solver for bitvector interpolation
+ * @see CoreInterpolatingSolver for conflicts extracted from unsat cores
  */
 public class FakeInterpolatingSolver implements InterpolatingSolver {
 
@@ -35,4 +37,8 @@ public class FakeInterpolatingSolver implements InterpolatingSolver {
         }
     }
 
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        return solver.withBudget(budget, action);
+    }
 }
@@ -0,0 +1,23 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solver that keeps its assertions between queries. Clauses asserted after push() are retracted by the matching pop(),
+ * so that a shared background can be asserted once and only the per-query delta is added and removed.
+ */
+public interface IncrementalSolver extends Solver {
+    void push();
+    void pop();
+    void assertClauses(List<Node> clauses);
+    boolean check();
+    /**
+     * Model of the assertions in the current scope, valid after check() returned true
+     */
+    Map<Variable, Constant> getModel();
+}
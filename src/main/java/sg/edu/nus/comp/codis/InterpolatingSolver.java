@@ -7,10 +7,18 @@ import sg.edu.nus.comp.codis.ast.Variable;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Created by Sergey Mechtaev on 15/6/2016.
  */
 public interface InterpolatingSolver {
     Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses);
+
+    /**
+     * @see Solver#withBudget(Budget, Supplier)
+     */
+    default <T> T withBudget(Budget budget, Supplier<T> action) {
+        return action.get();
+    }
 }
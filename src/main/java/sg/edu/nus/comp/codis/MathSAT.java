@@ -10,9 +10,12 @@ import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Created by Alberto Griggio on 28/4/2016.
+ *
+ * Only solvers built as incremental are IncrementalSolvers, the others create a fresh environment for each query.
  */
 public class MathSAT implements Solver, InterpolatingSolver {
 
@@ -21,20 +24,147 @@ public class MathSAT implements Solver, InterpolatingSolver {
     private long config;
     private long solver = 0;
 
-    private boolean memoization = false;
+    // reuse terms of structurally equal nodes within the environment:
+    private boolean memoization = true;
+
+    // keep the environment between queries and scope one-shot queries with backtrack points:
+    private boolean incremental = false;
+
+    // variable declarations living as long as the environment:
+    private SymbolTable symbols;
+
+    private Budget budget = Budget.unlimited();
+
+    // variables of the clauses asserted at each backtrack point:
+    private Stack<Set<Variable>> frames;
+    // nodes translated from the cache at each backtrack point, their variables are collected on demand:
+    private Stack<List<Node>> reusedFrames;
+    // arena entries whose variables are in the frame at each backtrack point:
+    private Stack<Map<NodeArena, BitSet>> arenaFrames;
+
+    public static final int DEFAULT_TRANSLATION_CACHE_CAPACITY = 100000;
+
+    // translation cache living as long as the environment, cleared at the base level once over capacity:
+    private int translationCacheCapacity = DEFAULT_TRANSLATION_CACHE_CAPACITY;
+    private Map<Node, Long> identityTranslationCache;
+    private Map<Node, Long> translationCache;
+    // translations of template subterms under the instantiation for each test:
+    private Map<TestCase, Map<Node, Long>> instanceTranslationCache;
+    // terms of arena entries, translated by a forward scan up to the largest requested entry:
+    private Map<NodeArena, ArenaTranslation> arenaTranslations;
+    private long translationCacheHits = 0;
+    private long translationCacheMisses = 0;
 
     private MathSAT(boolean interpolating) {
-        this.config = mathsat.api.msat_create_config();
-        mathsat.api.msat_set_option(this.config, "model_generation", "true");
+        this(createConfig(interpolating));
+    }
+
+    /**
+     * Solvers created with the same config share it, e.g. in SolverPool
+     */
+    MathSAT(long config) {
+        this(config, false);
+    }
+
+    private MathSAT(long config, boolean incremental) {
+        this.config = config;
+        this.incremental = incremental;
+    }
+
+    static long createConfig(boolean interpolating) {
+        return createConfig(interpolating, new HashMap<>());
+    }
+
+    static long createConfig(boolean interpolating, Map<String, String> options) {
+        long config = mathsat.api.msat_create_config();
+        mathsat.api.msat_set_option(config, "model_generation", "true");
         if (interpolating) {
-            mathsat.api.msat_set_option(this.config, "interpolation", "true");
+            mathsat.api.msat_set_option(config, "interpolation", "true");
+        }
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (mathsat.api.msat_set_option(config, option.getKey(), option.getValue()) != 0) {
+                throw new IllegalArgumentException("invalid MathSAT option " + option.getKey());
+            }
         }
-//        mathsat.api.msat_set_option(this.config, "debug.api_call_trace", "1");
-//        mathsat.api.msat_set_option(this.config, "debug.api_call_trace_filename", "trace.smt2");
+//        mathsat.api.msat_set_option(config, "debug.api_call_trace", "1");
+//        mathsat.api.msat_set_option(config, "debug.api_call_trace_filename", "trace.smt2");
+        return config;
+    }
+
+    /**
+     * NOTE: the budget is checked before each solver call, a running msat_solve is not interrupted
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    public Budget getBudget() {
+        return budget;
+    }
+
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        Budget previous = this.budget;
+        this.budget = budget;
+        try {
+            return action.get();
+        } finally {
+            this.budget = previous;
+        }
+    }
+
+    private static class Incremental extends MathSAT implements IncrementalSolver {
+
+        Incremental(long config) {
+            super(config, true);
+        }
+    }
+
+    /**
+     * @return incremental solver sharing the given config, e.g. in SolverPool
+     */
+    static MathSAT buildIncremental(long config) {
+        return new Incremental(config);
     }
 
     private void initialize() {
-        this.solver = mathsat.api.msat_create_env(this.config);
+        synchronized (MathSAT.class) { // config may be shared between threads
+            this.solver = mathsat.api.msat_create_env(this.config);
+        }
+        this.symbols = new SymbolTable(this.solver);
+        this.frames = new Stack<>();
+        this.frames.push(new HashSet<>());
+        this.reusedFrames = new Stack<>();
+        this.reusedFrames.push(new ArrayList<>());
+        this.arenaFrames = new Stack<>();
+        this.arenaFrames.push(new IdentityHashMap<>());
+        this.identityTranslationCache = new IdentityHashMap<>();
+        this.translationCache = new HashMap<>();
+        this.instanceTranslationCache = new HashMap<>();
+        this.arenaTranslations = new IdentityHashMap<>();
+    }
+
+    /**
+     * Queries are scoped with a backtrack point if the solver is incremental or backtrack points are open,
+     * otherwise they run in a fresh environment
+     * @return whether the query is scoped
+     */
+    private boolean beginQuery() {
+        if (incremental || (solver != 0 && frames.size() > 1)) {
+            push();
+            return true;
+        }
+        dispose();
+        initialize();
+        return false;
+    }
+
+    private void endQuery(boolean scoped) {
+        if (scoped) {
+            pop();
+        } else {
+            dispose();
+        }
     }
 
     public void enableMemoization() {
@@ -45,6 +175,55 @@ public class MathSAT implements Solver, InterpolatingSolver {
         memoization = false;
     }
 
+    public long getTranslationCacheHits() {
+        return translationCacheHits;
+    }
+
+    public long getTranslationCacheMisses() {
+        return translationCacheMisses;
+    }
+
+    /**
+     * @return number of cached translations, including those of template subterms and arena entries
+     */
+    public int getTranslationCacheSize() {
+        if (translationCache == null) {
+            return 0;
+        }
+        int size = identityTranslationCache.size() + translationCache.size();
+        for (Map<Node, Long> instances : instanceTranslationCache.values()) {
+            size += instances.size();
+        }
+        for (ArenaTranslation translation : arenaTranslations.values()) {
+            size += translation.translated;
+        }
+        return size;
+    }
+
+    /**
+     * Translations are cached across queries of an incremental solver. When the solver pops back to the base level,
+     * or asserts clauses there, with more cached translations than the capacity, the cache is cleared.
+     */
+    public void setTranslationCacheCapacity(int capacity) {
+        this.translationCacheCapacity = capacity;
+    }
+
+    public int getSymbolTableSize() {
+        return symbols == null ? 0 : symbols.size();
+    }
+
+    /**
+     * Terms are still valid after clearing, so this only releases memory
+     */
+    public void clearTranslationCache() {
+        if (translationCache != null) {
+            identityTranslationCache.clear();
+            translationCache.clear();
+            instanceTranslationCache.clear();
+            arenaTranslations.clear();
+        }
+    }
+
     public static Solver buildSolver() {
         return new MathSAT(false);
     }
@@ -53,11 +232,130 @@ public class MathSAT implements Solver, InterpolatingSolver {
         return new MathSAT(true);
     }
 
+    /**
+     * @param options additional MathSAT configuration options
+     */
+    public static MathSAT buildWithOptions(boolean interpolating, Map<String, String> options) {
+        return new MathSAT(createConfig(interpolating, options));
+    }
+
+    public static IncrementalSolver buildIncrementalSolver() {
+        return new Incremental(createConfig(false));
+    }
+
+    public static InterpolatingSolver buildIncrementalInterpolatingSolver() {
+        return new Incremental(createConfig(true));
+    }
+
     public void dispose() {
         if (solver != 0) {
             mathsat.api.msat_destroy_env(this.solver);
 //            mathsat.api.msat_destroy_config(this.config);
+            this.solver = 0;
+            this.symbols = null;
+        }
+    }
+
+    public void push() {
+        if (solver == 0) {
+            initialize();
+        }
+        if (mathsat.api.msat_push_backtrack_point(solver) != 0) {
+            throw msatError();
+        }
+        frames.push(new HashSet<>());
+        reusedFrames.push(new ArrayList<>());
+        arenaFrames.push(new IdentityHashMap<>());
+    }
+
+    public void pop() {
+        if (solver == 0 || frames.size() <= 1) {
+            throw new IllegalStateException("no backtrack point to pop");
+        }
+        if (mathsat.api.msat_pop_backtrack_point(solver) != 0) {
+            throw msatError();
+        }
+        frames.pop();
+        reusedFrames.pop();
+        arenaFrames.pop();
+        trimTranslationCache();
+    }
+
+    /**
+     * The cache is only cleared at the base level, so that queries scoped by backtrack points keep their translations
+     */
+    private void trimTranslationCache() {
+        if (frames.size() == 1 && getTranslationCacheSize() > translationCacheCapacity) {
+            clearTranslationCache();
+        }
+    }
+
+    public void assertClauses(List<Node> clauses) {
+        if (solver == 0) {
+            initialize();
+        }
+        for (Node clause : clauses) {
+            if (mathsat.api.msat_assert_formula(solver, translate(clause)) != 0) {
+                throw msatError();
+            }
+        }
+        trimTranslationCache();
+    }
+
+    public boolean check() {
+        if (solver == 0) {
+            initialize();
+        }
+        budget.check();
+        int status = mathsat.api.msat_solve(solver);
+        if (status == mathsat.api.MSAT_SAT) {
+            return true;
+        } else if (status == mathsat.api.MSAT_UNKNOWN) {
+            throw msatError();
+        } else {
+            return false;
+        }
+    }
+
+    public Map<Variable, Constant> getModel() {
+        long model = mathsat.api.msat_get_model(solver);
+        if (mathsat.api.MSAT_ERROR_MODEL(model)) {
+            throw msatError();
+        }
+        try {
+            return getAssignment(model);
+        } finally {
+            mathsat.api.msat_destroy_model(model);
+        }
+    }
+
+    private long translate(Node node) {
+        NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(memoization);
+        node.accept(visitor);
+        return visitor.getExpr();
+    }
+
+    private Set<Variable> getScopeVariables() {
+        Set<Variable> variables = new HashSet<>();
+        for (Set<Variable> frame : frames) {
+            variables.addAll(frame);
+        }
+        // variables of instantiated clauses are resolved from their templates, which are shared between tests:
+        Map<Node, List<Variable>> templateVariables = new IdentityHashMap<>();
+        for (List<Node> reused : reusedFrames) {
+            for (Node node : reused) {
+                if (node instanceof InstantiatedClause) {
+                    InstantiatedClause clause = (InstantiatedClause) node;
+                    for (Variable variable : templateVariables.computeIfAbsent(clause.getTemplate(),
+                            t -> Traverse.collectByType(t, Variable.class))) {
+                        variables.add(clause.resolve(variable));
+                    }
+                } else {
+                    variables.addAll(Traverse.collectByType(node, Variable.class));
+                }
+            }
         }
+        return variables;
     }
 
     private RuntimeException msatError() {
@@ -68,19 +366,22 @@ public class MathSAT implements Solver, InterpolatingSolver {
     public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
                                                                       List<Node> assumptions) {
 
-        dispose();
-        initialize();
-        VariableMarshaller marshaller = new VariableMarshaller();
+        boolean scoped = beginQuery();
+        try {
+            return getModelOrCoreAux(clauses, assumptions);
+        } finally {
+            endQuery(scoped);
+        }
+    }
+
+    private Either<Map<Variable, Constant>, List<Node>> getModelOrCoreAux(List<Node> clauses,
+                                                                          List<Node> assumptions) {
         for (Node clause : clauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller, memoization);
-            clause.accept(visitor);
-            mathsat.api.msat_assert_formula(solver, visitor.getExpr());
+            mathsat.api.msat_assert_formula(solver, translate(clause));
         }
         ArrayList<Long> assumptionExprs = new ArrayList<>();
         for (Node assumption : assumptions) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller, memoization);
-            assumption.accept(visitor);
-            assumptionExprs.add(visitor.getExpr());
+            assumptionExprs.add(translate(assumption));
         }
 
         long[] assumptionArray = new long[assumptionExprs.size()];
@@ -89,6 +390,7 @@ public class MathSAT implements Solver, InterpolatingSolver {
             assumptionArray[idx++] = a;
         }
 
+        budget.check();
         int status = mathsat.api.msat_solve_with_assumptions(solver, assumptionArray);
         if (status == mathsat.api.MSAT_SAT) {
             long model = mathsat.api.msat_get_model(solver);
@@ -96,7 +398,7 @@ public class MathSAT implements Solver, InterpolatingSolver {
                 throw msatError();
             }
             try {
-                return Either.left(getAssignment(model, marshaller));
+                return Either.left(getAssignment(model));
             } finally {
                 mathsat.api.msat_destroy_model(model);
             }
@@ -122,74 +424,61 @@ public class MathSAT implements Solver, InterpolatingSolver {
         }
     }
 
-    private long getIntVarDecl(String name) {
-        long decl = api.msat_declare_function(solver, name, api.msat_get_integer_type(solver));
-        return decl;
-    }
-    private long getIntVar(String name) {
-        long d = getIntVarDecl(name);
-        return mathsat.api.msat_make_constant(solver, d);
-    }
-
-    private long getBoolVarDecl(String name) {
-        long decl = api.msat_declare_function(solver, name, api.msat_get_bool_type(solver));
-        return decl;
-    }
-
-    private long getBoolVar(String name) {
-        long d = getBoolVarDecl(name);
-        return mathsat.api.msat_make_constant(solver, d);
-    }
-
-    private long getBVVarDecl(String name, int size) {
-        long decl = api.msat_declare_function(solver, name, api.msat_get_bv_type(solver, size));
-        return decl;
-    }
-
-    private long getBVVar(String name, int size) {
-        long d = getBVVarDecl(name, size);
-        return mathsat.api.msat_make_constant(solver, d);
-    }
-
-    private Map<Variable, Constant> getAssignment(long model, VariableMarshaller marshaller) {
-        HashMap<Variable, Constant> assingment = new HashMap<>();
-        for (Variable variable: marshaller.getVariables()) {
-            if (TypeInference.typeOf(variable).equals(IntType.TYPE)) {
-                long result = mathsat.api.msat_model_eval(model, getIntVar(marshaller.toString(variable)));
-                if (mathsat.api.MSAT_ERROR_TERM(result)) {
+    /**
+     * Reads the values of the scope variables in one pass over the model, no declarations are made.
+     * Variables the model does not list are evaluated one by one.
+     */
+    private Map<Variable, Constant> getAssignment(long model) {
+        Set<Variable> scope = getScopeVariables();
+        HashMap<Variable, Constant> assignment = new HashMap<>();
+        long iterator = mathsat.api.msat_model_create_iterator(model);
+        try {
+            long[] term = new long[1];
+            long[] value = new long[1];
+            while (mathsat.api.msat_model_iterator_has_next(iterator) != 0) {
+                if (mathsat.api.msat_model_iterator_next(iterator, term, value) != 0) {
                     throw msatError();
                 }
-                if (mathsat.api.msat_term_is_number(solver, result) != 0) {
-                    int value = Integer.parseInt(mathsat.api.msat_term_repr(result));
-                    assingment.put(variable, IntConst.of(value));
-                } else {
-                    throw new RuntimeException("unsupported MathSAT expression type");
+                SymbolTable.Symbol symbol = symbols.ofTerm(term[0]);
+                if (symbol != null && scope.contains(symbol.getVariable())) {
+                    assignment.put(symbol.getVariable(), toConstant(symbol.getType(), value[0]));
                 }
-            } else if (TypeInference.typeOf(variable).equals(BoolType.TYPE)) {
-                long result = mathsat.api.msat_model_eval(model, getBoolVar(marshaller.toString(variable)));
-                if (mathsat.api.MSAT_ERROR_TERM(result)) {
+            }
+        } finally {
+            mathsat.api.msat_destroy_model_iterator(iterator);
+        }
+        for (Variable variable : scope) {
+            if (!assignment.containsKey(variable)) {
+                SymbolTable.Symbol symbol = symbols.get(variable);
+                long value = mathsat.api.msat_model_eval(model, symbol.getTerm());
+                if (mathsat.api.MSAT_ERROR_TERM(value)) {
                     throw msatError();
                 }
-                if (mathsat.api.msat_term_is_true(solver, result) != 0) {
-                    assingment.put(variable, BoolConst.of(true));
-                } else if (mathsat.api.msat_term_is_false(solver, result) != 0) {
-                    assingment.put(variable, BoolConst.of(false));
-                } else {
-                    throw new RuntimeException("wrong variable type");
-                }
-            } else if (TypeInference.typeOf(variable) instanceof BVType) {
-                int size = ((BVType) TypeInference.typeOf(variable)).getSize();
-                long result = mathsat.api.msat_model_eval(model, getBVVar(marshaller.toString(variable), size));
-                if (mathsat.api.msat_term_is_number(solver, result) != 0) {
-                    assingment.put(variable, new BVConst(convertMathSATNumeral(solver, result), size));
-                } else {
-                    throw new RuntimeException("unsupported MathSAT expression type");
-                }
-            } else {
-                throw new UnsupportedOperationException();
+                assignment.put(variable, toConstant(symbol.getType(), value));
+            }
+        }
+        return assignment;
+    }
+
+    private Constant toConstant(Type type, long value) {
+        if (type.equals(IntType.TYPE)) {
+            if (mathsat.api.msat_term_is_number(solver, value) != 0) {
+                return IntConst.of(Integer.parseInt(mathsat.api.msat_term_repr(value)));
+            }
+            throw new RuntimeException("unsupported MathSAT expression type");
+        } else if (type.equals(BoolType.TYPE)) {
+            if (mathsat.api.msat_term_is_true(solver, value) != 0) {
+                return BoolConst.of(true);
+            } else if (mathsat.api.msat_term_is_false(solver, value) != 0) {
+                return BoolConst.of(false);
+            }
+            throw new RuntimeException("wrong variable type");
+        } else {
+            if (mathsat.api.msat_term_is_number(solver, value) != 0) {
+                return new BVConst(convertMathSATNumeral(solver, value), ((BVType) type).getSize());
             }
+            throw new RuntimeException("unsupported MathSAT expression type");
         }
-        return assingment;
     }
 
     private BigInteger convertMathSATNumeral(long solver, long result) {
@@ -203,59 +492,21 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
     @Override
     public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
-        dispose();
-        initialize();
-        VariableMarshaller marshaller = new VariableMarshaller();
+        boolean scoped = beginQuery();
+        try {
+            return getModelAux(clauses);
+        } finally {
+            endQuery(scoped);
+        }
+    }
+
+    private Optional<Map<Variable, Constant>> getModelAux(List<Node> clauses) {
         for (Node clause : clauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller, memoization);
-            clause.accept(visitor);
-            mathsat.api.msat_assert_formula(solver, visitor.getExpr());
-        }
-
-//        if (logger.isTraceEnabled()) {
-//            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss-SSS");
-//            Date now = new Date();
-//            Path logsmt = Paths.get("cbs" + sdf.format(now) + ".smt2");
-//            try {
-//                List<String> entries = new ArrayList<>();
-//                entries.add("(set-option :produce-models true)");
-//                Set<Long> seenDecls = new HashSet<>();
-//                for (long d : decls) {
-//                    if (seenDecls.add(d)) {
-//                        String n = mathsat.api.msat_decl_get_name(d);
-//                        String tp = "Bool";
-//                        if (mathsat.api.msat_is_integer_type(solver, mathsat.api.msat_decl_get_return_type(d)) != 0) {
-//                            tp = "Int";
-//                        }
-//                        entries.add("(declare-fun |" + n.replace("|", "\\|") + "| () " + tp + ")");
-//                    }
-//                }
-//                long[] assertions = mathsat.api.msat_get_asserted_formulas(solver);
-//                for (int i = 0; i < assertions.length; ++i) {
-//                    String c = mathsat.api.msat_to_smtlib2_term(solver, assertions[i]);
-//                    entries.add("(assert " + c + ")");
-//                }
-//                entries.add("(check-sat)");
-//                entries.add("(get-model)");
-//                Files.write(logsmt, entries, Charset.forName("UTF-8"));
-//            } catch (IOException e) {
-//                e.printStackTrace();
-//            }
-//        }
+            mathsat.api.msat_assert_formula(solver, translate(clause));
+        }
 
-        int status = mathsat.api.msat_solve(solver);
-        if (status == mathsat.api.MSAT_SAT) {
-            long model = mathsat.api.msat_get_model(solver);
-            if (mathsat.api.MSAT_ERROR_MODEL(model)) {
-                throw msatError();
-            }
-            try {
-                return Optional.of(getAssignment(model, marshaller));
-            } finally {
-                mathsat.api.msat_destroy_model(model);
-            }
-        } else if (status == mathsat.api.MSAT_UNKNOWN) {
-            throw msatError();
+        if (check()) {
+            return Optional.of(getModel());
         } else {
             return Optional.empty();
         }
@@ -263,41 +514,35 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
     @Override
     public boolean isSatisfiable(List<Node> clauses) {
-        dispose();
-        initialize();
-        VariableMarshaller marshaller = new VariableMarshaller();
-        for (Node clause : clauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller, memoization);
-            clause.accept(visitor);
-            mathsat.api.msat_assert_formula(solver, visitor.getExpr());
-        }
-        int status = mathsat.api.msat_solve(solver);
-        if (status == mathsat.api.MSAT_SAT) {
-            return true;
-        } else if (status == mathsat.api.MSAT_UNKNOWN) {
-            throw msatError();
-        } else {
-            return false;
+        boolean scoped = beginQuery();
+        try {
+            for (Node clause : clauses) {
+                mathsat.api.msat_assert_formula(solver, translate(clause));
+            }
+            return check();
+        } finally {
+            endQuery(scoped);
         }
     }
 
     @Override
     public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
-        dispose();
-        initialize();
-
-        VariableMarshaller marshaller = new VariableMarshaller();
+        boolean scoped = beginQuery();
+        try {
+            return getModelOrInterpolantAux(leftClauses, rightClauses);
+        } finally {
+            endQuery(scoped);
+        }
+    }
 
+    private Either<Map<Variable, Constant>, Node> getModelOrInterpolantAux(List<Node> leftClauses, List<Node> rightClauses) {
         int groupA = mathsat.api.msat_create_itp_group(solver);
         int groupB = mathsat.api.msat_create_itp_group(solver);
 
         //TODO: check if is faster to convert them in a single iterations as conjunction
         mathsat.api.msat_set_itp_group(solver, groupA);
         for (Node leftClause : leftClauses) {
-            long expr;
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller, memoization);
-            leftClause.accept(visitor);
-            expr = visitor.getExpr();
+            long expr = translate(leftClause);
             int error = mathsat.api.msat_assert_formula(solver, expr);
             assert (error == 0);
         }
@@ -305,34 +550,20 @@ public class MathSAT implements Solver, InterpolatingSolver {
         mathsat.api.msat_set_itp_group(solver, groupB);
 
         for (Node rightClause : rightClauses) {
-            long expr;
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller, memoization);
-            rightClause.accept(visitor);
-            expr = visitor.getExpr();
+            long expr = translate(rightClause);
             int error = mathsat.api.msat_assert_formula(solver, expr);
             assert (error == 0);
         }
 
-        int status = mathsat.api.msat_solve(solver);
-        if (status == mathsat.api.MSAT_SAT) {
-            long model = mathsat.api.msat_get_model(solver);
-            if (mathsat.api.MSAT_ERROR_MODEL(model)) {
-                throw msatError();
-            }
-            try {
-                return Either.left(getAssignment(model, marshaller));
-            } finally {
-                mathsat.api.msat_destroy_model(model);
-            }
-        } else if (status == mathsat.api.MSAT_UNKNOWN) {
-            throw msatError();
+        if (check()) {
+            return Either.left(getModel());
         } else {
             int[] groupsOfA = {groupA};
             long interpolant = mathsat.api.msat_get_interpolant(solver, groupsOfA, 1);
             assert (!mathsat.api.MSAT_ERROR_TERM(interpolant));
             //String s = mathsat.api.msat_to_smtlib2_term(solver, interpolant);
             //System.out.println("\nOK, the interpolant is: " + s);
-            return Either.right(convertMathSATToNode(solver, interpolant, marshaller));
+            return Either.right(convertMathSATToNode(solver, interpolant, symbols));
         }
 
     }
@@ -346,56 +577,56 @@ public class MathSAT implements Solver, InterpolatingSolver {
         return args;
     }
 
-    private Node convertMathSATToNode(long solver, long expr, VariableMarshaller marshaller) {
+    private Node convertMathSATToNode(long solver, long expr, SymbolTable symbols) {
         mathsatToNodeMemo = new HashMap<>();
-        return convertAux(solver, expr, marshaller);
+        return convertAux(solver, expr, symbols);
     }
 
     Map<Long, Node> mathsatToNodeMemo;
 
-    private Node convertAux(long solver, long expr, VariableMarshaller marshaller) {
+    private Node convertAux(long solver, long expr, SymbolTable symbols) {
         if (mathsatToNodeMemo.containsKey(expr)) {
             return mathsatToNodeMemo.get(expr);
         }
         int[] sizeAux = new int[1];
         if (mathsat.api.msat_term_is_plus(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            Add r = new Add(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            Add r = new Add(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_times(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            Mult r = new Mult(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            Mult r = new Mult(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_and(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            And r = new And(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            And r = new And(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_or(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            Or r = new Or(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            Or r = new Or(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_iff(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            Iff r = new Iff(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            Iff r = new Iff(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_leq(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            LessOrEqual r = new LessOrEqual(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            LessOrEqual r = new LessOrEqual(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_equal(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            Equal r = new Equal(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            Equal r = new Equal(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_not(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            Not r = new Not(convertAux(solver, args[0], marshaller));
+            Not r = new Not(convertAux(solver, args[0], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_number(solver, expr) != 0
@@ -404,7 +635,7 @@ public class MathSAT implements Solver, InterpolatingSolver {
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_constant(solver, expr) != 0) {
-            Variable r = marshaller.toVariable(api.msat_decl_get_name(api.msat_term_get_decl(expr)));
+            Variable r = symbols.toVariable(api.msat_decl_get_name(api.msat_term_get_decl(expr)));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_true(solver, expr) != 0) {
@@ -417,7 +648,7 @@ public class MathSAT implements Solver, InterpolatingSolver {
             return r;
         } else if (mathsat.api.msat_term_is_term_ite(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            ITE r = new ITE(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller), convertAux(solver, args[2], marshaller));
+            ITE r = new ITE(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols), convertAux(solver, args[2], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_number(solver, expr) != 0
@@ -427,109 +658,109 @@ public class MathSAT implements Solver, InterpolatingSolver {
             return r;
         } else if (mathsat.api.msat_term_is_bv_plus(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVAdd r = new BVAdd(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVAdd r = new BVAdd(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_sdiv(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSignedDiv r = new BVSignedDiv(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSignedDiv r = new BVSignedDiv(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_udiv(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVUnsignedDiv r = new BVUnsignedDiv(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVUnsignedDiv r = new BVUnsignedDiv(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_times(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVMult r = new BVMult(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVMult r = new BVMult(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_minus(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSub r = new BVSub(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSub r = new BVSub(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_neg(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVNeg r = new BVNeg(convertAux(solver, args[0], marshaller));
+            BVNeg r = new BVNeg(convertAux(solver, args[0], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_and(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVAnd r = new BVAnd(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVAnd r = new BVAnd(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_or(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVOr r = new BVOr(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVOr r = new BVOr(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_xor(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVXor r = new BVXor(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVXor r = new BVXor(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_not(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVNot r = new BVNot(convertAux(solver, args[0], marshaller));
+            BVNot r = new BVNot(convertAux(solver, args[0], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
 
         } else if (mathsat.api.msat_term_is_bv_lshl(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVShiftLeft r = new BVShiftLeft(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVShiftLeft r = new BVShiftLeft(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_lshr(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVUnsignedShiftRight r = new BVUnsignedShiftRight(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVUnsignedShiftRight r = new BVUnsignedShiftRight(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_ashr(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSignedShiftRight r = new BVSignedShiftRight(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSignedShiftRight r = new BVSignedShiftRight(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_sdiv(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSignedDiv r = new BVSignedDiv(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSignedDiv r = new BVSignedDiv(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_udiv(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVUnsignedDiv r = new BVUnsignedDiv(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVUnsignedDiv r = new BVUnsignedDiv(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_srem(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSignedRemainder r = new BVSignedRemainder(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSignedRemainder r = new BVSignedRemainder(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_urem(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVUnsignedRemainder r = new BVUnsignedRemainder(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVUnsignedRemainder r = new BVUnsignedRemainder(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
 
         } else if (mathsat.api.msat_term_is_bv_slt(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSignedLess r = new BVSignedLess(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSignedLess r = new BVSignedLess(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_ult(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVUnsignedLess r = new BVUnsignedLess(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVUnsignedLess r = new BVUnsignedLess(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_sleq(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVSignedLessOrEqual r = new BVSignedLessOrEqual(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVSignedLessOrEqual r = new BVSignedLessOrEqual(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         } else if (mathsat.api.msat_term_is_bv_uleq(solver, expr) != 0) {
             long[] args = getArgs(expr);
-            BVUnsignedLessOrEqual r = new BVUnsignedLessOrEqual(convertAux(solver, args[0], marshaller), convertAux(solver, args[1], marshaller));
+            BVUnsignedLessOrEqual r = new BVUnsignedLessOrEqual(convertAux(solver, args[0], symbols), convertAux(solver, args[1], symbols));
             mathsatToNodeMemo.put(expr, r);
             return r;
         }
@@ -537,21 +768,199 @@ public class MathSAT implements Solver, InterpolatingSolver {
         throw new UnsupportedOperationException("failed to convert MathSAT formula: " + mathsat.api.msat_to_smtlib2_term(solver, expr));
     }
 
-    private class NodeTranslatorVisitor implements BottomUpMemoVisitor {
+    /**
+     * Terms of the entries of an arena translated so far, arenas only grow
+     */
+    private static class ArenaTranslation {
+        private long[] terms = new long[64];
+        private int translated = 0;
+    }
 
-        private Map<Node, Long> nodeToMathsatMemo;
+    /**
+     * Entries are scanned at most once per backtrack point, so asserting all roots of an arena is linear in its size
+     */
+    private void addArenaVariables(ArenaNode arenaNode) {
+        NodeArena arena = arenaNode.getArena();
+        BitSet scanned = arenaFrames.peek().computeIfAbsent(arena, a -> new BitSet(a.size()));
+        arena.collectVariables(arenaNode.getEntry(), scanned, frames.peek());
+    }
 
-        private Stack<Long> exprs;
+    private long[] translateArena(NodeArena arena, int entry) {
+        ArenaTranslation translation = arenaTranslations.computeIfAbsent(arena, a -> new ArenaTranslation());
+        if (entry >= translation.terms.length) {
+            translation.terms = Arrays.copyOf(translation.terms, Math.max(2 * translation.terms.length, entry + 1));
+        }
+        long[] terms = translation.terms;
+        for (int i = translation.translated; i <= entry; i++) {
+            long term;
+            if (arena.getOp(i) == NodeArena.Op.LEAF) {
+                Node leaf = arena.getLeaf(i);
+                term = (leaf instanceof Variable) ? symbols.get((Variable) leaf).getTerm() : translate(leaf);
+            } else {
+                long[] args = new long[arena.getArity(i)];
+                for (int j = 0; j < args.length; j++) {
+                    args[j] = terms[arena.getChild(i, j)];
+                }
+                term = makeTerm(arena.getOp(i), args);
+            }
+            if (mathsat.api.MSAT_ERROR_TERM(term)) {
+                throw msatError();
+            }
+            terms[i] = term;
+        }
+        translation.translated = Math.max(translation.translated, entry + 1);
+        return terms;
+    }
+
+    /**
+     * Operator table shared by the translations of nodes and of arena entries
+     */
+    private long makeTerm(NodeArena.Op op, long[] args) {
+        switch (op) {
+            case EQUAL:
+                if (mathsat.api.msat_is_bool_type(solver, mathsat.api.msat_term_get_type(args[0])) != 0) {
+                    return mathsat.api.msat_make_iff(solver, args[0], args[1]);
+                }
+                return mathsat.api.msat_make_equal(solver, args[0], args[1]);
+            case ADD:
+                return mathsat.api.msat_make_plus(solver, args[0], args[1]);
+            case SUB:
+                return mathsat.api.msat_make_plus(solver, args[0],
+                        mathsat.api.msat_make_times(solver, mathsat.api.msat_make_number(solver, "-1"), args[1]));
+            case MULT:
+                return mathsat.api.msat_make_times(solver, args[0], args[1]);
+            case AND:
+                return mathsat.api.msat_make_and(solver, args[0], args[1]);
+            case OR:
+                return mathsat.api.msat_make_or(solver, args[0], args[1]);
+            case AND_N:
+                return args.length == 0 ? mathsat.api.msat_make_true(solver) : balance(args, 0, args.length, true);
+            case OR_N:
+                return args.length == 0 ? mathsat.api.msat_make_false(solver) : balance(args, 0, args.length, false);
+            case IFF:
+                return mathsat.api.msat_make_iff(solver, args[0], args[1]);
+            case IMPL:
+                return mathsat.api.msat_make_or(solver, mathsat.api.msat_make_not(solver, args[0]), args[1]);
+            case GREATER:
+                return mathsat.api.msat_make_not(solver, mathsat.api.msat_make_leq(solver, args[0], args[1]));
+            case LESS:
+                return mathsat.api.msat_make_not(solver, mathsat.api.msat_make_leq(solver, args[1], args[0]));
+            case GREATER_OR_EQUAL:
+                return mathsat.api.msat_make_leq(solver, args[1], args[0]);
+            case LESS_OR_EQUAL:
+                return mathsat.api.msat_make_leq(solver, args[0], args[1]);
+            case MINUS:
+                return mathsat.api.msat_make_times(solver, mathsat.api.msat_make_number(solver, "-1"), args[0]);
+            case NOT:
+                return mathsat.api.msat_make_not(solver, args[0]);
+            case ITE:
+                return mathsat.api.msat_make_term_ite(solver, args[0], args[1], args[2]);
+            case BV_ADD:
+                return mathsat.api.msat_make_bv_plus(solver, args[0], args[1]);
+            case BV_AND:
+                return mathsat.api.msat_make_bv_and(solver, args[0], args[1]);
+            case BV_MULT:
+                return mathsat.api.msat_make_bv_times(solver, args[0], args[1]);
+            case BV_NEG:
+                return mathsat.api.msat_make_bv_neg(solver, args[0]);
+            case BV_NOT:
+                return mathsat.api.msat_make_bv_not(solver, args[0]);
+            case BV_OR:
+                return mathsat.api.msat_make_bv_or(solver, args[0], args[1]);
+            case BV_SHIFT_LEFT:
+                return mathsat.api.msat_make_bv_lshl(solver, args[0], args[1]);
+            case BV_SIGNED_DIV:
+                return mathsat.api.msat_make_bv_sdiv(solver, args[0], args[1]);
+            case BV_SIGNED_GREATER:
+                return mathsat.api.msat_make_bv_slt(solver, args[1], args[0]);
+            case BV_SIGNED_GREATER_OR_EQUAL:
+                return mathsat.api.msat_make_bv_sleq(solver, args[1], args[0]);
+            case BV_SIGNED_LESS:
+                return mathsat.api.msat_make_bv_slt(solver, args[0], args[1]);
+            case BV_SIGNED_LESS_OR_EQUAL:
+                return mathsat.api.msat_make_bv_sleq(solver, args[0], args[1]);
+            case BV_SIGNED_REMAINDER:
+                return mathsat.api.msat_make_bv_srem(solver, args[0], args[1]);
+            case BV_SIGNED_SHIFT_RIGHT:
+                return mathsat.api.msat_make_bv_ashr(solver, args[0], args[1]);
+            case BV_SUB:
+                return mathsat.api.msat_make_bv_minus(solver, args[0], args[1]);
+            case BV_UNSIGNED_DIV:
+                return mathsat.api.msat_make_bv_udiv(solver, args[0], args[1]);
+            case BV_UNSIGNED_GREATER:
+                return mathsat.api.msat_make_bv_ult(solver, args[1], args[0]);
+            case BV_UNSIGNED_GREATER_OR_EQUAL:
+                return mathsat.api.msat_make_bv_uleq(solver, args[1], args[0]);
+            case BV_UNSIGNED_LESS:
+                return mathsat.api.msat_make_bv_ult(solver, args[0], args[1]);
+            case BV_UNSIGNED_LESS_OR_EQUAL:
+                return mathsat.api.msat_make_bv_uleq(solver, args[0], args[1]);
+            case BV_UNSIGNED_REMAINDER:
+                return mathsat.api.msat_make_bv_urem(solver, args[0], args[1]);
+            case BV_UNSIGNED_SHIFT_RIGHT:
+                return mathsat.api.msat_make_bv_lshr(solver, args[0], args[1]);
+            case BV_NAND:
+                return mathsat.api.msat_make_bv_not(solver, mathsat.api.msat_make_bv_and(solver, args[0], args[1]));
+            case BV_XOR:
+                return mathsat.api.msat_make_bv_xor(solver, args[0], args[1]);
+            case BV_NOR:
+                return mathsat.api.msat_make_bv_not(solver, mathsat.api.msat_make_bv_or(solver, args[0], args[1]));
+            default:
+                throw new UnsupportedOperationException("unsupported operator " + op);
+        }
+    }
+
+    /**
+     * MathSAT connectives are binary, so n-ary ones are translated into balanced trees of logarithmic depth
+     */
+    private long balance(long[] args, int from, int to, boolean conjunction) {
+        if (to - from == 1) {
+            return args[from];
+        }
+        int middle = (from + to) >>> 1;
+        long left = balance(args, from, middle, conjunction);
+        long right = balance(args, middle, to, conjunction);
+        if (conjunction) {
+            return mathsat.api.msat_make_and(solver, left, right);
+        } else {
+            return mathsat.api.msat_make_or(solver, left, right);
+        }
+    }
 
-        private VariableMarshaller marshaller;
+    /**
+     * Inside an instantiated clause, test-instantiable variables of the template are translated
+     * into the symbols of their test instances, and terms are memoized per test.
+     */
+    private class NodeTranslatorVisitor implements BottomUpMemoVisitor {
+
+        private Stack<Long> exprs;
 
         private boolean memoization;
 
-        NodeTranslatorVisitor(VariableMarshaller marshaller, boolean memoization) {
-            this.marshaller = marshaller;
+        private InstantiatedClause instance;
+
+        private Map<Node, Long> identityCache;
+        private Map<Node, Long> cache;
+
+        NodeTranslatorVisitor(boolean memoization) {
+            this(memoization, null);
+        }
+
+        NodeTranslatorVisitor(boolean memoization, InstantiatedClause instance) {
             this.exprs = new Stack<>();
-            nodeToMathsatMemo = new IdentityHashMap<>();
             this.memoization = memoization;
+            this.instance = instance;
+            if (instance == null) {
+                this.identityCache = identityTranslationCache;
+                this.cache = translationCache;
+            } else {
+                this.identityCache = new IdentityHashMap<>();
+                this.cache = instanceTranslationCache.computeIfAbsent(instance.getTest(), t -> new HashMap<>());
+            }
+        }
+
+        private Variable resolve(Variable variable) {
+            return instance == null ? variable : instance.resolve(variable);
         }
 
         long getExpr() {
@@ -560,16 +969,9 @@ public class MathSAT implements Solver, InterpolatingSolver {
         }
 
         private void processVariable(Variable variable) {
-            if (TypeInference.typeOf(variable).equals(IntType.TYPE)) {
-                pushAndMemoExpr(getIntVar(marshaller.toString(variable)), variable);
-            } else if (TypeInference.typeOf(variable).equals(BoolType.TYPE)) {
-                pushAndMemoExpr(getBoolVar(marshaller.toString(variable)), variable);
-            }else if (TypeInference.typeOf(variable) instanceof BVType) {
-                int size = ((BVType) TypeInference.typeOf(variable)).getSize();
-                pushAndMemoExpr(getBVVar(marshaller.toString(variable), size), variable);
-            } else {
-                throw new UnsupportedOperationException();
-            }
+            Variable resolved = resolve(variable);
+            frames.peek().add(resolved);
+            pushAndMemoExpr(symbols.get(resolved).getTerm(), variable);
         }
 
         private void pushAndMemoExpr(long e, Node node) {
@@ -577,7 +979,9 @@ public class MathSAT implements Solver, InterpolatingSolver {
                 throw msatError();
             }
             if (memoization) {
-                this.nodeToMathsatMemo.put(node, e);
+                translationCacheMisses++;
+                identityCache.put(node, e);
+                cache.put(node, e);
             }
             exprs.push(e);
         }
@@ -585,7 +989,7 @@ public class MathSAT implements Solver, InterpolatingSolver {
         @Override
         public boolean alreadyVisited(Node node) {
             if (memoization) {
-                return this.nodeToMathsatMemo.containsKey(node);
+                return identityCache.containsKey(node) || cache.containsKey(node);
             } else {
                 return false;
             }
@@ -593,7 +997,22 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         @Override
         public void visitAgain(Node node) {
-            exprs.push(this.nodeToMathsatMemo.get(node));
+            translationCacheHits++;
+            Long e = identityCache.get(node);
+            if (e == null) {
+                e = cache.get(node);
+                identityCache.put(node, e);
+            }
+            if (node instanceof Variable) {
+                frames.peek().add(resolve((Variable) node));
+            } else if (node instanceof ArenaNode && instance == null) {
+                addArenaVariables((ArenaNode) node);
+            } else if (instance == null) {
+                reusedFrames.peek().add(node);
+            } else {
+                reusedFrames.peek().add(new InstantiatedClause(node, instance.getTest()));
+            }
+            exprs.push(e);
         }
 
         @Override
@@ -614,35 +1033,22 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         @Override
         public void visit(Equal equal) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            if (mathsat.api.msat_is_bool_type(solver, mathsat.api.msat_term_get_type(left)) != 0) {
-                pushAndMemoExpr(mathsat.api.msat_make_iff(solver, left, right), equal);
-            } else {
-                pushAndMemoExpr(mathsat.api.msat_make_equal(solver, left, right), equal);
-            }
+            apply(equal);
         }
 
         @Override
         public void visit(Add add) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_plus(solver, left, right), add);
+            apply(add);
         }
 
         @Override
         public void visit(Sub sub) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            long neg = mathsat.api.msat_make_number(solver, "-1");
-            pushAndMemoExpr(mathsat.api.msat_make_plus(solver, left, mathsat.api.msat_make_times(solver, neg, right)), sub);
+            apply(sub);
         }
 
         @Override
         public void visit(Mult mult) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_times(solver, left, right), mult);
+            apply(mult);
         }
 
         @Override
@@ -653,69 +1059,75 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         @Override
         public void visit(And and) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_and(solver, left, right), and);
+            apply(and);
         }
 
         @Override
         public void visit(Or or) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_or(solver, left, right), or);
+            apply(or);
+        }
+
+        @Override
+        public void visit(AndN andN) {
+            apply(andN);
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            apply(orN);
+        }
+
+        private long[] popArgs(int argsNum) {
+            long[] args = new long[argsNum];
+            for (int i=argsNum-1; i>=0; i--) {
+                args[i] = exprs.pop();
+            }
+            return args;
+        }
+
+        private void apply(Application application) {
+            long[] args = popArgs(application.getArity());
+            pushAndMemoExpr(makeTerm(NodeArena.opOf(application), args), application);
         }
 
         @Override
         public void visit(Iff iff) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_iff(solver, left, right), iff);
+            apply(iff);
         }
 
         @Override
         public void visit(Impl impl) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_or(solver, mathsat.api.msat_make_not(solver, left), right), impl);
+            apply(impl);
         }
 
         @Override
         public void visit(Greater greater) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_not(solver, mathsat.api.msat_make_leq(solver, left, right)), greater);
+            apply(greater);
         }
 
         @Override
         public void visit(Less less) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_not(solver, mathsat.api.msat_make_leq(solver, right, left)), less);
+            apply(less);
         }
 
         @Override
         public void visit(GreaterOrEqual greaterOrEqual) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_leq(solver, right, left), greaterOrEqual);
+            apply(greaterOrEqual);
         }
 
         @Override
         public void visit(LessOrEqual lessOrEqual) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_leq(solver, left, right), lessOrEqual);
+            apply(lessOrEqual);
         }
 
         @Override
         public void visit(Minus minus) {
-            long neg = mathsat.api.msat_make_number(solver, "-1");
-            pushAndMemoExpr(mathsat.api.msat_make_times(solver, neg, exprs.pop()), minus);
+            apply(minus);
         }
 
         @Override
         public void visit(Not not) {
-            pushAndMemoExpr(mathsat.api.msat_make_not(solver, exprs.pop()), not);
+            apply(not);
         }
 
         @Override
@@ -747,6 +1159,25 @@ public class MathSAT implements Solver, InterpolatingSolver {
             processVariable(testInstance);
         }
 
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(memoization, instantiatedClause);
+            instantiatedClause.getTemplate().accept(visitor);
+            pushAndMemoExpr(visitor.getExpr(), instantiatedClause);
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            if (instance != null) {
+                arenaNode.toNode().accept(this);
+                pushAndMemoExpr(exprs.pop(), arenaNode);
+                return;
+            }
+            long[] terms = translateArena(arenaNode.getArena(), arenaNode.getEntry());
+            addArenaVariables(arenaNode);
+            pushAndMemoExpr(terms[arenaNode.getEntry()], arenaNode);
+        }
+
         @Override
         public void visit(Parameter parameter) {
             processVariable(parameter);
@@ -764,10 +1195,7 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         @Override
         public void visit(ITE ite) {
-            long elseBranch = exprs.pop();
-            long thenBranch = exprs.pop();
-            long condition = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_term_ite(solver, condition, thenBranch, elseBranch), ite);
+            apply(ite);
         }
 
         @Override
@@ -789,84 +1217,62 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         @Override
         public void visit(BVAdd bvAdd) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_plus(solver, left, right), bvAdd);
+            apply(bvAdd);
         }
 
         @Override
         public void visit(BVAnd bvAnd) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_and(solver, left, right), bvAnd);
+            apply(bvAnd);
         }
 
         @Override
         public void visit(BVMult bvMult) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_times(solver, left, right), bvMult);
+            apply(bvMult);
         }
 
         @Override
         public void visit(BVNeg bvNeg) {
-            long arg = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_neg(solver, arg), bvNeg);
+            apply(bvNeg);
         }
 
         @Override
         public void visit(BVNot bvNot) {
-            long arg = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_not(solver, arg), bvNot);
+            apply(bvNot);
         }
 
         @Override
         public void visit(BVOr bvOr) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_or(solver, left, right), bvOr);
+            apply(bvOr);
         }
 
         @Override
         public void visit(BVShiftLeft bvShiftLeft) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_lshl(solver, left, right), bvShiftLeft);
+            apply(bvShiftLeft);
         }
 
         @Override
         public void visit(BVSignedDiv bvSignedDiv) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_sdiv(solver, left, right), bvSignedDiv);
+            apply(bvSignedDiv);
         }
 
         @Override
         public void visit(BVSignedGreater bvSignedGreater) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_slt(solver, right, left), bvSignedGreater); //NOTE: change order
+            apply(bvSignedGreater);
         }
 
         @Override
         public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_sleq(solver, right, left), bvSignedGreaterOrEqual); //NOTE: change order
+            apply(bvSignedGreaterOrEqual);
         }
 
         @Override
         public void visit(BVSignedLess bvSignedLess) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_slt(solver, left, right), bvSignedLess);
+            apply(bvSignedLess);
         }
 
         @Override
         public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_sleq(solver, left, right), bvSignedLessOrEqual);
+            apply(bvSignedLessOrEqual);
         }
 
         @Override
@@ -876,93 +1282,67 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         @Override
         public void visit(BVSignedRemainder bvSignedRemainder) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_srem(solver, left, right), bvSignedRemainder);
+            apply(bvSignedRemainder);
         }
 
         @Override
         public void visit(BVSignedShiftRight bvSignedShiftRight) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_ashr(solver, left, right), bvSignedShiftRight);
+            apply(bvSignedShiftRight);
         }
 
         @Override
         public void visit(BVSub bvSub) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_minus(solver, left, right), bvSub);
+            apply(bvSub);
         }
 
         @Override
         public void visit(BVUnsignedDiv bvUnsignedDiv) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_udiv(solver, left, right), bvUnsignedDiv);
+            apply(bvUnsignedDiv);
         }
 
         @Override
         public void visit(BVUnsignedGreater bvUnsignedGreater) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_ult(solver, right, left), bvUnsignedGreater); //NOTE: change order
+            apply(bvUnsignedGreater);
         }
 
         @Override
         public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_uleq(solver, right, left), bvUnsignedGreaterOrEqual); //NOTE: change order
+            apply(bvUnsignedGreaterOrEqual);
         }
 
         @Override
         public void visit(BVUnsignedLess bvUnsignedLess) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_ult(solver, left, right), bvUnsignedLess);
+            apply(bvUnsignedLess);
         }
 
         @Override
         public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_uleq(solver, left, right), bvUnsignedLessOrEqual);
+            apply(bvUnsignedLessOrEqual);
         }
 
         @Override
         public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_urem(solver, left, right), bvUnsignedRemainder);
+            apply(bvUnsignedRemainder);
         }
 
         @Override
         public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_lshr(solver, left, right), bvUnsignedShiftRight);
+            apply(bvUnsignedShiftRight);
         }
 
         @Override
         public void visit(BVNand bvNand) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_not(solver, mathsat.api.msat_make_bv_and(solver, left, right)), bvNand);
+            apply(bvNand);
         }
 
         @Override
         public void visit(BVXor bvXor) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_xor(solver, left, right), bvXor);
+            apply(bvXor);
         }
 
         @Override
         public void visit(BVNor bvNor) {
-            long right = exprs.pop();
-            long left = exprs.pop();
-            pushAndMemoExpr(mathsat.api.msat_make_bv_not(solver, mathsat.api.msat_make_bv_or(solver, left, right)), bvNor);
+            apply(bvNor);
         }
 
         @Override
@@ -97,6 +97,16 @@ public class NodeCounter {
             countAndMemo(or);
         }
 
+        @Override
+        public void visit(AndN andN) {
+            countAndMemo(andN);
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            countAndMemo(orN);
+        }
+
         @Override
         public void visit(Iff iff) {
             countAndMemo(iff);
@@ -162,6 +172,19 @@ public class NodeCounter {
             countAndMemo(testInstance);
         }
 
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            // the instance has the shape of the template, nodes shared between instances are counted for each:
+            counter += count(instantiatedClause.getTemplate());
+            nodeMemo.put(instantiatedClause, true);
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            arenaNode.toNode().accept(this);
+            nodeMemo.put(arenaNode, true);
+        }
+
         @Override
         public void visit(Parameter parameter) {
             countAndMemo(parameter);
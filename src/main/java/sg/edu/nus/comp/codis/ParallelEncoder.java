@@ -0,0 +1,107 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Builds per-test clause blocks concurrently on a fork-join pool.
+ * Blocks are merged in the order of tests, so the encoding does not depend on scheduling.
+ *
+ * Blocks are built and hashed on the pool, but translated to solver terms by the caller,
+ * since solver environments are not thread-safe.
+ * Synthesizers encode sequentially unless they are given an encoder with a pool,
+ * which pays off when instantiating clauses dominates, i.e. for large test suites.
+ */
+public class ParallelEncoder {
+
+    private static final int DEFAULT_THRESHOLD = 4;
+
+    private static final ParallelEncoder sequential = new ParallelEncoder(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+
+    // maximum number of tests encoded by one task:
+    private final int threshold;
+
+    public ParallelEncoder(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public ParallelEncoder(ForkJoinPool pool) {
+        this(pool, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Encodes on the JVM-wide common pool
+     */
+    public static ParallelEncoder common() {
+        return new ParallelEncoder(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encodes in the calling thread
+     */
+    public static ParallelEncoder sequential() {
+        return sequential;
+    }
+
+    /**
+     * @return concatenation of the clause blocks of the tests, in the order of tests
+     */
+    public <T> List<Node> encode(List<? extends T> tests, Function<? super T, ? extends List<Node>> block) {
+        EncodingTask<T> task = new EncodingTask<>(tests, block, 0, tests.size());
+        if (pool == null || tests.size() <= threshold) {
+            return task.compute();
+        }
+        return pool.invoke(task);
+    }
+
+    private class EncodingTask<T> extends RecursiveTask<List<Node>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> tests;
+        private final Function<? super T, ? extends List<Node>> block;
+        private final int from;
+        private final int to;
+
+        EncodingTask(List<? extends T> tests, Function<? super T, ? extends List<Node>> block, int from, int to) {
+            this.tests = tests;
+            this.block = block;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Node> compute() {
+            if (pool == null || to - from <= threshold) {
+                List<Node> clauses = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    for (Node clause : block.apply(tests.get(i))) {
+                        clause.hashCode(); // cached in the node, so that the solver thread does not traverse it
+                        clauses.add(clause);
+                    }
+                }
+                return clauses;
+            }
+            int middle = (from + to) >>> 1;
+            EncodingTask<T> left = new EncodingTask<>(tests, block, from, middle);
+            EncodingTask<T> right = new EncodingTask<>(tests, block, middle, to);
+            left.fork();
+            List<Node> rightClauses = right.compute();
+            List<Node> clauses = left.join();
+            clauses.addAll(rightClauses);
+            return clauses;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package sg.edu.nus.comp.codis;
+
+import com.google.common.collect.Multiset;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs several synthesizers in parallel and returns the first result.
+ * Each member is created by its supplier on its own thread, so it should build its own solvers.
+ */
+public class PortfolioSynthesis implements Synthesis {
+
+    private Logger logger = LoggerFactory.getLogger(PortfolioSynthesis.class);
+
+    private List<Supplier<? extends Synthesis>> members;
+
+    public PortfolioSynthesis(List<Supplier<? extends Synthesis>> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("empty portfolio");
+        }
+        this.members = members;
+    }
+
+    @Override
+    public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite,
+                                                                        Multiset<Node> components) {
+        return synthesize(testSuite, components, Budget.unlimited()).getProgram();
+    }
+
+    /**
+     * Members share a child budget that is cancelled as soon as one of them finds a program.
+     * If none is found and members time out, the result carries the first partial program received from them.
+     */
+    @Override
+    public SynthesisResult synthesize(List<? extends TestCase> testSuite,
+                                      Multiset<Node> components,
+                                      Budget budget) {
+        Budget members = budget.child();
+        AtomicReference<SynthesisResult> timedOut = new AtomicReference<>();
+        try {
+            SynthesisResult result = race(s -> {
+                SynthesisResult r = s.synthesize(testSuite, components, members);
+                if (r.isTimedOut()) {
+                    timedOut.accumulateAndGet(r, (first, next) ->
+                            first != null && first.getProgram().isPresent() ? first : next);
+                }
+                return r;
+            }, SynthesisResult::isFound, SynthesisResult.notFound());
+            if (result.isFound()) {
+                return result;
+            }
+            if (timedOut.get() != null) {
+                return timedOut.get();
+            }
+            return budget.isExhausted() ? SynthesisResult.timedOut(Optional.empty()) : result;
+        } finally {
+            members.cancel();
+        }
+    }
+
+    @Override
+    public List<Pair<Program, Map<Parameter, Constant>>> synthesizeAll(List<? extends TestCase> testSuite,
+                                                                       Multiset<Node> components) {
+        return race(s -> s.synthesizeAll(testSuite, components), r -> !r.isEmpty(), new ArrayList<>());
+    }
+
+    /**
+     * @return first result satisfying found, or none if no member finds a result
+     * @throws RuntimeException if all members fail
+     */
+    private <T> T race(Function<Synthesis, T> job, Predicate<T> found, T none) {
+        ExecutorService executor = Executors.newFixedThreadPool(members.size(), runnable -> {
+            Thread thread = new Thread(runnable, "portfolio");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        List<Future<T>> futures = new ArrayList<>();
+        for (Supplier<? extends Synthesis> member : members) {
+            futures.add(completion.submit(() -> job.apply(member.get())));
+        }
+        try {
+            RuntimeException failure = null;
+            boolean completed = false;
+            for (int i = 0; i < futures.size(); i++) {
+                Future<T> future = completion.take();
+                try {
+                    T result = future.get();
+                    completed = true;
+                    if (found.test(result)) {
+                        logger.debug("portfolio member " + futures.indexOf(future) + " finished first");
+                        return result;
+                    }
+                } catch (ExecutionException e) {
+                    logger.warn("portfolio member " + futures.indexOf(future) + " failed: " + e.getCause());
+                    failure = new RuntimeException(e.getCause());
+                }
+            }
+            if (!completed) {
+                throw failure;
+            }
+            return none;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for portfolio", e);
+        } finally {
+            //NOTE: interruption is best effort, engines stop when their budget is cancelled
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -3,388 +3,303 @@ package sg.edu.nus.comp.codis;
 import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
- * Created by Sergey Mechtaev on 26/6/2016.
+ * Streaming printer: terms are written to an Appendable token by token using an explicit stack,
+ * so no intermediate strings are built for subterms.
+ *
+ * In SMT-LIB2 mode, applications that occur more than once in the term are let-bound,
+ * so the output is linear in the size of the formula DAG rather than the size of the tree.
  */
 public class Printer {
 
-    // printing with memoization, but currently uses slow string concatenation
-    public static String print(Node node) {
-        NodePrinterVisitor visitor = new NodePrinterVisitor();
-        node.accept(visitor);
-        return visitor.getRepr();
-    }
-
-    private static class NodePrinterVisitor implements BottomUpMemoVisitor {
-
-        private Map<Node, String> nodeToMathsatMemo;
-
-        private Stack<String> exprs;
-
-        NodePrinterVisitor() {
-            this.exprs = new Stack<>();
-            nodeToMathsatMemo = new IdentityHashMap<>();
-        }
-
-        String getRepr() {
-            assert exprs.size() == 1;
-            return exprs.peek();
-        }
-
-        private void processVariable(Variable variable) {
-            pushAndMemoExpr(variable.toString(), variable);
-        }
-
-        private void pushAndMemoExpr(String repr, Node node) {
-            this.nodeToMathsatMemo.put(node, repr);
-            exprs.push(repr);
-        }
-
-        @Override
-        public boolean alreadyVisited(Node node) {
-            return this.nodeToMathsatMemo.containsKey(node);
-        }
-
-        @Override
-        public void visitAgain(Node node) {
-            exprs.push(this.nodeToMathsatMemo.get(node));
-        }
-
-        @Override
-        public void visit(ProgramVariable programVariable) {
-            processVariable(programVariable);
-        }
-
-        @Override
-        public void visit(Location location) {
-            processVariable(location);
-        }
-
-        @Override
-        public void visit(UIFApplication UIFApplication) {
-            //TODO
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(Equal equal) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " = " + right + ")", equal);
-        }
-
-        @Override
-        public void visit(Add add) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " + " + right + ")", add);
-        }
-
-        @Override
-        public void visit(Sub sub) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " - " + right + ")", sub);
-        }
-
-        @Override
-        public void visit(Mult mult) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " * " + right + ")", mult);
-        }
+    private static final Map<Class<? extends Node>, String> infixOperators = new HashMap<>();
+    private static final Map<Class<? extends Node>, String> smtlibOperators = new HashMap<>();
 
-        @Override
-        public void visit(Div div) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " / " + right + ")", div);
-        }
+    private static void operator(Class<? extends Node> type, String infix, String smtlib) {
+        infixOperators.put(type, infix);
+        smtlibOperators.put(type, smtlib);
+    }
 
-        @Override
-        public void visit(And and) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " & " + right + ")", and);
-        }
+    static {
+        operator(Add.class, "+", "+");
+        operator(Sub.class, "-", "-");
+        operator(Mult.class, "*", "*");
+        operator(Div.class, "/", "div");
+        operator(Minus.class, "-", "-");
+        operator(Less.class, "<", "<");
+        operator(LessOrEqual.class, "<=", "<=");
+        operator(Greater.class, ">", ">");
+        operator(GreaterOrEqual.class, ">=", ">=");
+        operator(Equal.class, "=", "=");
+        operator(And.class, "&", "and");
+        operator(Or.class, "|", "or");
+        operator(AndN.class, "&", "and");
+        operator(OrN.class, "|", "or");
+        operator(Not.class, "!", "not");
+        operator(Impl.class, "=>", "=>");
+        operator(Iff.class, "<=>", "=");
+        operator(ITE.class, "if", "ite");
+        operator(BVAdd.class, "+", "bvadd");
+        operator(BVSub.class, "-", "bvsub");
+        operator(BVMult.class, "*", "bvmul");
+        operator(BVUnsignedDiv.class, "/u", "bvudiv");
+        operator(BVSignedDiv.class, "/", "bvsdiv");
+        operator(BVUnsignedRemainder.class, "%u", "bvurem");
+        operator(BVSignedRemainder.class, "%", "bvsrem");
+        operator(BVSignedModulo.class, "mod", "bvsmod");
+        operator(BVShiftLeft.class, "<<", "bvshl");
+        operator(BVUnsignedShiftRight.class, ">>>", "bvlshr");
+        operator(BVSignedShiftRight.class, ">>", "bvashr");
+        operator(BVAnd.class, "&", "bvand");
+        operator(BVOr.class, "|", "bvor");
+        operator(BVXor.class, "^", "bvxor");
+        operator(BVNand.class, "nand", "bvnand");
+        operator(BVNor.class, "nor", "bvnor");
+        operator(BVXnor.class, "xnor", "bvxnor");
+        operator(BVNot.class, "~", "bvnot");
+        operator(BVNeg.class, "-", "bvneg");
+        operator(BVUnsignedLess.class, "<u", "bvult");
+        operator(BVUnsignedLessOrEqual.class, "<=u", "bvule");
+        operator(BVUnsignedGreater.class, ">u", "bvugt");
+        operator(BVUnsignedGreaterOrEqual.class, ">=u", "bvuge");
+        operator(BVSignedLess.class, "<", "bvslt");
+        operator(BVSignedLessOrEqual.class, "<=", "bvsle");
+        operator(BVSignedGreater.class, ">", "bvsgt");
+        operator(BVSignedGreaterOrEqual.class, ">=", "bvsge");
+    }
 
-        @Override
-        public void visit(Or or) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " | " + right + ")", or);
+    public static String print(Node node) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(node, builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return builder.toString();
+    }
 
-        @Override
-        public void visit(Iff iff) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " <=> " + right + ")", iff);
-        }
+    /**
+     * Prints the node in infix notation, shared subterms are printed at every occurrence
+     */
+    public static void print(Node node, Appendable out) throws IOException {
+        new TermWriter(null, out).write(node);
+    }
 
-        @Override
-        public void visit(Impl impl) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " => " + right + ")", impl);
+    public static String printSMTLIB(Node node, VariableMarshaller marshaller) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            printSMTLIB(node, marshaller, builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return builder.toString();
+    }
 
-        @Override
-        public void visit(Greater greater) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " > " + right + ")", greater);
-        }
+    /**
+     * Prints the node as an SMT-LIB2 term with variables named by the marshaller
+     */
+    public static void printSMTLIB(Node node, VariableMarshaller marshaller, Appendable out) throws IOException {
+        new TermWriter(marshaller, out).writeWithLets(node);
+    }
 
-        @Override
-        public void visit(Less less) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " < " + right + ")", less);
-        }
+    /**
+     * Writes SMT-LIB2 if marshaller is given and infix notation otherwise
+     */
+    private static class TermWriter {
 
-        @Override
-        public void visit(GreaterOrEqual greaterOrEqual) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " >= " + right + ")", greaterOrEqual);
-        }
+        private final VariableMarshaller marshaller;
 
-        @Override
-        public void visit(LessOrEqual lessOrEqual) {
-            String right = exprs.pop();
-            String left = exprs.pop();
-            pushAndMemoExpr("(" + left + " <= " + right + ")", lessOrEqual);
-        }
+        private final Appendable out;
 
-        @Override
-        public void visit(Minus minus) {
-            String arg = exprs.pop();
-            pushAndMemoExpr("-" + arg, minus);
-        }
+        // materialized arena entries, so that repeated references are the same node:
+        private final Map<Node, Node> unfolded = new IdentityHashMap<>();
 
-        @Override
-        public void visit(Not not) {
-            String arg = exprs.pop();
-            pushAndMemoExpr("!" + arg, not);
-        }
+        private final Map<Node, String> names = new IdentityHashMap<>();
 
-        @Override
-        public void visit(IntConst intConst) {
-            pushAndMemoExpr(Integer.toString(intConst.getValue()), intConst);
+        TermWriter(VariableMarshaller marshaller, Appendable out) {
+            this.marshaller = marshaller;
+            this.out = out;
         }
 
-        @Override
-        public void visit(BoolConst boolConst) {
-            String repr;
-            if (boolConst.getValue()) {
-                repr = "true";
-            } else {
-                repr = "false";
+        private Node unfold(Node node) {
+            if (node instanceof ArenaNode) {
+                return unfolded.computeIfAbsent(node, n -> ((ArenaNode) n).toNode());
+            }
+            return node;
+        }
+
+        /**
+         * Subterms of an instantiated clause are wrapped with its test, so the instance is never materialized
+         */
+        private static Node within(InstantiatedClause clause, Node node) {
+            return clause == null ? node : new InstantiatedClause(node, clause.getTest());
+        }
+
+        /**
+         * Shared applications are grouped by let depth: bindings of the same let only refer to earlier lets.
+         * Instantiated clauses are leaves of this analysis, they are written in full.
+         */
+        void writeWithLets(Node root) throws IOException {
+            root = unfold(root);
+            Map<Node, Integer> references = new IdentityHashMap<>();
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = unfold(stack.pop());
+                if (node instanceof Application && references.merge(node, 1, Integer::sum) == 1) {
+                    Application application = (Application) node;
+                    for (int i = 0; i < application.getArity(); i++) {
+                        stack.push(application.getArg(i));
+                    }
+                }
             }
-            pushAndMemoExpr(repr, boolConst);
-        }
-
-        @Override
-        public void visit(ComponentInput componentInput) {
-            processVariable(componentInput);
-        }
-
-        @Override
-        public void visit(ComponentOutput componentOutput) {
-            processVariable(componentOutput);
-        }
-
-        @Override
-        public void visit(TestInstance testInstance) {
-            processVariable(testInstance);
-        }
-
-        @Override
-        public void visit(Parameter parameter) {
-            processVariable(parameter);
-        }
-
-        @Override
-        public void visit(Hole hole) {
-            processVariable(hole);
-        }
-
-        @Override
-        public void visit(BranchOutput branchOutput) {
-            processVariable(branchOutput);
-        }
-
-        @Override
-        public void visit(ITE ite) {
-            String elseBranch = exprs.pop();
-            String thenBranch = exprs.pop();
-            String condition = exprs.pop();
-            pushAndMemoExpr("(if " + condition + " " + thenBranch + " " + elseBranch + ")", ite);
-        }
-
-        @Override
-        public void visit(Selector selector) {
-            processVariable(selector);
-        }
-
-        @Override
-        public void visit(BVConst bvConst) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVAdd bvAdd) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVAnd bvAnd) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVMult bvMult) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVNeg bvNeg) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVNot bvNot) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVOr bvOr) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVShiftLeft bvShiftLeft) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedDiv bvSignedDiv) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedGreater bvSignedGreater) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedLess bvSignedLess) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedModulo bvSignedModulo) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedRemainder bvSignedRemainder) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSignedShiftRight bvSignedShiftRight) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVSub bvSub) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedDiv bvUnsignedDiv) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedGreater bvUnsignedGreater) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedLess bvUnsignedLess) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVNand bvNand) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVXor bvXor) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void visit(BVNor bvNor) {
-            throw new UnsupportedOperationException();
-        }
 
-        @Override
-        public void visit(BVXnor bvXnor) {
-            throw new UnsupportedOperationException();
-        }
+            List<List<Node>> lets = new ArrayList<>();
+            Map<Node, Integer> depth = new IdentityHashMap<>();
+            Set<Node> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.peek();
+                if (depth.containsKey(node)) {
+                    stack.pop();
+                    continue;
+                }
+                if (!(node instanceof Application)) {
+                    depth.put(node, 0);
+                    stack.pop();
+                    continue;
+                }
+                Application application = (Application) node;
+                if (expanded.add(node)) {
+                    for (int i = application.getArity() - 1; i >= 0; i--) {
+                        stack.push(unfold(application.getArg(i)));
+                    }
+                    continue;
+                }
+                stack.pop();
+                int level = 0;
+                for (int i = 0; i < application.getArity(); i++) {
+                    level = Math.max(level, depth.get(unfold(application.getArg(i))));
+                }
+                if (node != root && references.get(node) > 1) {
+                    if (level == lets.size()) {
+                        lets.add(new ArrayList<>());
+                    }
+                    lets.get(level).add(node);
+                    level++;
+                }
+                depth.put(node, level);
+            }
 
-        @Override
-        public void visit(ProgramOutput programOutput) {
-            processVariable(programOutput);
+            int bound = 0;
+            for (List<Node> let : lets) {
+                out.append("(let (");
+                for (int i = 0; i < let.size(); i++) {
+                    out.append(i == 0 ? "(" : " (").append("t").append(Integer.toString(bound + i + 1)).append(' ');
+                    write(let.get(i));
+                    out.append(')');
+                }
+                for (Node node : let) {
+                    names.put(node, "t" + (++bound));
+                }
+                out.append(") ");
+            }
+            write(root);
+            for (int i = 0; i < lets.size(); i++) {
+                out.append(')');
+            }
         }
 
-        @Override
-        public void visit(Dummy dummy) {
-            processVariable(dummy);
+        void write(Node root) throws IOException {
+            Deque<Object> work = new ArrayDeque<>();
+            work.push(root);
+            while (!work.isEmpty()) {
+                Object item = work.pop();
+                if (item instanceof String) {
+                    out.append((String) item);
+                    continue;
+                }
+                Node node = unfold((Node) item);
+                InstantiatedClause clause = null;
+                while (node instanceof InstantiatedClause) {
+                    clause = (InstantiatedClause) node;
+                    node = unfold(clause.getTemplate());
+                }
+                if (clause == null && names.containsKey(node)) {
+                    out.append(names.get(node));
+                } else if (node instanceof Variable) {
+                    Variable variable = clause == null ? (Variable) node : clause.resolve((Variable) node);
+                    out.append(marshaller != null ? marshaller.toString(variable) : variable.toString());
+                } else if (node instanceof IntConst) {
+                    int value = ((IntConst) node).getValue();
+                    if (marshaller != null && value < 0) {
+                        out.append("(- ").append(Long.toString(-(long) value)).append(')');
+                    } else {
+                        out.append(Integer.toString(value));
+                    }
+                } else if (node instanceof BoolConst) {
+                    out.append(Boolean.toString(((BoolConst) node).getValue()));
+                } else if (node instanceof BVConst) {
+                    if (marshaller != null) {
+                        out.append("(_ bv").append(((BVConst) node).getValue().toString()).append(' ')
+                                .append(Integer.toString(((BVConst) node).getType().getSize())).append(')');
+                    } else {
+                        out.append(((BVConst) node).getValue().toString());
+                    }
+                } else if ((node instanceof AndN || node instanceof OrN) && ((Application) node).getArity() == 0) {
+                    out.append(Boolean.toString(node instanceof AndN));
+                } else if (node instanceof UIFApplication && marshaller == null) {
+                    UIFApplication application = (UIFApplication) node;
+                    out.append(application.getUIF().getName()).append('(');
+                    work.push(")");
+                    for (int i = application.getArity() - 1; i >= 0; i--) {
+                        work.push(within(clause, application.getArg(i)));
+                        if (i > 0) {
+                            work.push(", ");
+                        }
+                    }
+                } else if (marshaller != null && smtlibOperators.containsKey(node.getClass())) {
+                    Application application = (Application) node;
+                    out.append('(').append(smtlibOperators.get(node.getClass()));
+                    work.push(")");
+                    for (int i = application.getArity() - 1; i >= 0; i--) {
+                        work.push(within(clause, application.getArg(i)));
+                        work.push(" ");
+                    }
+                } else if (marshaller == null && infixOperators.containsKey(node.getClass())) {
+                    pushInfix((Application) node, clause, infixOperators.get(node.getClass()), work);
+                } else {
+                    throw new UnsupportedOperationException("cannot print " + node.getClass().getSimpleName() +
+                            (marshaller != null ? " in SMT-LIB" : ""));
+                }
+            }
         }
 
-        @Override
-        public void visit(Indexed indexed) {
-            processVariable(indexed);
+        private void pushInfix(Application application, InstantiatedClause clause, String operator, Deque<Object> work)
+                throws IOException {
+            if (application.getArity() == 1) {
+                out.append(operator);
+                work.push(within(clause, application.getArg(0)));
+                return;
+            }
+            out.append('(');
+            work.push(")");
+            for (int i = application.getArity() - 1; i >= 0; i--) {
+                work.push(within(clause, application.getArg(i)));
+                if (application instanceof ITE) {
+                    work.push(" ");
+                } else if (i > 0) {
+                    work.push(" " + operator + " ");
+                }
+            }
+            if (application instanceof ITE) {
+                out.append(operator);
+            }
         }
-
     }
 
 }
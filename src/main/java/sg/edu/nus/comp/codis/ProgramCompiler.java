@@ -0,0 +1,259 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * Compiles program semantics to method handles of type long[] -> long, where the array holds the values of
+ * program variables in the slots assigned by this compiler. Values are represented as in Evaluator.
+ *
+ * Fragments are cached per component together with the handles of its children,
+ * so after expanding a leaf only the components on the path to the root are recompiled.
+ * Fragments that depend on parameter values are not cached. Components are compared by identity
+ * and synthesizers create new ones for each candidate, so the cache keeps the most recently used fragments.
+ *
+ * Slots and fragments are kept in plain maps, so a compiler must not be used by two threads at once.
+ */
+public class ProgramCompiler {
+
+    private static final MethodType FRAGMENT_TYPE = MethodType.methodType(long.class, long[].class);
+
+    private static final MethodHandle APPLY;
+    private static final MethodHandle IS_TRUE;
+    private static final MethodHandle ARRAY_GETTER = MethodHandles.arrayElementGetter(long[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            APPLY = lookup.findStatic(Evaluator.class, "apply",
+                    MethodType.methodType(long.class, NodeArena.Op.class, long.class, long.class, int.class));
+            IS_TRUE = lookup.findStatic(ProgramCompiler.class, "isTrue",
+                    MethodType.methodType(boolean.class, long.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static boolean isTrue(long value) {
+        return value != 0;
+    }
+
+    /**
+     * Compiled semantics of a (sub)program
+     */
+    public static class CompiledProgram {
+
+        private final MethodHandle handle;
+
+        private final Type type;
+
+        private final Set<Variable> variables;
+
+        private final boolean parametric;
+
+        CompiledProgram(MethodHandle handle, Type type, Set<Variable> variables, boolean parametric) {
+            this.handle = handle;
+            this.type = type;
+            this.variables = variables;
+            this.parametric = parametric;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return program variables read by the program
+         */
+        public Set<Variable> getVariables() {
+            return variables;
+        }
+
+        /**
+         * @throws ArithmeticException if the value is undefined because of integer division by zero or overflow
+         */
+        public long applyAsLong(long[] inputs) {
+            try {
+                return (long) handle.invokeExact(inputs);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public Constant apply(long[] inputs) {
+            return Evaluator.toConstant(applyAsLong(inputs), type);
+        }
+    }
+
+    private static class CacheEntry {
+        private final Map<Hole, CompiledProgram> children;
+        private final CompiledProgram compiled;
+
+        CacheEntry(Map<Hole, CompiledProgram> children, CompiledProgram compiled) {
+            this.children = children;
+            this.compiled = compiled;
+        }
+    }
+
+    private final Map<Variable, Integer> slots = new HashMap<>();
+
+    public static final int DEFAULT_CACHE_CAPACITY = 10000;
+
+    private final LinkedHashMap<Component, CacheEntry> cache;
+
+    public ProgramCompiler() {
+        this(DEFAULT_CACHE_CAPACITY);
+    }
+
+    public ProgramCompiler(int cacheCapacity) {
+        if (cacheCapacity <= 0) {
+            throw new IllegalArgumentException("cache capacity must be positive");
+        }
+        this.cache = new LinkedHashMap<Component, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Component, CacheEntry> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * @return slot of the variable in input arrays, assigned on first use
+     */
+    public int getSlot(Variable variable) {
+        return slots.computeIfAbsent(variable, v -> slots.size());
+    }
+
+    public int getSlotCount() {
+        return slots.size();
+    }
+
+    /**
+     * Fills input array with the values of the assignment, unassigned slots are 0
+     */
+    public long[] toInputs(Map<? extends Variable, ? extends Node> assignment) {
+        long[] inputs = new long[slots.size()];
+        for (Map.Entry<? extends Variable, ? extends Node> entry : assignment.entrySet()) {
+            Integer slot = slots.get(entry.getKey());
+            if (slot != null) {
+                Node value = entry.getValue();
+                if (!(value instanceof Constant)) {
+                    value = Evaluator.evaluate(value, Collections.emptyMap());
+                }
+                inputs[slot] = Evaluator.leafValue(value, Evaluator.width(TypeInference.typeOf(entry.getKey())), Collections.emptyMap());
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the semantics contains nodes that cannot be evaluated
+     */
+    public CompiledProgram compile(Program program, Map<Parameter, Constant> parameterValuation) {
+        Map<Hole, CompiledProgram> children = new HashMap<>();
+        for (Map.Entry<Hole, Program> child : program.getChildren().entrySet()) {
+            children.put(child.getKey(), compile(child.getValue(), parameterValuation));
+        }
+        CacheEntry cached = cache.get(program.getRoot());
+        if (cached != null && sameChildren(cached.children, children)) {
+            return cached.compiled;
+        }
+        CompiledProgram compiled = compile(program.getRoot(), children, parameterValuation);
+        if (!compiled.parametric) {
+            cache.put(program.getRoot(), new CacheEntry(children, compiled));
+        }
+        return compiled;
+    }
+
+    private static boolean sameChildren(Map<Hole, CompiledProgram> cached, Map<Hole, CompiledProgram> children) {
+        if (cached.size() != children.size()) {
+            return false;
+        }
+        for (Map.Entry<Hole, CompiledProgram> entry : children.entrySet()) {
+            if (cached.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CompiledProgram compile(Component component,
+                                    Map<Hole, CompiledProgram> children,
+                                    Map<Parameter, Constant> parameterValuation) {
+        NodeArena arena = new NodeArena();
+        int root = arena.add(component.getSemantics());
+        int[] widths = Evaluator.widths(arena, root);
+        MethodHandle[] handles = new MethodHandle[root + 1];
+        Set<Variable> variables = new HashSet<>();
+        boolean parametric = false;
+        for (int i = 0; i <= root; i++) {
+            NodeArena.Op op = arena.getOp(i);
+            if (op == NodeArena.Op.LEAF) {
+                Node leaf = arena.getLeaf(i);
+                if (leaf instanceof Hole) {
+                    CompiledProgram child = children.get(leaf);
+                    if (child == null) {
+                        throw new UnsupportedOperationException("unfilled hole " + leaf);
+                    }
+                    handles[i] = child.handle;
+                    variables.addAll(child.variables);
+                    parametric |= child.parametric;
+                } else if (leaf instanceof Parameter) {
+                    if (!parameterValuation.containsKey(leaf)) {
+                        throw new UnsupportedOperationException("no value for parameter " + leaf);
+                    }
+                    handles[i] = constant(Evaluator.leafValue(parameterValuation.get(leaf), widths[i], Collections.emptyMap()));
+                    parametric = true;
+                } else if (leaf instanceof ProgramVariable) {
+                    handles[i] = MethodHandles.insertArguments(ARRAY_GETTER, 1, getSlot((Variable) leaf));
+                    variables.add((Variable) leaf);
+                } else if (leaf instanceof Constant) {
+                    handles[i] = constant(Evaluator.leafValue(leaf, widths[i], Collections.emptyMap()));
+                } else {
+                    throw new UnsupportedOperationException("cannot compile " + leaf.getClass().getSimpleName());
+                }
+            } else if (op == NodeArena.Op.ITE) {
+                MethodHandle condition = MethodHandles.filterReturnValue(handles[arena.getChild(i, 0)], IS_TRUE);
+                handles[i] = MethodHandles.guardWithTest(condition,
+                        handles[arena.getChild(i, 1)], handles[arena.getChild(i, 2)]);
+            } else if (op == NodeArena.Op.AND_N || op == NodeArena.Op.OR_N) {
+                NodeArena.Op binary = op == NodeArena.Op.AND_N ? NodeArena.Op.AND : NodeArena.Op.OR;
+                MethodHandle result = constant(op == NodeArena.Op.AND_N ? 1 : 0);
+                for (int j = 0; j < arena.getArity(i); j++) {
+                    result = binary(binary, 0, result, handles[arena.getChild(i, j)]);
+                }
+                handles[i] = result;
+            } else if (arena.getArity(i) == 1) {
+                MethodHandle operator = MethodHandles.insertArguments(APPLY, 0, op);
+                operator = MethodHandles.insertArguments(operator, 1, 0L, widths[arena.getChild(i, 0)]);
+                handles[i] = MethodHandles.filterArguments(operator, 0, handles[arena.getChild(i, 0)]);
+            } else {
+                handles[i] = binary(op, widths[arena.getChild(i, 0)],
+                        handles[arena.getChild(i, 0)], handles[arena.getChild(i, 1)]);
+            }
+        }
+        return new CompiledProgram(handles[root], TypeInference.typeOf(component), variables, parametric);
+    }
+
+    private static MethodHandle constant(long value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(long.class, value), 0, long[].class);
+    }
+
+    private static MethodHandle binary(NodeArena.Op op, int width, MethodHandle left, MethodHandle right) {
+        MethodHandle operator = MethodHandles.insertArguments(APPLY, 0, op);
+        operator = MethodHandles.insertArguments(operator, 2, width);
+        MethodHandle combined = MethodHandles.filterArguments(operator, 0, left, right);
+        return MethodHandles.permuteArguments(combined, FRAGMENT_TYPE, 0, 0);
+    }
+
+}
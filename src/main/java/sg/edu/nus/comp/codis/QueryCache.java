@@ -0,0 +1,67 @@
+package sg.edu.nus.comp.codis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU map from query fingerprints to results
+ */
+class QueryCache<V> {
+
+    private final LinkedHashMap<String, V> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    QueryCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("cache capacity must be positive");
+        }
+        this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Entries that are not usable for the current query (e.g. a verdict without a model) are counted as misses
+     */
+    synchronized Optional<V> lookup(String fingerprint, Predicate<V> usable) {
+        V value = entries.get(fingerprint);
+        if (value == null || !usable.test(value)) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(value);
+    }
+
+    synchronized void store(String fingerprint, V value) {
+        entries.put(fingerprint, value);
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
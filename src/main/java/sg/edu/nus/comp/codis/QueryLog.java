@@ -0,0 +1,157 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Traverse;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only log of solver queries in SMT-LIB2. Each query is a self-contained push/pop block
+ * preceded by a header comment with its kind, verdict and solving time:
+ *
+ * ; query isSatisfiable unsat 1532
+ * (push 1)
+ * (declare-fun v1 () Int)
+ * (assert (< v1 0))
+ * (check-sat)
+ * (pop 1)
+ */
+public class QueryLog implements Closeable {
+
+    private static final String HEADER = "; query ";
+
+    private final BufferedWriter writer;
+
+    public QueryLog(Path path) throws IOException {
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    public void write(QueryRecord.Kind kind, String verdict, long micros, List<Node> clauses, List<Node> assumptions) {
+        String record = format(kind, verdict, micros, clauses, assumptions);
+        synchronized (writer) {
+            try {
+                writer.write(record);
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    static String format(QueryRecord.Kind kind, String verdict, long micros, List<Node> clauses, List<Node> assumptions) {
+        VariableMarshaller marshaller = new VariableMarshaller();
+        StringBuilder builder = new StringBuilder();
+        builder.append(HEADER).append(kind).append(' ').append(verdict).append(' ').append(micros).append('\n');
+        builder.append("(push 1)\n");
+        Set<Variable> declared = new HashSet<>();
+        List<Node> all = new ArrayList<>(clauses);
+        all.addAll(assumptions);
+        for (Node node : all) {
+            for (Variable variable : Traverse.collectByType(node, Variable.class)) {
+                if (declared.add(variable)) {
+                    builder.append(SMTLIBPrinter.declaration(variable, marshaller)).append('\n');
+                }
+            }
+        }
+        boolean interpolation = kind == QueryRecord.Kind.GET_MODEL_OR_INTERPOLANT;
+        for (Node clause : clauses) {
+            String term = SMTLIBPrinter.term(clause, marshaller);
+            if (interpolation) {
+                builder.append("(assert (! ").append(term).append(" :interpolation-group A))\n");
+            } else {
+                builder.append("(assert ").append(term).append(")\n");
+            }
+        }
+        if (interpolation) {
+            for (Node clause : assumptions) {
+                builder.append("(assert (! ").append(SMTLIBPrinter.term(clause, marshaller)).append(" :interpolation-group B))\n");
+            }
+            builder.append("(check-sat)\n");
+        } else if (kind == QueryRecord.Kind.GET_MODEL_OR_CORE) {
+            StringBuilder names = new StringBuilder();
+            for (int i = 0; i < assumptions.size(); i++) {
+                String name = "a" + (i + 1);
+                builder.append("(define-fun ").append(name).append(" () Bool ")
+                        .append(SMTLIBPrinter.term(assumptions.get(i), marshaller)).append(")\n");
+                names.append(i == 0 ? "" : " ").append(name);
+            }
+            builder.append("(check-sat-assuming (").append(names).append("))\n");
+        } else {
+            builder.append("(check-sat)\n");
+        }
+        builder.append("(pop 1)\n");
+        return builder.toString();
+    }
+
+    public static List<QueryRecord> read(Path path) throws IOException {
+        List<QueryRecord> records = new ArrayList<>();
+        String header = null;
+        StringBuilder body = new StringBuilder();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.startsWith(HEADER)) {
+                if (header != null) {
+                    records.add(parse(header, body.toString()));
+                }
+                header = line.substring(HEADER.length());
+                body = new StringBuilder();
+            } else {
+                body.append(line).append('\n');
+            }
+        }
+        if (header != null) {
+            records.add(parse(header, body.toString()));
+        }
+        return records;
+    }
+
+    private static QueryRecord parse(String header, String body) {
+        String[] fields = header.trim().split(" ");
+        QueryRecord.Kind kind = QueryRecord.Kind.of(fields[0]);
+        String verdict = fields[1];
+        long micros = Long.parseLong(fields[2]);
+        SMTLIBParser parser = new SMTLIBParser();
+        List<Node> clauses = new ArrayList<>();
+        List<Node> assumptions = new ArrayList<>();
+        for (Object command : SMTLIBParser.read(body)) {
+            List<?> list = (List<?>) command;
+            Object name = list.get(0);
+            if (name.equals("declare-fun")) {
+                parser.declare((String) list.get(1), list.get(3));
+            } else if (name.equals("define-fun")) {
+                Node assumption = parser.term(list.get(4));
+                parser.define((String) list.get(1), assumption);
+                assumptions.add(assumption);
+            } else if (name.equals("assert")) {
+                Object term = list.get(1);
+                if (term instanceof List && ((List) term).get(0).equals("!")) {
+                    List<?> annotated = (List<?>) term;
+                    if (annotated.get(3).equals("B")) {
+                        assumptions.add(parser.term(annotated.get(1)));
+                    } else {
+                        clauses.add(parser.term(annotated.get(1)));
+                    }
+                } else {
+                    clauses.add(parser.term(term));
+                }
+            }
+        }
+        return new QueryRecord(kind, verdict, micros, clauses, assumptions);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Node;
+
+import java.util.List;
+
+/**
+ * Solver query read from a QueryLog
+ */
+public class QueryRecord {
+
+    public enum Kind {
+        IS_SATISFIABLE("isSatisfiable"),
+        GET_MODEL("getModel"),
+        GET_MODEL_OR_CORE("getModelOrCore"),
+        GET_MODEL_OR_INTERPOLANT("getModelOrInterpolant");
+
+        private final String name;
+
+        Kind(String name) {
+            this.name = name;
+        }
+
+        public static Kind of(String name) {
+            for (Kind kind : values()) {
+                if (kind.name.equals(name)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("unknown query kind " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final Kind kind;
+    private final String verdict;
+    private final long micros;
+    private final List<Node> clauses;
+    private final List<Node> assumptions;
+
+    /**
+     * @param clauses clauses, or left clauses for interpolation
+     * @param assumptions assumptions, or right clauses for interpolation
+     */
+    public QueryRecord(Kind kind, String verdict, long micros, List<Node> clauses, List<Node> assumptions) {
+        this.kind = kind;
+        this.verdict = verdict;
+        this.micros = micros;
+        this.clauses = clauses;
+        this.assumptions = assumptions;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return sat, unsat or error
+     */
+    public String getVerdict() {
+        return verdict;
+    }
+
+    public long getMicros() {
+        return micros;
+    }
+
+    public List<Node> getClauses() {
+        return clauses;
+    }
+
+    public List<Node> getAssumptions() {
+        return assumptions;
+    }
+}
@@ -0,0 +1,43 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * InterpolatingSolver decorator that writes every query with its verdict and solving time to a QueryLog
+ */
+public class RecordingInterpolatingSolver implements InterpolatingSolver {
+
+    private InterpolatingSolver solver;
+    private QueryLog log;
+
+    public RecordingInterpolatingSolver(InterpolatingSolver solver, QueryLog log) {
+        this.solver = solver;
+        this.log = log;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        String verdict = "error";
+        long start = System.nanoTime();
+        try {
+            Either<Map<Variable, Constant>, Node> result = solver.getModelOrInterpolant(leftClauses, rightClauses);
+            verdict = result.isLeft() ? "sat" : "unsat";
+            return result;
+        } finally {
+            log.write(QueryRecord.Kind.GET_MODEL_OR_INTERPOLANT, verdict, (System.nanoTime() - start) / 1000,
+                    leftClauses, rightClauses);
+        }
+    }
+
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        return solver.withBudget(budget, action);
+    }
+}
@@ -0,0 +1,70 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Solver decorator that writes every query with its verdict and solving time to a QueryLog
+ */
+public class RecordingSolver implements Solver {
+
+    private Solver solver;
+    private QueryLog log;
+
+    public RecordingSolver(Solver solver, QueryLog log) {
+        this.solver = solver;
+        this.log = log;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        String verdict = "error";
+        long start = System.nanoTime();
+        try {
+            Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(clauses, assumptions);
+            verdict = result.isLeft() ? "sat" : "unsat";
+            return result;
+        } finally {
+            log.write(QueryRecord.Kind.GET_MODEL_OR_CORE, verdict, (System.nanoTime() - start) / 1000, clauses, assumptions);
+        }
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        String verdict = "error";
+        long start = System.nanoTime();
+        try {
+            Optional<Map<Variable, Constant>> result = solver.getModel(clauses);
+            verdict = result.isPresent() ? "sat" : "unsat";
+            return result;
+        } finally {
+            log.write(QueryRecord.Kind.GET_MODEL, verdict, (System.nanoTime() - start) / 1000, clauses, new ArrayList<>());
+        }
+    }
+
+    @Override
+    public boolean isSatisfiable(List<Node> clauses) {
+        String verdict = "error";
+        long start = System.nanoTime();
+        try {
+            boolean result = solver.isSatisfiable(clauses);
+            verdict = result ? "sat" : "unsat";
+            return result;
+        } finally {
+            log.write(QueryRecord.Kind.IS_SATISFIABLE, verdict, (System.nanoTime() - start) / 1000, clauses, new ArrayList<>());
+        }
+    }
+
+    @Override
+    public <T> T withBudget(Budget budget, Supplier<T> action) {
+        return solver.withBudget(budget, action);
+    }
+}
@@ -0,0 +1,579 @@
+package sg.edu.nus.comp.codis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conflict-driven clause learning SAT solver with two watched literals, VSIDS, first-UIP learning,
+ * Luby restarts and solving under assumptions.
+ *
+ * Literals are non-zero integers as in DIMACS: variable v is the literal v, its negation is -v.
+ */
+public class SATSolver {
+
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final byte UNDEF = 0;
+
+    private static final int RESTART_BASE = 100;
+    private static final double VARIABLE_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+
+    private static class Clause {
+        private final int[] lits; // internal literals, lits[0] is implied when the clause is a reason
+        private final boolean learnt;
+        private double activity = 0;
+        private boolean deleted = false;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    // internal literal of variable v is 2v, of its negation 2v+1
+    private int variables = 0;
+    private byte[] values = new byte[2]; // by literal
+    private int[] levels = new int[1];
+    private Clause[] reasons = new Clause[1];
+    private boolean[] polarity = new boolean[1];
+    private boolean[] seen = new boolean[1];
+    private double[] activity = new double[1];
+    private List<List<Clause>> watches = new ArrayList<>();
+
+    private int[] trail = new int[1];
+    private int trailSize = 0;
+    private int propagated = 0;
+    private int[] trailLimits = new int[1];
+    private int decisionLevel = 0;
+
+    private List<Clause> clauses = new ArrayList<>();
+    private List<Clause> learnts = new ArrayList<>();
+
+    private double variableIncrement = 1;
+    private double clauseIncrement = 1;
+    private double maximumLearnts = 0;
+
+    private int[] heap = new int[1];
+    private int heapSize = 0;
+    private int[] heapIndex = new int[1];
+
+    private boolean ok = true;
+    private byte[] model = new byte[0];
+    private int[] failedAssumptions = new int[0];
+
+    private long conflicts = 0;
+    private long decisions = 0;
+    private long propagations = 0;
+
+    public SATSolver() {
+        watches.add(new ArrayList<>());
+        watches.add(new ArrayList<>());
+    }
+
+    public int newVariable() {
+        variables++;
+        int v = variables;
+        if (v >= levels.length) {
+            int capacity = Math.max(2 * levels.length, v + 1);
+            values = Arrays.copyOf(values, 2 * capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            reasons = Arrays.copyOf(reasons, capacity);
+            polarity = Arrays.copyOf(polarity, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            activity = Arrays.copyOf(activity, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            trailLimits = Arrays.copyOf(trailLimits, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapIndex = Arrays.copyOf(heapIndex, capacity);
+        }
+        watches.add(new ArrayList<>());
+        watches.add(new ArrayList<>());
+        polarity[v] = true; // prefer false
+        heapIndex[v] = -1;
+        heapInsert(v);
+        return v;
+    }
+
+    public int getVariables() {
+        return variables;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    /**
+     * @return false if the clause set is trivially unsatisfiable
+     */
+    public boolean addClause(int... literals) {
+        if (!ok) {
+            return false;
+        }
+        cancelUntil(0);
+        int[] lits = new int[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            lits[i] = internal(literals[i]);
+        }
+        Arrays.sort(lits);
+        int size = 0;
+        int previous = -1;
+        for (int lit : lits) {
+            if (values[lit] == TRUE || lit == (previous ^ 1)) {
+                return true; // satisfied or tautology
+            }
+            if (values[lit] != FALSE && lit != previous) {
+                lits[size++] = lit;
+                previous = lit;
+            }
+        }
+        lits = Arrays.copyOf(lits, size);
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            enqueue(lits[0], null);
+            ok = propagate() == null;
+        } else {
+            Clause clause = new Clause(lits, false);
+            clauses.add(clause);
+            attach(clause);
+        }
+        return ok;
+    }
+
+    public boolean solve(int... assumptions) {
+        failedAssumptions = new int[0];
+        if (!ok) {
+            return false;
+        }
+        int[] internalAssumptions = new int[assumptions.length];
+        for (int i = 0; i < assumptions.length; i++) {
+            internalAssumptions[i] = internal(assumptions[i]);
+        }
+        maximumLearnts = Math.max(clauses.size() / 3.0, 1000);
+        byte status = UNDEF;
+        for (int restarts = 0; status == UNDEF; restarts++) {
+            status = search((long) (luby(restarts) * RESTART_BASE), internalAssumptions);
+        }
+        if (status == TRUE) {
+            model = Arrays.copyOf(values, 2 * (variables + 1));
+        }
+        cancelUntil(0);
+        return status == TRUE;
+    }
+
+    /**
+     * Value of the literal in the model found by the last successful solve
+     */
+    public boolean modelValue(int literal) {
+        return model[internal(literal)] == TRUE;
+    }
+
+    /**
+     * Subset of assumptions of the last unsuccessful solve that is sufficient for unsatisfiability
+     */
+    public int[] getFailedAssumptions() {
+        return failedAssumptions;
+    }
+
+    private static int internal(int literal) {
+        if (literal == 0) {
+            throw new IllegalArgumentException("zero literal");
+        }
+        return literal > 0 ? 2 * literal : 2 * (-literal) + 1;
+    }
+
+    private static int external(int lit) {
+        return (lit & 1) == 0 ? lit >> 1 : -(lit >> 1);
+    }
+
+    private void attach(Clause clause) {
+        watches.get(clause.lits[0]).add(clause);
+        watches.get(clause.lits[1]).add(clause);
+    }
+
+    private void enqueue(int lit, Clause reason) {
+        int v = lit >> 1;
+        values[lit] = TRUE;
+        values[lit ^ 1] = FALSE;
+        levels[v] = decisionLevel;
+        reasons[v] = reason;
+        trail[trailSize++] = lit;
+    }
+
+    private Clause propagate() {
+        Clause conflict = null;
+        while (propagated < trailSize) {
+            int lit = trail[propagated++];
+            int falseLit = lit ^ 1;
+            propagations++;
+            List<Clause> watchList = watches.get(falseLit);
+            int i = 0;
+            int j = 0;
+            int size = watchList.size();
+            while (i < size) {
+                Clause clause = watchList.get(i++);
+                if (clause.deleted) {
+                    continue;
+                }
+                int[] lits = clause.lits;
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (values[lits[0]] == TRUE) {
+                    watchList.set(j++, clause);
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (values[lits[k]] != FALSE) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watches.get(lits[1]).add(clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                watchList.set(j++, clause);
+                if (values[lits[0]] == FALSE) {
+                    conflict = clause;
+                    propagated = trailSize;
+                    while (i < size) {
+                        watchList.set(j++, watchList.get(i++));
+                    }
+                } else {
+                    enqueue(lits[0], clause);
+                }
+            }
+            while (watchList.size() > j) {
+                watchList.remove(watchList.size() - 1);
+            }
+            if (conflict != null) {
+                break;
+            }
+        }
+        return conflict;
+    }
+
+    /**
+     * Assumptions that are already true also open a level, so there can be more levels than variables
+     */
+    private void newDecisionLevel() {
+        if (decisionLevel == trailLimits.length) {
+            trailLimits = Arrays.copyOf(trailLimits, 2 * decisionLevel + 1);
+        }
+        trailLimits[decisionLevel++] = trailSize;
+    }
+
+    private void cancelUntil(int level) {
+        if (decisionLevel <= level) {
+            return;
+        }
+        for (int i = trailSize - 1; i >= trailLimits[level]; i--) {
+            int lit = trail[i];
+            int v = lit >> 1;
+            values[lit] = UNDEF;
+            values[lit ^ 1] = UNDEF;
+            reasons[v] = null;
+            polarity[v] = (lit & 1) == 1;
+            if (heapIndex[v] < 0) {
+                heapInsert(v);
+            }
+        }
+        trailSize = trailLimits[level];
+        propagated = trailSize;
+        decisionLevel = level;
+    }
+
+    /**
+     * @return TRUE if satisfiable, FALSE if unsatisfiable under assumptions, UNDEF on restart
+     */
+    private byte search(long conflictLimit, int[] assumptions) {
+        long conflictsBefore = conflicts;
+        List<Integer> learnt = new ArrayList<>();
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return FALSE;
+                }
+                learnt.clear();
+                int backtrackLevel = analyze(conflict, learnt);
+                cancelUntil(backtrackLevel);
+                if (learnt.size() == 1) {
+                    enqueue(learnt.get(0), null);
+                } else {
+                    int[] lits = new int[learnt.size()];
+                    for (int i = 0; i < lits.length; i++) {
+                        lits[i] = learnt.get(i);
+                    }
+                    Clause clause = new Clause(lits, true);
+                    learnts.add(clause);
+                    attach(clause);
+                    bumpClause(clause);
+                    enqueue(lits[0], clause);
+                }
+                variableIncrement /= VARIABLE_DECAY;
+                clauseIncrement /= CLAUSE_DECAY;
+            } else {
+                if (conflicts - conflictsBefore >= conflictLimit) {
+                    cancelUntil(0);
+                    return UNDEF;
+                }
+                if (learnts.size() - trailSize >= maximumLearnts) {
+                    reduceLearnts();
+                    maximumLearnts *= 1.1;
+                }
+                int next = -1;
+                while (decisionLevel < assumptions.length) {
+                    int assumption = assumptions[decisionLevel];
+                    if (values[assumption] == TRUE) {
+                        newDecisionLevel();
+                    } else if (values[assumption] == FALSE) {
+                        analyzeFinal(assumption);
+                        return FALSE;
+                    } else {
+                        next = assumption;
+                        break;
+                    }
+                }
+                if (next == -1) {
+                    next = pickBranchLiteral();
+                    if (next == -1) {
+                        return TRUE;
+                    }
+                    decisions++;
+                }
+                newDecisionLevel();
+                enqueue(next, null);
+            }
+        }
+    }
+
+    /**
+     * First-UIP conflict analysis
+     * @return backtrack level, the asserting literal is the first in learnt
+     */
+    private int analyze(Clause conflict, List<Integer> learnt) {
+        int pathCount = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        learnt.add(-1);
+        Clause clause = conflict;
+        do {
+            if (clause.learnt) {
+                bumpClause(clause);
+            }
+            for (int k = (lit == -1) ? 0 : 1; k < clause.lits.length; k++) {
+                int q = clause.lits[k];
+                int v = q >> 1;
+                if (!seen[v] && levels[v] > 0) {
+                    seen[v] = true;
+                    bumpVariable(v);
+                    if (levels[v] >= decisionLevel) {
+                        pathCount++;
+                    } else {
+                        learnt.add(q);
+                    }
+                }
+            }
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            lit = trail[index];
+            index--;
+            clause = reasons[lit >> 1];
+            seen[lit >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt.set(0, lit ^ 1);
+
+        int backtrackLevel = 0;
+        int maximumIndex = 1;
+        for (int k = 1; k < learnt.size(); k++) {
+            int level = levels[learnt.get(k) >> 1];
+            if (level > backtrackLevel) {
+                backtrackLevel = level;
+                maximumIndex = k;
+            }
+        }
+        if (learnt.size() > 1) {
+            int tmp = learnt.get(1);
+            learnt.set(1, learnt.get(maximumIndex));
+            learnt.set(maximumIndex, tmp);
+        }
+        for (int k = 1; k < learnt.size(); k++) {
+            seen[learnt.get(k) >> 1] = false;
+        }
+        return backtrackLevel;
+    }
+
+    /**
+     * Computes the assumptions implying the negation of the given falsified assumption
+     */
+    private void analyzeFinal(int assumption) {
+        List<Integer> failed = new ArrayList<>();
+        failed.add(external(assumption));
+        int v0 = assumption >> 1;
+        if (levels[v0] > 0) {
+            seen[v0] = true;
+            for (int i = trailSize - 1; i >= trailLimits[0]; i--) {
+                int v = trail[i] >> 1;
+                if (seen[v]) {
+                    if (reasons[v] == null) {
+                        failed.add(external(trail[i]));
+                    } else {
+                        for (int k = 1; k < reasons[v].lits.length; k++) {
+                            int u = reasons[v].lits[k] >> 1;
+                            if (levels[u] > 0) {
+                                seen[u] = true;
+                            }
+                        }
+                    }
+                    seen[v] = false;
+                }
+            }
+            seen[v0] = false;
+        }
+        failedAssumptions = new int[failed.size()];
+        for (int i = 0; i < failedAssumptions.length; i++) {
+            failedAssumptions[i] = failed.get(i);
+        }
+    }
+
+    private int pickBranchLiteral() {
+        while (heapSize > 0) {
+            int v = heapRemoveMax();
+            if (values[2 * v] == UNDEF) {
+                return polarity[v] ? 2 * v + 1 : 2 * v;
+            }
+        }
+        return -1;
+    }
+
+    private void reduceLearnts() {
+        learnts.sort((a, b) -> Double.compare(a.activity, b.activity));
+        int half = learnts.size() / 2;
+        List<Clause> kept = new ArrayList<>();
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            if (i < half && clause.lits.length > 2 && !isLocked(clause)) {
+                clause.deleted = true;
+            } else {
+                kept.add(clause);
+            }
+        }
+        learnts = kept;
+    }
+
+    private boolean isLocked(Clause clause) {
+        int lit = clause.lits[0];
+        return values[lit] == TRUE && reasons[lit >> 1] == clause;
+    }
+
+    private void bumpVariable(int v) {
+        activity[v] += variableIncrement;
+        if (activity[v] > 1e100) {
+            for (int u = 1; u <= variables; u++) {
+                activity[u] *= 1e-100;
+            }
+            variableIncrement *= 1e-100;
+        }
+        if (heapIndex[v] >= 0) {
+            heapUp(heapIndex[v]);
+        }
+    }
+
+    private void bumpClause(Clause clause) {
+        clause.activity += clauseIncrement;
+        if (clause.activity > 1e20) {
+            for (Clause learnt : learnts) {
+                learnt.activity *= 1e-20;
+            }
+            clauseIncrement *= 1e-20;
+        }
+    }
+
+    private static double luby(int i) {
+        int size = 1;
+        int sequence = 0;
+        while (size < i + 1) {
+            sequence++;
+            size = 2 * size + 1;
+        }
+        int x = i;
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            sequence--;
+            x = x % size;
+        }
+        return Math.pow(2, sequence);
+    }
+
+    private void heapInsert(int v) {
+        heapIndex[v] = heapSize;
+        heap[heapSize++] = v;
+        heapUp(heapIndex[v]);
+    }
+
+    private int heapRemoveMax() {
+        int v = heap[0];
+        heapSize--;
+        heapIndex[v] = -1;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return v;
+    }
+
+    private void heapUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void heapDown(int i) {
+        int v = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+}
@@ -0,0 +1,207 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Parser for the subset of SMT-LIB2 produced by SMTLIBPrinter, including let-bound subterms
+ */
+public class SMTLIBParser {
+
+    private static final Map<String, BiFunction<Node, Node, Node>> binary = new HashMap<>();
+    private static final Map<String, Function<Node, Node>> unary = new HashMap<>();
+
+    static {
+        binary.put("+", Add::new);
+        binary.put("-", Sub::new);
+        binary.put("*", Mult::new);
+        binary.put("div", Div::new);
+        binary.put("<", Less::new);
+        binary.put("<=", LessOrEqual::new);
+        binary.put(">", Greater::new);
+        binary.put(">=", GreaterOrEqual::new);
+        binary.put("=", Equal::new);
+        binary.put("and", And::new);
+        binary.put("or", Or::new);
+        binary.put("=>", Impl::new);
+        binary.put("bvadd", BVAdd::new);
+        binary.put("bvsub", BVSub::new);
+        binary.put("bvmul", BVMult::new);
+        binary.put("bvudiv", BVUnsignedDiv::new);
+        binary.put("bvsdiv", BVSignedDiv::new);
+        binary.put("bvurem", BVUnsignedRemainder::new);
+        binary.put("bvsrem", BVSignedRemainder::new);
+        binary.put("bvsmod", BVSignedModulo::new);
+        binary.put("bvshl", BVShiftLeft::new);
+        binary.put("bvlshr", BVUnsignedShiftRight::new);
+        binary.put("bvashr", BVSignedShiftRight::new);
+        binary.put("bvand", BVAnd::new);
+        binary.put("bvor", BVOr::new);
+        binary.put("bvxor", BVXor::new);
+        binary.put("bvnand", BVNand::new);
+        binary.put("bvnor", BVNor::new);
+        binary.put("bvxnor", BVXnor::new);
+        binary.put("bvult", BVUnsignedLess::new);
+        binary.put("bvule", BVUnsignedLessOrEqual::new);
+        binary.put("bvugt", BVUnsignedGreater::new);
+        binary.put("bvuge", BVUnsignedGreaterOrEqual::new);
+        binary.put("bvslt", BVSignedLess::new);
+        binary.put("bvsle", BVSignedLessOrEqual::new);
+        binary.put("bvsgt", BVSignedGreater::new);
+        binary.put("bvsge", BVSignedGreaterOrEqual::new);
+        unary.put("-", Minus::new);
+        unary.put("not", Not::new);
+        unary.put("bvnot", BVNot::new);
+        unary.put("bvneg", BVNeg::new);
+    }
+
+    private final Map<String, Variable> variables = new HashMap<>();
+    private final Map<String, Node> definitions = new HashMap<>();
+
+    /**
+     * @return list of top-level s-expressions, each either a String or a List
+     */
+    public static List<Object> read(String text) {
+        List<Object> result = new ArrayList<>();
+        Deque<List<Object>> stack = new ArrayDeque<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '(') {
+                stack.push(new ArrayList<>());
+                i++;
+            } else if (c == ')') {
+                if (stack.isEmpty()) {
+                    throw new IllegalArgumentException("unbalanced parentheses");
+                }
+                List<Object> list = stack.pop();
+                if (stack.isEmpty()) {
+                    result.add(list);
+                } else {
+                    stack.peek().add(list);
+                }
+                i++;
+            } else {
+                int start = i;
+                if (c == '|') {
+                    i = text.indexOf('|', i + 1) + 1;
+                    if (i == 0) {
+                        throw new IllegalArgumentException("unterminated symbol");
+                    }
+                } else {
+                    while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                            && text.charAt(i) != '(' && text.charAt(i) != ')') {
+                        i++;
+                    }
+                }
+                String atom = text.substring(start, i);
+                if (stack.isEmpty()) {
+                    result.add(atom);
+                } else {
+                    stack.peek().add(atom);
+                }
+            }
+        }
+        if (!stack.isEmpty()) {
+            throw new IllegalArgumentException("unbalanced parentheses");
+        }
+        return result;
+    }
+
+    public Variable declare(String name, Object sort) {
+        Variable variable;
+        if (sort.equals("Int")) {
+            variable = ProgramVariable.mkInt(name);
+        } else if (sort.equals("Bool")) {
+            variable = ProgramVariable.mkBool(name);
+        } else if (sort instanceof List && ((List) sort).size() == 3 && ((List) sort).get(1).equals("BitVec")) {
+            variable = ProgramVariable.mkBV(name, Integer.parseInt((String) ((List) sort).get(2)));
+        } else {
+            throw new IllegalArgumentException("unsupported sort " + sort);
+        }
+        variables.put(name, variable);
+        return variable;
+    }
+
+    public void define(String name, Node node) {
+        definitions.put(name, node);
+    }
+
+    public Node term(Object expression) {
+        if (expression instanceof String) {
+            String atom = (String) expression;
+            if (variables.containsKey(atom)) {
+                return variables.get(atom);
+            } else if (definitions.containsKey(atom)) {
+                return definitions.get(atom);
+            } else if (atom.equals("true")) {
+                return BoolConst.TRUE;
+            } else if (atom.equals("false")) {
+                return BoolConst.FALSE;
+            } else {
+                try {
+                    return IntConst.of(Integer.parseInt(atom));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("unknown symbol " + atom);
+                }
+            }
+        }
+        List<?> list = (List<?>) expression;
+        Object head = list.get(0);
+        if (head.equals("_") && list.size() == 3 && ((String) list.get(1)).startsWith("bv")) {
+            return new BVConst(new BigInteger(((String) list.get(1)).substring(2)), Integer.parseInt((String) list.get(2)));
+        }
+        if (head.equals("-") && list.size() == 2 && list.get(1) instanceof String
+                && Character.isDigit(((String) list.get(1)).charAt(0))) {
+            return IntConst.of(Math.toIntExact(-Long.parseLong((String) list.get(1))));
+        }
+        if (head.equals("let") && list.size() == 3) {
+            Map<String, Node> bound = new HashMap<>();
+            for (Object binding : (List<?>) list.get(1)) {
+                bound.put((String) ((List<?>) binding).get(0), term(((List<?>) binding).get(1)));
+            }
+            Map<String, Node> shadowed = new HashMap<>();
+            for (Map.Entry<String, Node> entry : bound.entrySet()) {
+                shadowed.put(entry.getKey(), definitions.put(entry.getKey(), entry.getValue()));
+            }
+            Node body = term(list.get(2));
+            for (Map.Entry<String, Node> entry : shadowed.entrySet()) {
+                if (entry.getValue() == null) {
+                    definitions.remove(entry.getKey());
+                } else {
+                    definitions.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return body;
+        }
+        if (head.equals("ite") && list.size() == 4) {
+            return new ITE(term(list.get(1)), term(list.get(2)), term(list.get(3)));
+        }
+        if (list.size() == 2 && unary.containsKey(head)) {
+            return unary.get(head).apply(term(list.get(1)));
+        }
+        if (list.size() == 3 && binary.containsKey(head)) {
+            return binary.get(head).apply(term(list.get(1)), term(list.get(2)));
+        }
+        if (head.equals("and") || head.equals("or")) {
+            List<Node> args = new ArrayList<>();
+            for (Object arg : list.subList(1, list.size())) {
+                args.add(term(arg));
+            }
+            return head.equals("and") ? new AndN(args) : new OrN(args);
+        }
+        throw new IllegalArgumentException("unsupported expression " + expression);
+    }
+
+}
@@ -0,0 +1,29 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+
+/**
+ * Prints formulas in SMT-LIB2 with variables named by VariableMarshaller, terms are printed by Printer
+ */
+public class SMTLIBPrinter {
+
+    public static String term(Node node, VariableMarshaller marshaller) {
+        return Printer.printSMTLIB(node, marshaller);
+    }
+
+    public static String sort(Type type) {
+        if (type instanceof IntType) {
+            return "Int";
+        } else if (type instanceof BoolType) {
+            return "Bool";
+        } else if (type instanceof BVType) {
+            return "(_ BitVec " + ((BVType) type).getSize() + ")";
+        }
+        throw new UnsupportedOperationException("unsupported type " + type);
+    }
+
+    public static String declaration(Variable variable, VariableMarshaller marshaller) {
+        return "(declare-fun " + marshaller.toString(variable) + " () " + sort(variable.getType()) + ")";
+    }
+
+}
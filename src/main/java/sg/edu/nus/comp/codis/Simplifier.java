@@ -1,13 +1,9 @@
 package sg.edu.nus.comp.codis;
 
-import sg.edu.nus.comp.codis.ast.BoolType;
-import sg.edu.nus.comp.codis.ast.Hole;
-import sg.edu.nus.comp.codis.ast.IntType;
-import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
-import java.util.ArrayList;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Function;
 
 /**
@@ -17,7 +13,68 @@ public class Simplifier {
 
     public static Node simplify(Node node) {
         Rewriter rewriter = new Rewriter();
-        return rewriter.applyRules(node, simplificationRules);
+        Node previous;
+        do {
+            previous = node;
+            node = Traverse.transform(rewriter.applyRules(node, simplificationRules), Simplifier::flatten);
+        } while (!node.equals(previous));
+        return node;
+    }
+
+    private static boolean isConjunction(Node node) {
+        return node instanceof And || node instanceof AndN;
+    }
+
+    private static boolean isDisjunction(Node node) {
+        return node instanceof Or || node instanceof OrN;
+    }
+
+    /**
+     * Merges nested conjunctions (disjunctions) into n-ary ones, removing neutral constants and duplicates.
+     * Children are already flattened, since transformation is bottom-up.
+     */
+    private static Node flatten(Node node) {
+        boolean conjunction = isConjunction(node);
+        if (!conjunction && !isDisjunction(node)) {
+            return node;
+        }
+        BoolConst neutral = conjunction ? BoolConst.TRUE : BoolConst.FALSE;
+        BoolConst absorbing = conjunction ? BoolConst.FALSE : BoolConst.TRUE;
+        Application application = (Application) node;
+        Set<Node> args = new LinkedHashSet<>();
+        boolean changed = false;
+        for (int i = 0; i < application.getArity(); i++) {
+            Node arg = application.getArg(i);
+            boolean nested = conjunction ? isConjunction(arg) : isDisjunction(arg);
+            if (nested) {
+                changed = true;
+            }
+            int mergedArity = nested ? ((Application) arg).getArity() : 1;
+            for (int j = 0; j < mergedArity; j++) {
+                Node m = nested ? ((Application) arg).getArg(j) : arg;
+                if (m.equals(absorbing)) {
+                    return absorbing;
+                }
+                if (m.equals(neutral) || !args.add(m)) {
+                    changed = true;
+                }
+            }
+        }
+        for (Node arg : args) {
+            if (args.contains(new Not(arg))) {
+                return absorbing;
+            }
+        }
+        if (args.isEmpty()) {
+            return neutral;
+        }
+        if (args.size() == 1) {
+            return args.iterator().next();
+        }
+        if (!changed) {
+            return node;
+        }
+        return conjunction ? new AndN(new ArrayList<>(args)) : new OrN(new ArrayList<>(args));
     }
 
     private static ArrayList<RewriteRule> simplificationRules;
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -17,4 +18,12 @@ public interface Solver {
     Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions);
     Optional<Map<Variable, Constant>> getModel(List<Node> clauses);
     boolean isSatisfiable(List<Node> clauses);
+
+    /**
+     * Runs the action with the budget checked by this solver, restoring the previous budget afterwards.
+     * Solvers that do not support budgets run the action unchanged.
+     */
+    default <T> T withBudget(Budget budget, Supplier<T> action) {
+        return action.get();
+    }
 }
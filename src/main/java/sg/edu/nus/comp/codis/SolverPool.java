@@ -0,0 +1,236 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of incremental MathSAT environments sharing one config.
+ * A thread holds at most one environment at a time: nested checkouts by the same thread return the same environment.
+ *
+ * Declarations live as long as an environment, so an environment returned with more symbols than the symbol capacity
+ * is disposed and recreated on its next use. Translation caches are bounded by the solvers themselves.
+ */
+public class SolverPool {
+
+    public static final int DEFAULT_SYMBOL_CAPACITY = 100000;
+
+    private Logger logger = LoggerFactory.getLogger(SolverPool.class);
+
+    private final long config;
+    private final int capacity;
+
+    private volatile int symbolCapacity = DEFAULT_SYMBOL_CAPACITY;
+
+    private final BlockingQueue<MathSAT> available;
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maximumWaitNanos = new AtomicLong();
+
+    private static class Lease {
+        private final MathSAT solver;
+        private int depth = 0;
+
+        Lease(MathSAT solver) {
+            this.solver = solver;
+        }
+    }
+
+    private final ThreadLocal<Lease> leases = new ThreadLocal<>();
+
+    public SolverPool(int capacity, boolean interpolating) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("pool capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.config = MathSAT.createConfig(interpolating);
+        this.available = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public MathSAT checkout() {
+        Lease lease = leases.get();
+        if (lease != null) {
+            lease.depth++;
+            return lease.solver;
+        }
+        MathSAT solver = available.poll();
+        if (solver == null) {
+            solver = create();
+        }
+        if (solver == null) {
+            long start = System.nanoTime();
+            try {
+                solver = available.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while waiting for solver", e);
+            }
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waited);
+            maximumWaitNanos.accumulateAndGet(waited, Math::max);
+            logger.debug("waited " + waited / 1000000 + "ms for solver");
+        }
+        checkouts.incrementAndGet();
+        lease = new Lease(solver);
+        lease.depth = 1;
+        leases.set(lease);
+        return solver;
+    }
+
+    public void release(MathSAT solver) {
+        Lease lease = leases.get();
+        if (lease == null || lease.solver != solver) {
+            throw new IllegalStateException("solver is not held by this thread");
+        }
+        lease.depth--;
+        if (lease.depth == 0) {
+            leases.remove();
+            if (solver.getSymbolTableSize() > symbolCapacity) {
+                solver.dispose();
+            }
+            available.add(solver);
+        }
+    }
+
+    public <T> T withSolver(Function<MathSAT, T> job) {
+        MathSAT solver = checkout();
+        try {
+            return job.apply(solver);
+        } finally {
+            release(solver);
+        }
+    }
+
+    private MathSAT create() {
+        while (true) {
+            int current = created.get();
+            if (current >= capacity) {
+                return null;
+            }
+            if (created.compareAndSet(current, current + 1)) {
+                return MathSAT.buildIncremental(config);
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setSymbolCapacity(int symbolCapacity) {
+        this.symbolCapacity = symbolCapacity;
+    }
+
+    public int getCreated() {
+        return created.get();
+    }
+
+    public long getCheckouts() {
+        return checkouts.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitNanos.get() / 1000000;
+    }
+
+    public long getMaximumWaitMillis() {
+        return maximumWaitNanos.get() / 1000000;
+    }
+
+    /**
+     * Solver facade that checks out an environment for each query.
+     * An environment stays with the thread from push() until the matching pop().
+     */
+    public IncrementalSolver asSolver() {
+        return new PooledSolver();
+    }
+
+    public InterpolatingSolver asInterpolatingSolver() {
+        return new PooledSolver();
+    }
+
+    private class PooledSolver implements IncrementalSolver, InterpolatingSolver {
+
+        private MathSAT held() {
+            Lease lease = leases.get();
+            if (lease == null) {
+                throw new IllegalStateException("no backtrack point pushed by this thread");
+            }
+            return lease.solver;
+        }
+
+        @Override
+        public void push() {
+            checkout().push();
+        }
+
+        @Override
+        public void pop() {
+            MathSAT solver = held();
+            try {
+                solver.pop();
+            } finally {
+                release(solver);
+            }
+        }
+
+        @Override
+        public void assertClauses(List<Node> clauses) {
+            held().assertClauses(clauses);
+        }
+
+        @Override
+        public boolean check() {
+            return held().check();
+        }
+
+        @Override
+        public Map<Variable, Constant> getModel() {
+            return held().getModel();
+        }
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            return withSolver(s -> s.getModelOrCore(clauses, assumptions));
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            return withSolver(s -> s.getModel(clauses));
+        }
+
+        @Override
+        public boolean isSatisfiable(List<Node> clauses) {
+            return withSolver(s -> s.isSatisfiable(clauses));
+        }
+
+        @Override
+        public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+            return withSolver(s -> s.getModelOrInterpolant(leftClauses, rightClauses));
+        }
+
+        /**
+         * The environment stays with the thread while the action runs, so its queries are checked against the budget
+         */
+        @Override
+        public <T> T withBudget(Budget budget, Supplier<T> action) {
+            return withSolver(s -> s.withBudget(budget, action));
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Re-runs queries recorded by RecordingSolver and RecordingInterpolatingSolver, and reports latency histograms.
+ *
+ * Usage: SolverReplay LOG [OPTION=VALUE...], where options are passed to the MathSAT configuration
+ */
+public class SolverReplay {
+
+    /**
+     * Histogram with power-of-two buckets of microseconds
+     */
+    public static class LatencyHistogram {
+        private final long[] buckets = new long[64];
+        private long count = 0;
+        private long total = 0;
+
+        public void add(long micros) {
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(micros, 0))]++;
+            count++;
+            total += micros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMicros() {
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("queries: ").append(count).append(", total: ").append(total / 1000).append("ms\n");
+            long max = 0;
+            for (long bucket : buckets) {
+                max = Math.max(max, bucket);
+            }
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] == 0) {
+                    continue;
+                }
+                long low = i == 0 ? 0 : 1L << (i - 1);
+                long high = 1L << i;
+                int bar = (int) (40 * buckets[i] / max);
+                builder.append(String.format("%10d - %-10d us %8d ", low, high, buckets[i]));
+                for (int j = 0; j < Math.max(bar, 1); j++) {
+                    builder.append('#');
+                }
+                builder.append('\n');
+            }
+            return builder.toString();
+        }
+    }
+
+    private Solver solver;
+    private InterpolatingSolver iSolver;
+
+    private LatencyHistogram recorded = new LatencyHistogram();
+    private LatencyHistogram replayed = new LatencyHistogram();
+    private int mismatches = 0;
+
+    public SolverReplay(Solver solver, InterpolatingSolver iSolver) {
+        this.solver = solver;
+        this.iSolver = iSolver;
+    }
+
+    public void replay(List<QueryRecord> records) {
+        for (QueryRecord record : records) {
+            long start = System.nanoTime();
+            String verdict;
+            try {
+                verdict = run(record);
+            } catch (RuntimeException e) {
+                verdict = "error";
+            }
+            replayed.add((System.nanoTime() - start) / 1000);
+            recorded.add(record.getMicros());
+            if (!verdict.equals(record.getVerdict())) {
+                mismatches++;
+            }
+        }
+    }
+
+    private String run(QueryRecord record) {
+        switch (record.getKind()) {
+            case IS_SATISFIABLE:
+                return solver.isSatisfiable(record.getClauses()) ? "sat" : "unsat";
+            case GET_MODEL:
+                Optional<Map<Variable, Constant>> model = solver.getModel(record.getClauses());
+                return model.isPresent() ? "sat" : "unsat";
+            case GET_MODEL_OR_CORE:
+                Either<Map<Variable, Constant>, List<Node>> core =
+                        solver.getModelOrCore(record.getClauses(), record.getAssumptions());
+                return core.isLeft() ? "sat" : "unsat";
+            case GET_MODEL_OR_INTERPOLANT:
+                Either<Map<Variable, Constant>, Node> interpolant =
+                        iSolver.getModelOrInterpolant(record.getClauses(), record.getAssumptions());
+                return interpolant.isLeft() ? "sat" : "unsat";
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    public LatencyHistogram getRecorded() {
+        return recorded;
+    }
+
+    public LatencyHistogram getReplayed() {
+        return replayed;
+    }
+
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: SolverReplay LOG [OPTION=VALUE...]");
+            System.exit(1);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            int index = args[i].indexOf('=');
+            if (index < 0) {
+                throw new IllegalArgumentException("expected OPTION=VALUE, got " + args[i]);
+            }
+            options.put(args[i].substring(0, index), args[i].substring(index + 1));
+        }
+        List<QueryRecord> records = QueryLog.read(Paths.get(args[0]));
+        SolverReplay replay = new SolverReplay(MathSAT.buildWithOptions(false, options),
+                                               MathSAT.buildWithOptions(true, options));
+        replay.replay(records);
+        System.out.println("Recorded:");
+        System.out.print(replay.getRecorded());
+        System.out.println("Replayed:");
+        System.out.print(replay.getReplayed());
+        System.out.println("Verdict mismatches: " + replay.getMismatches());
+    }
+
+}
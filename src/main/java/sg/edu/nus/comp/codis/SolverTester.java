@@ -3,8 +3,7 @@ package sg.edu.nus.comp.codis;
 import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.Equal;
 
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * This tester checks if test passes using SMT solver
@@ -23,4 +22,51 @@ public class SolverTester implements Tester {
         clauses.add(new Equal(program.getSemantics(parameterValuation), result));
         return solver.isSatisfiable(clauses);
     }
+
+    /**
+     * With an incremental solver, the program semantics is asserted once per output type
+     * and only the test constraints are pushed for each test
+     */
+    @Override
+    public List<TestCase> getFailing(Program program,
+                                     Map<Parameter, Constant> parameterValuation,
+                                     List<? extends TestCase> tests) {
+        if (!(solver instanceof IncrementalSolver)) {
+            return Tester.super.getFailing(program, parameterValuation, tests);
+        }
+        IncrementalSolver incrementalSolver = (IncrementalSolver) solver;
+        Node semantics = program.getSemantics(parameterValuation);
+        Map<Type, List<TestCase>> byType = new HashMap<>();
+        for (TestCase test : tests) {
+            byType.computeIfAbsent(test.getOutputType(), t -> new ArrayList<>()).add(test);
+        }
+        Set<TestCase> failingSet = new HashSet<>();
+        for (Map.Entry<Type, List<TestCase>> entry : byType.entrySet()) {
+            Variable result = new ProgramOutput(entry.getKey());
+            incrementalSolver.push();
+            try {
+                incrementalSolver.assertClauses(Collections.singletonList(new Equal(semantics, result)));
+                for (TestCase test : entry.getValue()) {
+                    incrementalSolver.push();
+                    try {
+                        incrementalSolver.assertClauses(test.getConstraints(result));
+                        if (!incrementalSolver.check()) {
+                            failingSet.add(test);
+                        }
+                    } finally {
+                        incrementalSolver.pop();
+                    }
+                }
+            } finally {
+                incrementalSolver.pop();
+            }
+        }
+        List<TestCase> failing = new ArrayList<>();
+        for (TestCase test : tests) {
+            if (failingSet.contains(test)) {
+                failing.add(test);
+            }
+        }
+        return failing;
+    }
 }
@@ -0,0 +1,107 @@
+package sg.edu.nus.comp.codis;
+
+import mathsat.api;
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Declarations of variables in a MathSAT environment. Each variable is declared once for the lifetime of the environment.
+ */
+class SymbolTable {
+
+    static class Symbol {
+        private final Variable variable;
+        private final Type type;
+        private final long decl;
+        private final long term;
+
+        private Symbol(Variable variable, Type type, long decl, long term) {
+            this.variable = variable;
+            this.type = type;
+            this.decl = decl;
+            this.term = term;
+        }
+
+        Variable getVariable() {
+            return variable;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        long getDecl() {
+            return decl;
+        }
+
+        long getTerm() {
+            return term;
+        }
+    }
+
+    private final long env;
+
+    private final Map<Variable, Symbol> symbols = new HashMap<>();
+    private final Map<String, Variable> names = new HashMap<>();
+    private final Map<Long, Symbol> terms = new HashMap<>();
+
+    SymbolTable(long env) {
+        this.env = env;
+    }
+
+    Symbol get(Variable variable) {
+        Symbol symbol = symbols.get(variable);
+        if (symbol == null) {
+            symbol = declare(variable);
+            symbols.put(variable, symbol);
+        }
+        return symbol;
+    }
+
+    private Symbol declare(Variable variable) {
+        Type type = TypeInference.typeOf(variable);
+        long msatType;
+        if (type.equals(IntType.TYPE)) {
+            msatType = api.msat_get_integer_type(env);
+        } else if (type.equals(BoolType.TYPE)) {
+            msatType = api.msat_get_bool_type(env);
+        } else if (type instanceof BVType) {
+            msatType = api.msat_get_bv_type(env, ((BVType) type).getSize());
+        } else {
+            throw new UnsupportedOperationException();
+        }
+        String name = "v" + (names.size() + 1);
+        long decl = api.msat_declare_function(env, name, msatType);
+        long term = api.msat_make_constant(env, decl);
+        if (api.MSAT_ERROR_TERM(term)) {
+            throw new RuntimeException("MathSAT ERROR: " + api.msat_last_error_message(env));
+        }
+        names.put(name, variable);
+        Symbol symbol = new Symbol(variable, type, decl, term);
+        terms.put(term, symbol);
+        return symbol;
+    }
+
+    Variable toVariable(String name) {
+        return names.get(name);
+    }
+
+    /**
+     * @return symbol whose constant is the term, or null for other terms
+     */
+    Symbol ofTerm(long term) {
+        return terms.get(term);
+    }
+
+    Set<Variable> getVariables() {
+        return symbols.keySet();
+    }
+
+    int size() {
+        return symbols.size();
+    }
+
+}
@@ -16,4 +16,17 @@ public interface Synthesis {
     Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite, Multiset<Node> components);
     List<Pair<Program, Map<Parameter, Constant>>> synthesizeAll(List<? extends TestCase> testSuite, Multiset<Node> components);
 
+    /**
+     * Synthesis that gives up when the budget is exhausted. Engines that do not check the budget
+     * themselves are only checked before they start.
+     */
+    default SynthesisResult synthesize(List<? extends TestCase> testSuite, Multiset<Node> components, Budget budget) {
+        try {
+            budget.check();
+            return SynthesisResult.of(synthesize(testSuite, components));
+        } catch (BudgetExhaustedException e) {
+            return SynthesisResult.timedOut(Optional.empty());
+        }
+    }
+
 }
@@ -0,0 +1,62 @@
+package sg.edu.nus.comp.codis;
+
+import org.apache.commons.lang3.tuple.Pair;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Parameter;
+import sg.edu.nus.comp.codis.ast.Program;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Outcome of synthesis with a Budget. If timed out, the program is the best partial program found so far, if any.
+ */
+public class SynthesisResult {
+
+    public enum Status { FOUND, NOT_FOUND, TIMED_OUT }
+
+    private final Status status;
+    private final Optional<Pair<Program, Map<Parameter, Constant>>> program;
+
+    private SynthesisResult(Status status, Optional<Pair<Program, Map<Parameter, Constant>>> program) {
+        this.status = status;
+        this.program = program;
+    }
+
+    public static SynthesisResult found(Pair<Program, Map<Parameter, Constant>> program) {
+        return new SynthesisResult(Status.FOUND, Optional.of(program));
+    }
+
+    public static SynthesisResult notFound() {
+        return new SynthesisResult(Status.NOT_FOUND, Optional.empty());
+    }
+
+    public static SynthesisResult timedOut(Optional<Pair<Program, Map<Parameter, Constant>>> partial) {
+        return new SynthesisResult(Status.TIMED_OUT, partial);
+    }
+
+    public static SynthesisResult of(Optional<Pair<Program, Map<Parameter, Constant>>> program) {
+        return program.isPresent() ? found(program.get()) : notFound();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+
+    public boolean isTimedOut() {
+        return status == Status.TIMED_OUT;
+    }
+
+    public Optional<Pair<Program, Map<Parameter, Constant>>> getProgram() {
+        return program;
+    }
+
+    @Override
+    public String toString() {
+        return status + (program.isPresent() ? " " + program.get().getLeft().getSemantics(program.get().getRight()) : "");
+    }
+}
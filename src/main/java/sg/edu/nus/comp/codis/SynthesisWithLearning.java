@@ -14,6 +14,8 @@ import java.util.Optional;
  */
 public abstract class SynthesisWithLearning implements Synthesis {
 
+    protected Budget budget = Budget.unlimited();
+
     /**
      * @return either program and parameter valuation or conflict
      */
@@ -21,6 +23,10 @@ public abstract class SynthesisWithLearning implements Synthesis {
                                                                                             Multiset<Node> components);
 
 
+    /**
+     * @throws BudgetExhaustedException if the budget set through the builder is exhausted,
+     * use the overload taking a Budget to get a timed-out result instead
+     */
     public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite,
                                                                         Multiset<Node> components) {
         Either<Pair<Program, Map<Parameter, Constant>>, Node> result = synthesizeOrLearn(testSuite, components);
@@ -31,4 +37,29 @@ public abstract class SynthesisWithLearning implements Synthesis {
         return Optional.of(result.left().value());
     }
 
+    /**
+     * The call stops when either the given budget or the one set through the builder is exhausted
+     */
+    @Override
+    public SynthesisResult synthesize(List<? extends TestCase> testSuite,
+                                      Multiset<Node> components,
+                                      Budget budget) {
+        Budget previous = this.budget;
+        this.budget = previous.child(budget);
+        try {
+            return SynthesisResult.of(synthesize(testSuite, components));
+        } catch (BudgetExhaustedException e) {
+            return SynthesisResult.timedOut(getPartialResult());
+        } finally {
+            this.budget = previous;
+        }
+    }
+
+    /**
+     * @return best program found by the last interrupted synthesis
+     */
+    protected Optional<Pair<Program, Map<Parameter, Constant>>> getPartialResult() {
+        return Optional.empty();
+    }
+
 }
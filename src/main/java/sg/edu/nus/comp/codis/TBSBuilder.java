@@ -53,11 +53,24 @@ public class TBSBuilder {
         return this;
     }
 
+    /**
+     * @see CODISBuilder#setBudget(Budget)
+     */
+    public TBSBuilder setBudget(Budget budget) {
+        this.instance.budget = budget;
+        return this;
+    }
+
     public TBSBuilder enableConciseInterpolants() {
         this.instance.conciseInterpolants = true;
         return this;
     }
 
+    public TBSBuilder setEncoder(ParallelEncoder encoder) {
+        this.instance.encoder = encoder;
+        return this;
+    }
+
     public TreeBoundedSynthesis build() {
         return this.instance;
     }
@@ -0,0 +1,128 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.util.*;
+
+/**
+ * Columnar view of a list of tests: the values of each input variable and the expected outputs are stored
+ * in primitive columns indexed by test (lane), represented as in Evaluator.
+ * Only assignment tests with ground values are columnar, other lanes are checked test by test.
+ */
+public class TestSuite {
+
+    private final List<TestCase> tests;
+
+    private final Map<TestCase, Integer> lanes = new IdentityHashMap<>();
+
+    private final Type outputType;
+
+    private final Map<Variable, long[]> columns = new HashMap<>();
+
+    // lanes in which the variable is assigned:
+    private final Map<Variable, BitSet> assigned = new HashMap<>();
+
+    private final long[] outputs;
+
+    private final BitSet columnar = new BitSet();
+
+    public TestSuite(List<? extends TestCase> tests) {
+        this.tests = Collections.unmodifiableList(new ArrayList<>(tests));
+        this.outputType = tests.isEmpty() ? null : tests.get(0).getOutputType();
+        this.outputs = new long[tests.size()];
+        for (int lane = 0; lane < tests.size(); lane++) {
+            TestCase test = tests.get(lane);
+            lanes.putIfAbsent(test, lane);
+            if (test instanceof AssignmentTestCase && test.getOutputType().equals(outputType)) {
+                addColumnar(lane, (AssignmentTestCase) test);
+            }
+        }
+    }
+
+    private void addColumnar(int lane, AssignmentTestCase test) {
+        Map<Variable, Long> values = new HashMap<>();
+        long output;
+        try {
+            for (Map.Entry<ProgramVariable, ? extends Node> entry : test.getAssignment().entrySet()) {
+                values.put(entry.getKey(), toLong(entry.getValue(), TypeInference.typeOf(entry.getKey())));
+            }
+            output = toLong(test.getOutputValue(), outputType);
+        } catch (UnsupportedOperationException | IllegalArgumentException | ArithmeticException e) {
+            return; // checked test by test
+        }
+        for (Map.Entry<Variable, Long> entry : values.entrySet()) {
+            columns.computeIfAbsent(entry.getKey(), v -> new long[tests.size()])[lane] = entry.getValue();
+            assigned.computeIfAbsent(entry.getKey(), v -> new BitSet(tests.size())).set(lane);
+        }
+        outputs[lane] = output;
+        columnar.set(lane);
+    }
+
+    private static long toLong(Node value, Type type) {
+        if (!(value instanceof Constant)) {
+            value = Evaluator.evaluate(value, Collections.emptyMap());
+        }
+        return Evaluator.leafValue(value, Evaluator.width(type), Collections.emptyMap());
+    }
+
+    public int size() {
+        return tests.size();
+    }
+
+    public TestCase get(int lane) {
+        return tests.get(lane);
+    }
+
+    public List<TestCase> getTests() {
+        return tests;
+    }
+
+    /**
+     * @return first lane of the test, or -1 if the test is not in the suite
+     */
+    public int indexOf(TestCase test) {
+        return lanes.getOrDefault(test, -1);
+    }
+
+    public Type getOutputType() {
+        return outputType;
+    }
+
+    /**
+     * @return values of the variable, or null if no columnar test assigns it
+     */
+    public long[] getColumn(Variable variable) {
+        return columns.get(variable);
+    }
+
+    public BitSet getAssigned(Variable variable) {
+        BitSet lanes = assigned.get(variable);
+        return lanes == null ? new BitSet() : (BitSet) lanes.clone();
+    }
+
+    public long[] getOutputs() {
+        return outputs;
+    }
+
+    public boolean isColumnar(int lane) {
+        return columnar.get(lane);
+    }
+
+    public BitSet all() {
+        BitSet lanes = new BitSet(tests.size());
+        lanes.set(0, tests.size());
+        return lanes;
+    }
+
+    /**
+     * @return tests of the lanes, in the order of the suite
+     */
+    public List<TestCase> select(BitSet lanes) {
+        List<TestCase> selected = new ArrayList<>(lanes.cardinality());
+        for (int lane = lanes.nextSetBit(0); lane >= 0; lane = lanes.nextSetBit(lane + 1)) {
+            selected.add(tests.get(lane));
+        }
+        return selected;
+    }
+
+}
@@ -2,6 +2,9 @@ package sg.edu.nus.comp.codis;
 
 import sg.edu.nus.comp.codis.ast.*;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -9,4 +12,32 @@ import java.util.Map;
  */
 interface Tester {
     boolean isPassing(Program program, Map<Parameter, Constant> parameterValuation, TestCase test);
+
+    default List<TestCase> getFailing(Program program,
+                                      Map<Parameter, Constant> parameterValuation,
+                                      List<? extends TestCase> tests) {
+        List<TestCase> failing = new ArrayList<>();
+        for (TestCase test : tests) {
+            if (!isPassing(program, parameterValuation, test)) {
+                failing.add(test);
+            }
+        }
+        return failing;
+    }
+
+    /**
+     * @return lanes of the suite among the given lanes whose tests pass
+     */
+    default BitSet getPassing(Program program,
+                              Map<Parameter, Constant> parameterValuation,
+                              TestSuite suite,
+                              BitSet lanes) {
+        BitSet passing = new BitSet(suite.size());
+        for (int lane = lanes.nextSetBit(0); lane >= 0; lane = lanes.nextSetBit(lane + 1)) {
+            if (isPassing(program, parameterValuation, suite.get(lane))) {
+                passing.set(lane);
+            }
+        }
+        return passing;
+    }
 }
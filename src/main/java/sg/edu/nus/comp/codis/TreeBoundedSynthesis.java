@@ -27,6 +27,7 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
     protected boolean matchLeaves = true;
     protected List<Program> forbidden = new ArrayList<>(); // NOTE: now forbidden isSatisfiable prefixes if they are larger than size
     protected Map<Type, ProgramOutput> outputs = new HashMap<>();
+    protected ParallelEncoder encoder = ParallelEncoder.sequential();
 
     public InterpolatingSolver solver;
 
@@ -100,19 +101,19 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
         if (!result.isPresent()) {
             throw new IllegalArgumentException("wrong synthesis input");
         }
-        List<Node> contextClauses = new ArrayList<>();
-        List<Node> synthesisClauses = new ArrayList<>();
-        for (TestCase test : testSuite) {
+        List<Node> synthesisClauses = encoder.encode(testSuite, test -> {
+            List<Node> block = new ArrayList<>();
             for (Node node : result.get().clauses) {
                 if (test instanceof CODISSynthesisContext) {
                     //this is a bad hack, because I want to pretend that conflicts are computed in the outer context
-                    synthesisClauses.add(node.instantiate(((CODISSynthesisContext) test).getOuterTest()));
+                    block.add(new InstantiatedClause(node, ((CODISSynthesisContext) test).getOuterTest()));
                 } else {
-                    synthesisClauses.add(node.instantiate(test));
+                    block.add(new InstantiatedClause(node, test));
                 }
             }
-            contextClauses.addAll(testToConstraint(test, root));
-        }
+            return block;
+        });
+        List<Node> contextClauses = encoder.encode(testSuite, test -> testToConstraint(test, root));
 
         for (Map.Entry<Variable, List<Selector>> entry : result.get().nodeChoices.entrySet()) {
             if (!entry.getValue().isEmpty()) {
@@ -141,6 +142,13 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
             }
         }
 
+        return solver.withBudget(budget, () -> solve(synthesisClauses, contextClauses, root, result.get()));
+    }
+
+    private Either<Pair<Program, Map<Parameter, Constant>>, Node> solve(List<Node> synthesisClauses,
+                                                                        List<Node> contextClauses,
+                                                                        ProgramOutput root,
+                                                                        EncodingResult encoding) {
         Either<Map<Variable, Constant>, Node> solverResult;
         if (!conciseInterpolants) {
             if (invertedLearning) {
@@ -167,7 +175,7 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
             }
         }
         if (solverResult.isLeft()) {
-            Pair<Program, Map<Parameter, Constant>> decoded = decode(solverResult.left().value(), root, result.get());
+            Pair<Program, Map<Parameter, Constant>> decoded = decode(solverResult.left().value(), root, encoding);
             return Either.left(decoded);
         } else {
             return Either.right(solverResult.right().value());
@@ -189,6 +197,8 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
     }
 
     private Optional<EncodingResult> encodeBranch(Variable output, int size, List<Node> components, Map<Program, Program> forbidden) {
+        budget.check();
+
         // Local results:
         List<Selector> currentChoices = new ArrayList<>();
         Map<Selector, Node> selectedComponent = new HashMap<>();
@@ -80,6 +80,26 @@ public class Unifier {
             failed = true;
         }
 
+        private void processNaryOp(Application node) {
+            if (nodeStack.isEmpty()) {
+                failed = true;
+                return;
+            }
+            Node right = nodeStack.pop();
+            if (right.getClass().equals(node.getClass()) &&
+                    ((Application)right).getArity() == node.getArity()) {
+                Application application = (Application) right;
+                for (int i=application.getArity()-1; i>=0; i--) {
+                    nodeStack.push(application.getArg(i));
+                }
+                return;
+            }
+            if (right instanceof Hole) {
+                throw new UnsupportedOperationException("Right holes are not supported");
+            }
+            failed = true;
+        }
+
 
         public UnifyVisitor(Node right) {
             this.nodeStack = new Stack<>();
@@ -118,10 +138,9 @@ public class Unifier {
             Node right = nodeStack.pop();
             if (right instanceof UIFApplication &&
                     ((UIFApplication)right).getUIF().equals(UIFApplication.getUIF())) {
-                ArrayList<Node> args = ((UIFApplication)right).getArgs();
-                Collections.reverse(args);
-                for (Node arg : args) {
-                    nodeStack.push(arg);
+                UIFApplication application = (UIFApplication) right;
+                for (int i=application.getArity()-1; i>=0; i--) {
+                    nodeStack.push(application.getArg(i));
                 }
                 return;
             }
@@ -173,6 +192,18 @@ public class Unifier {
             processBinaryOp(or);
         }
 
+        @Override
+        public void visit(AndN andN) {
+            if (failed) return;
+            processNaryOp(andN);
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            if (failed) return;
+            processNaryOp(orN);
+        }
+
         @Override
         public void visit(Iff iff) {
             if (failed) return;
@@ -251,6 +282,18 @@ public class Unifier {
             processLeaf(testInstance);
         }
 
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            if (failed) return;
+            processLeaf(instantiatedClause);
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            if (failed) return;
+            processLeaf(arenaNode);
+        }
+
         @Override
         public void visit(Parameter parameter) {
             if (failed) return;
@@ -1,5 +1,7 @@
 package sg.edu.nus.comp.codis.ast;
 
+import sg.edu.nus.comp.codis.Printer;
+
 import java.util.List;
 
 /**
@@ -7,4 +9,38 @@ import java.util.List;
  */
 public abstract class Application extends Node {
     public abstract List<Node> getArgs();
+
+    /**
+     * Unlike getArgs(), child access by index does not allocate
+     */
+    public int getArity() {
+        return getArgs().size();
+    }
+
+    public Node getArg(int index) {
+        return getArgs().get(index);
+    }
+
+    /**
+     * Structural equality, compared by Traversal with an explicit stack so that depth is not limited by the call stack
+     */
+    @Override
+    public final boolean equals(Object obj) {
+        return obj instanceof Application && Traversal.equal(this, (Application) obj);
+    }
+
+    /**
+     * Compares this node with another application of the same arity, ignoring the arguments
+     */
+    protected boolean equalsOperator(Application other) {
+        return getClass() == other.getClass();
+    }
+
+    /**
+     * Infix notation written by Printer, so deep terms do not build a string for each subterm
+     */
+    @Override
+    public String toString() {
+        return Printer.print(this);
+    }
 }
@@ -0,0 +1,68 @@
+package sg.edu.nus.comp.codis.ast;
+
+import sg.edu.nus.comp.codis.Printer;
+
+/**
+ * Node facade for an entry of NodeArena. Traversals do not descend into the arena,
+ * so visitors either consume the arena directly or materialize the entry.
+ */
+public class ArenaNode extends Node {
+
+    private NodeArena arena;
+
+    private int entry;
+
+    public ArenaNode(NodeArena arena, int entry) {
+        this.arena = arena;
+        this.entry = entry;
+    }
+
+    public NodeArena getArena() {
+        return arena;
+    }
+
+    public int getEntry() {
+        return entry;
+    }
+
+    public Node toNode() {
+        return arena.toNode(entry);
+    }
+
+    @Override
+    protected void dispatch(BottomUpVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected void dispatch(TopDownVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ArenaNode))
+            return false;
+        if (obj == this)
+            return true;
+
+        ArenaNode rhs = (ArenaNode) obj;
+        return arena == rhs.arena && entry == rhs.entry;
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return System.identityHashCode(arena) * 31 + entry;
+    }
+
+    @Override
+    public String toString() {
+        return Printer.print(this);
+    }
+
+}
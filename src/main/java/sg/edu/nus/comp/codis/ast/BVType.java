@@ -7,7 +7,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
  * Created by Sergey Mechtaev on 30/4/2016.
  */
 public class BVType implements Type {
-    private int size;
+    private final int size;
 
     public int getSize() {
         return size;
@@ -30,6 +30,10 @@ public interface BottomUpMemoVisitor {
 
     void visit(Or or);
 
+    void visit(AndN andN);
+
+    void visit(OrN orN);
+
     void visit(Iff iff);
 
     void visit(Impl impl);
@@ -56,6 +60,10 @@ public interface BottomUpMemoVisitor {
 
     void visit(TestInstance testInstance);
 
+    void visit(InstantiatedClause instantiatedClause);
+
+    void visit(ArenaNode arenaNode);
+
     void visit(Parameter parameter);
 
     void visit(Hole hole);
@@ -27,6 +27,10 @@ public interface BottomUpVisitor {
 
     void visit(Or or);
 
+    void visit(AndN andN);
+
+    void visit(OrN orN);
+
     void visit(Iff iff);
 
     void visit(Impl impl);
@@ -53,6 +57,10 @@ public interface BottomUpVisitor {
 
     void visit(TestInstance testInstance);
 
+    void visit(InstantiatedClause instantiatedClause);
+
+    void visit(ArenaNode arenaNode);
+
     void visit(Parameter parameter);
 
     void visit(Hole hole);
@@ -3,6 +3,8 @@ package sg.edu.nus.comp.codis.ast;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Created by Sergey Mechtaev on 2/5/2016.
  *
@@ -23,30 +25,25 @@ public class BranchOutput extends Variable {
 
     public BranchOutput(Type type) {
         this.type = type;
-        objectCounter = classCounter;
-        classCounter++;
+        objectCounter = classCounter.getAndIncrement();
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
-    private static int classCounter = 0;
+    private static final AtomicInteger classCounter = new AtomicInteger();
     private final int objectCounter;
 
     @Override
@@ -55,6 +52,8 @@ public class BranchOutput extends Variable {
             return false;
         if (obj == this)
             return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
 
         BranchOutput rhs = (BranchOutput) obj;
         return new EqualsBuilder().
@@ -63,7 +62,7 @@ public class BranchOutput extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(objectCounter).
                 toHashCode();
@@ -6,6 +6,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -18,8 +19,7 @@ public class Component {
 
     public Component(Node semantics) {
         this.semantics = semantics;
-        objectCounter = classCounter;
-        classCounter++;
+        objectCounter = classCounter.getAndIncrement();
     }
 
     public Node getSemantics() {
@@ -43,7 +43,7 @@ public class Component {
         return semantics.toString();
     }
 
-    private static int classCounter = 0;
+    private static final AtomicInteger classCounter = new AtomicInteger();
     private final int objectCounter;
 
     @Override
@@ -26,22 +26,18 @@ public class ComponentInput extends Variable {
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
     @Override
@@ -50,6 +46,8 @@ public class ComponentInput extends Variable {
             return false;
         if (obj == this)
             return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
 
         ComponentInput rhs = (ComponentInput) obj;
         return new EqualsBuilder().
@@ -59,7 +57,7 @@ public class ComponentInput extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(component).
                 append(hole).
@@ -19,22 +19,18 @@ public class ComponentOutput extends Variable {
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
     @Override
@@ -43,6 +39,8 @@ public class ComponentOutput extends Variable {
             return false;
         if (obj == this)
             return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
 
         ComponentOutput rhs = (ComponentOutput) obj;
         return new EqualsBuilder().
@@ -51,7 +49,7 @@ public class ComponentOutput extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(component).
                 toHashCode();
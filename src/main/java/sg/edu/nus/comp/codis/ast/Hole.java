@@ -41,6 +41,8 @@ public class Hole extends Variable {
             return false;
         if (obj == this)
             return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
 
         Hole rhs = (Hole) obj;
         return new EqualsBuilder().
@@ -51,7 +53,7 @@ public class Hole extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(name).
                 append(type).
@@ -64,22 +66,18 @@ public class Hole extends Variable {
         return name;
     }
 
-    public void accept(BottomUpVisitor visitor) {
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
 }
@@ -0,0 +1,92 @@
+package sg.edu.nus.comp.codis.ast;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import sg.edu.nus.comp.codis.TestCase;
+
+/**
+ * Lazy equivalent of template.instantiate(test): the template is shared between tests,
+ * and its variables are resolved to test instances by the consumer.
+ * Traversals do not descend into the template, so visitors handle it explicitly.
+ */
+public class InstantiatedClause extends Node {
+
+    private Node template;
+
+    private TestCase test;
+
+    public InstantiatedClause(Node template, TestCase test) {
+        this.template = template;
+        this.test = test;
+    }
+
+    public Node getTemplate() {
+        return template;
+    }
+
+    public TestCase getTest() {
+        return test;
+    }
+
+    /**
+     * @return variable of the template as it appears in the instance
+     */
+    public Variable resolve(Variable variable) {
+        if (variable.isTestInstantiable()) {
+            return new TestInstance(variable, test);
+        }
+        return variable;
+    }
+
+    /**
+     * Materializes the instance, the result is not retained
+     */
+    public Node getInstance() {
+        return template.instantiate(test);
+    }
+
+    @Override
+    protected void dispatch(BottomUpVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected void dispatch(TopDownVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof InstantiatedClause))
+            return false;
+        if (obj == this)
+            return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
+
+        InstantiatedClause rhs = (InstantiatedClause) obj;
+        return new EqualsBuilder().
+                append(template, rhs.template).
+                append(test, rhs.test).
+                isEquals();
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return new HashCodeBuilder(17, 31).
+                append(template).
+                append(test).
+                toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "T(" + template + ")[" + test + "]";
+    }
+
+}
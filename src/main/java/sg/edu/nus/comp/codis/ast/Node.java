@@ -1,9 +1,9 @@
 package sg.edu.nus.comp.codis.ast;
 
 import sg.edu.nus.comp.codis.TestCase;
-import sg.edu.nus.comp.codis.ast.theory.And;
+import sg.edu.nus.comp.codis.ast.theory.AndN;
 import sg.edu.nus.comp.codis.ast.theory.BoolConst;
-import sg.edu.nus.comp.codis.ast.theory.Or;
+import sg.edu.nus.comp.codis.ast.theory.OrN;
 
 import java.util.List;
 import java.util.function.Predicate;
@@ -12,9 +12,81 @@ import java.util.function.Predicate;
  * Created by Sergey Mechtaev on 7/4/2016.
  */
 public abstract class Node {
-    public abstract void accept(BottomUpVisitor visitor);
-    public abstract void accept(TopDownVisitor visitor);
-    public abstract void accept(BottomUpMemoVisitor visitor);
+
+    // set by NodeFactory, interned nodes are structurally equal only if they are the same object:
+    private Object internKey = null;
+
+    // hash code and type are computed once, nodes are immutable:
+    private int hash;
+    private boolean hashIsZero;
+    private Type type;
+
+    @Override
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0 && !hashIsZero) {
+            if (this instanceof Application) {
+                Traversal.computeHashCodes(this); // children first, to avoid deep recursion
+            } else {
+                cacheHashCode();
+            }
+            h = hash;
+        }
+        return h;
+    }
+
+    boolean hasHashCode() {
+        return hash != 0 || hashIsZero;
+    }
+
+    void cacheHashCode() {
+        if (hasHashCode()) {
+            return;
+        }
+        int h = computeHashCode();
+        if (h == 0) {
+            hashIsZero = true;
+        } else {
+            hash = h;
+        }
+    }
+
+    protected abstract int computeHashCode();
+
+    Type getCachedType() {
+        return type;
+    }
+
+    void setCachedType(Type type) {
+        this.type = type;
+    }
+
+    public boolean isInterned() {
+        return internKey != null;
+    }
+
+    void setInternKey(Object key) {
+        this.internKey = key;
+    }
+
+    public final void accept(BottomUpVisitor visitor) {
+        Traversal.bottomUp(this, visitor);
+    }
+
+    public final void accept(TopDownVisitor visitor) {
+        Traversal.topDown(this, visitor);
+    }
+
+    public final void accept(BottomUpMemoVisitor visitor) {
+        Traversal.bottomUpMemo(this, visitor);
+    }
+
+    /**
+     * Visit this node only, children are visited by the traversal engine
+     */
+    protected abstract void dispatch(BottomUpVisitor visitor);
+    protected abstract void dispatch(TopDownVisitor visitor);
+    protected abstract void dispatch(BottomUpMemoVisitor visitor);
 
     /**
      * Rename variables under condition
@@ -40,33 +112,41 @@ public abstract class Node {
         });
     }
 
-    private static boolean seen;
-
     public boolean contains(Node subnode) {
-        seen = false;
+        boolean[] seen = {false};
         Traverse.transform(this, n -> {
             if (n.equals(subnode)) {
-                seen = true;
+                seen[0] = true;
             }
             return n;
         });
-        return seen;
+        return seen[0];
     }
 
+    /**
+     * @return flat n-ary disjunction, FALSE for no clauses
+     */
     public static Node disjunction(List<? extends Node> clauses) {
-        Node node = BoolConst.FALSE;
-        for (Node clause : clauses) {
-            node = new Or(node, clause);
+        if (clauses.isEmpty()) {
+            return BoolConst.FALSE;
         }
-        return node;
+        if (clauses.size() == 1) {
+            return clauses.get(0);
+        }
+        return new OrN(clauses);
     }
 
+    /**
+     * @return flat n-ary conjunction, TRUE for no clauses
+     */
     public static Node conjunction(List<? extends Node> clauses) {
-        Node node = BoolConst.TRUE;
-        for (Node clause : clauses) {
-            node = new And(node, clause);
+        if (clauses.isEmpty()) {
+            return BoolConst.TRUE;
+        }
+        if (clauses.size() == 1) {
+            return clauses.get(0);
         }
-        return node;
+        return new AndN(clauses);
     }
 
 }
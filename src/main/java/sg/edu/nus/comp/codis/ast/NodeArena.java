@@ -0,0 +1,353 @@
+package sg.edu.nus.comp.codis.ast;
+
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Compact representation of large formulas: an entry is an operator and the indices of its children
+ * stored in primitive arrays, leaves are kept in a pool.
+ *
+ * Children are added before their parents, so a formula is translated by a single forward scan.
+ * ArenaNode is a Node facade for an entry, consumers that do not support arenas materialize it.
+ */
+public class NodeArena {
+
+    public enum Op {
+        LEAF,
+        EQUAL, ADD, SUB, MULT, DIV, AND, OR, AND_N, OR_N, IFF, IMPL,
+        GREATER, LESS, GREATER_OR_EQUAL, LESS_OR_EQUAL, MINUS, NOT, ITE,
+        BV_ADD, BV_AND, BV_MULT, BV_NEG, BV_NOT, BV_OR, BV_SHIFT_LEFT, BV_SIGNED_DIV,
+        BV_SIGNED_GREATER, BV_SIGNED_GREATER_OR_EQUAL, BV_SIGNED_LESS, BV_SIGNED_LESS_OR_EQUAL,
+        BV_SIGNED_MODULO, BV_SIGNED_REMAINDER, BV_SIGNED_SHIFT_RIGHT, BV_SUB, BV_UNSIGNED_DIV,
+        BV_UNSIGNED_GREATER, BV_UNSIGNED_GREATER_OR_EQUAL, BV_UNSIGNED_LESS, BV_UNSIGNED_LESS_OR_EQUAL,
+        BV_UNSIGNED_REMAINDER, BV_UNSIGNED_SHIFT_RIGHT, BV_NAND, BV_XOR, BV_NOR, BV_XNOR
+    }
+
+    private static final Op[] OPS = Op.values();
+
+    private static final Map<Class<? extends Node>, Op> ops = new HashMap<>();
+    private static final Map<Op, Function<Node[], Node>> builders = new EnumMap<>(Op.class);
+
+    private static void binary(Op op, Class<? extends BinaryOp> type, BiFunction<Node, Node, Node> constructor) {
+        ops.put(type, op);
+        builders.put(op, args -> constructor.apply(args[0], args[1]));
+    }
+
+    private static void unary(Op op, Class<? extends UnaryOp> type, Function<Node, Node> constructor) {
+        ops.put(type, op);
+        builders.put(op, args -> constructor.apply(args[0]));
+    }
+
+    static {
+        binary(Op.EQUAL, Equal.class, Equal::new);
+        binary(Op.ADD, Add.class, Add::new);
+        binary(Op.SUB, Sub.class, Sub::new);
+        binary(Op.MULT, Mult.class, Mult::new);
+        binary(Op.DIV, Div.class, Div::new);
+        binary(Op.AND, And.class, And::new);
+        binary(Op.OR, Or.class, Or::new);
+        binary(Op.IFF, Iff.class, Iff::new);
+        binary(Op.IMPL, Impl.class, Impl::new);
+        binary(Op.GREATER, Greater.class, Greater::new);
+        binary(Op.LESS, Less.class, Less::new);
+        binary(Op.GREATER_OR_EQUAL, GreaterOrEqual.class, GreaterOrEqual::new);
+        binary(Op.LESS_OR_EQUAL, LessOrEqual.class, LessOrEqual::new);
+        unary(Op.MINUS, Minus.class, Minus::new);
+        unary(Op.NOT, Not.class, Not::new);
+        binary(Op.BV_ADD, BVAdd.class, BVAdd::new);
+        binary(Op.BV_AND, BVAnd.class, BVAnd::new);
+        binary(Op.BV_MULT, BVMult.class, BVMult::new);
+        unary(Op.BV_NEG, BVNeg.class, BVNeg::new);
+        unary(Op.BV_NOT, BVNot.class, BVNot::new);
+        binary(Op.BV_OR, BVOr.class, BVOr::new);
+        binary(Op.BV_SHIFT_LEFT, BVShiftLeft.class, BVShiftLeft::new);
+        binary(Op.BV_SIGNED_DIV, BVSignedDiv.class, BVSignedDiv::new);
+        binary(Op.BV_SIGNED_GREATER, BVSignedGreater.class, BVSignedGreater::new);
+        binary(Op.BV_SIGNED_GREATER_OR_EQUAL, BVSignedGreaterOrEqual.class, BVSignedGreaterOrEqual::new);
+        binary(Op.BV_SIGNED_LESS, BVSignedLess.class, BVSignedLess::new);
+        binary(Op.BV_SIGNED_LESS_OR_EQUAL, BVSignedLessOrEqual.class, BVSignedLessOrEqual::new);
+        binary(Op.BV_SIGNED_MODULO, BVSignedModulo.class, BVSignedModulo::new);
+        binary(Op.BV_SIGNED_REMAINDER, BVSignedRemainder.class, BVSignedRemainder::new);
+        binary(Op.BV_SIGNED_SHIFT_RIGHT, BVSignedShiftRight.class, BVSignedShiftRight::new);
+        binary(Op.BV_SUB, BVSub.class, BVSub::new);
+        binary(Op.BV_UNSIGNED_DIV, BVUnsignedDiv.class, BVUnsignedDiv::new);
+        binary(Op.BV_UNSIGNED_GREATER, BVUnsignedGreater.class, BVUnsignedGreater::new);
+        binary(Op.BV_UNSIGNED_GREATER_OR_EQUAL, BVUnsignedGreaterOrEqual.class, BVUnsignedGreaterOrEqual::new);
+        binary(Op.BV_UNSIGNED_LESS, BVUnsignedLess.class, BVUnsignedLess::new);
+        binary(Op.BV_UNSIGNED_LESS_OR_EQUAL, BVUnsignedLessOrEqual.class, BVUnsignedLessOrEqual::new);
+        binary(Op.BV_UNSIGNED_REMAINDER, BVUnsignedRemainder.class, BVUnsignedRemainder::new);
+        binary(Op.BV_UNSIGNED_SHIFT_RIGHT, BVUnsignedShiftRight.class, BVUnsignedShiftRight::new);
+        binary(Op.BV_NAND, BVNand.class, BVNand::new);
+        binary(Op.BV_XOR, BVXor.class, BVXor::new);
+        binary(Op.BV_NOR, BVNor.class, BVNor::new);
+        binary(Op.BV_XNOR, BVXnor.class, BVXnor::new);
+        ops.put(ITE.class, Op.ITE);
+        builders.put(Op.ITE, args -> new ITE(args[0], args[1], args[2]));
+        ops.put(AndN.class, Op.AND_N);
+        builders.put(Op.AND_N, args -> new AndN(Arrays.asList(args)));
+        ops.put(OrN.class, Op.OR_N);
+        builders.put(Op.OR_N, args -> new OrN(Arrays.asList(args)));
+    }
+
+    /**
+     * @return operator of the application, or null if the node is stored as a leaf
+     */
+    public static Op opOf(Node node) {
+        return ops.get(node.getClass());
+    }
+
+    // entry i has operator ops[i] and children children[offsets[i]] ... children[offsets[i + 1] - 1],
+    // the only child of a leaf entry is its position in the leaf pool:
+    private byte[] opcodes = new byte[64];
+    private int[] offsets = new int[65];
+    private int[] children = new int[128];
+    private int size = 0;
+
+    private Node[] leaves = new Node[16];
+    private int leafCount = 0;
+
+    private int[] roots = new int[16];
+    private int rootCount = 0;
+
+    // entries of leaves and imported nodes, so that shared subterms are stored once:
+    private final Map<Node, Integer> entries = new HashMap<>();
+
+    // nodes of the entries built so far, shared by the facades of the arena:
+    private Node[] unfolded = new Node[0];
+
+    public int size() {
+        return size;
+    }
+
+    public Op getOp(int entry) {
+        return OPS[opcodes[entry]];
+    }
+
+    public int getArity(int entry) {
+        return opcodes[entry] == 0 ? 0 : offsets[entry + 1] - offsets[entry];
+    }
+
+    public int getChild(int entry, int index) {
+        return children[offsets[entry] + index];
+    }
+
+    /**
+     * @return node of a leaf entry
+     */
+    public Node getLeaf(int entry) {
+        return leaves[children[offsets[entry]]];
+    }
+
+    /**
+     * Variables, constants and nodes without an operator are stored as leaves
+     */
+    public int leaf(Node node) {
+        Integer entry = entries.get(node);
+        if (entry != null) {
+            return entry;
+        }
+        if (leafCount == leaves.length) {
+            leaves = Arrays.copyOf(leaves, 2 * leafCount);
+        }
+        leaves[leafCount] = node;
+        int result = append(Op.LEAF, leafCount);
+        leafCount++;
+        entries.put(node, result);
+        return result;
+    }
+
+    /**
+     * Children must be entries of this arena
+     */
+    public int apply(Op op, int... args) {
+        if (op == Op.LEAF) {
+            throw new IllegalArgumentException("leaves are added with leaf()");
+        }
+        for (int arg : args) {
+            if (arg < 0 || arg >= size) {
+                throw new IllegalArgumentException("unknown entry " + arg);
+            }
+        }
+        return append(op, args);
+    }
+
+    private int append(Op op, int... args) {
+        if (size == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, 2 * size);
+            offsets = Arrays.copyOf(offsets, 2 * size + 1);
+        }
+        int offset = offsets[size];
+        if (offset + args.length > children.length) {
+            children = Arrays.copyOf(children, Math.max(2 * children.length, offset + args.length));
+        }
+        System.arraycopy(args, 0, children, offset, args.length);
+        opcodes[size] = (byte) op.ordinal();
+        offsets[size + 1] = offset + args.length;
+        return size++;
+    }
+
+    /**
+     * Copies the node into the arena, sharing the entries of structurally equal subterms
+     */
+    public int add(Node node) {
+        Integer known = entries.get(node);
+        if (known != null) {
+            return known;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.peek();
+            if (entries.containsKey(current)) {
+                stack.pop();
+                continue;
+            }
+            Op op = ops.get(current.getClass());
+            if (op == null) {
+                leaf(current);
+                stack.pop();
+                continue;
+            }
+            Application application = (Application) current;
+            boolean ready = true;
+            for (int i = application.getArity() - 1; i >= 0; i--) {
+                if (!entries.containsKey(application.getArg(i))) {
+                    stack.push(application.getArg(i));
+                    ready = false;
+                }
+            }
+            if (ready) {
+                int[] indices = new int[application.getArity()];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = entries.get(application.getArg(i));
+                }
+                entries.put(current, append(op, indices));
+                stack.pop();
+            }
+        }
+        return entries.get(node);
+    }
+
+    /**
+     * Records the entry as a top-level clause
+     */
+    public void addRoot(int entry) {
+        if (rootCount == roots.length) {
+            roots = Arrays.copyOf(roots, 2 * rootCount);
+        }
+        roots[rootCount++] = entry;
+    }
+
+    /**
+     * @return facades of the top-level clauses in the order they were added
+     */
+    public List<Node> getRoots() {
+        List<Node> result = new ArrayList<>(rootCount);
+        for (int i = 0; i < rootCount; i++) {
+            result.add(new ArenaNode(this, roots[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Adds the variables of the entry to the collection, including those under leaves such as UIF applications
+     * and instantiated clauses. Entries marked as visited are skipped and the others are marked,
+     * so collecting the variables of many entries with the same marks scans each entry once.
+     * @return number of newly visited entries
+     */
+    public int collectVariables(int entry, BitSet visited, Collection<? super Variable> variables) {
+        if (visited.get(entry)) {
+            return 0;
+        }
+        int count = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = entry;
+        visited.set(entry);
+        while (top > 0) {
+            int current = stack[--top];
+            count++;
+            if (opcodes[current] == 0) {
+                Node leaf = getLeaf(current);
+                if (leaf instanceof Variable) {
+                    variables.add((Variable) leaf);
+                } else {
+                    variables.addAll(Traverse.collectByType(leaf, Variable.class));
+                }
+                continue;
+            }
+            for (int j = offsets[current]; j < offsets[current + 1]; j++) {
+                int child = children[j];
+                if (!visited.get(child)) {
+                    visited.set(child);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    }
+                    stack[top++] = child;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @see #collectVariables(int, BitSet, Collection)
+     */
+    public List<Variable> getVariables(int entry) {
+        Set<Variable> variables = new LinkedHashSet<>();
+        collectVariables(entry, new BitSet(entry + 1), variables);
+        return new ArrayList<>(variables);
+    }
+
+    /**
+     * Builds the node of the entry, shared subterms stay shared. Built entries are kept with the arena,
+     * so building all roots of the arena builds each entry once.
+     */
+    public synchronized Node toNode(int entry) {
+        if (entry >= unfolded.length) {
+            unfolded = Arrays.copyOf(unfolded, Math.max(2 * unfolded.length, size));
+        }
+        if (unfolded[entry] != null) {
+            return unfolded[entry];
+        }
+        // an entry is built once its children are, they are pushed on top of it:
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = entry;
+        while (top > 0) {
+            int current = stack[top - 1];
+            if (unfolded[current] != null) {
+                top--;
+                continue;
+            }
+            if (opcodes[current] == 0) {
+                unfolded[current] = getLeaf(current);
+                top--;
+                continue;
+            }
+            boolean ready = true;
+            for (int j = offsets[current + 1] - 1; j >= offsets[current]; j--) {
+                if (unfolded[children[j]] == null) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    }
+                    stack[top++] = children[j];
+                    ready = false;
+                }
+            }
+            if (ready) {
+                Node[] args = new Node[offsets[current + 1] - offsets[current]];
+                for (int j = 0; j < args.length; j++) {
+                    args[j] = unfolded[children[offsets[current] + j]];
+                }
+                unfolded[current] = builders.get(OPS[opcodes[current]]).apply(args);
+                top--;
+            }
+        }
+        return unfolded[entry];
+    }
+
+}
@@ -0,0 +1,105 @@
+package sg.edu.nus.comp.codis.ast;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import sg.edu.nus.comp.codis.ast.theory.UIFApplication;
+
+import java.util.Objects;
+
+/**
+ * Hash-consing of nodes: structurally equal interned nodes are the same object, so they are compared by reference.
+ *
+ * Since arguments of interned applications are interned, an application is looked up by its class and the identities
+ * of its arguments, without traversing the subtrees. Entries are weak and disappear with their nodes.
+ *
+ * The table is a concurrent weak interner, so nodes can be built from several threads without a global lock.
+ */
+public class NodeFactory {
+
+    private static final Interner<Key> table = Interners.newWeakInterner();
+
+    private static final class Key {
+        private final Class<?> type;
+        private final Object data; // leaf itself, UIF of application or null
+        private final Node[] args;
+        private final int hash;
+        // the node is kept alive by its key, and the key by the node, until both are unreachable:
+        private final Node node;
+
+        Key(Class<?> type, Object data, Node[] args, Node node) {
+            this.type = type;
+            this.data = data;
+            this.args = args;
+            this.node = node;
+            int h = type.hashCode() * 31 + Objects.hashCode(data);
+            for (Node arg : args) {
+                h = h * 31 + System.identityHashCode(arg);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key rhs = (Key) obj;
+            if (hash != rhs.hash || type != rhs.type || args.length != rhs.args.length)
+                return false;
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] != rhs.args[i])
+                    return false;
+            }
+            return Objects.equals(data, rhs.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @return canonical node structurally equal to the given one
+     */
+    public static Node intern(Node node) {
+        if (node.isInterned()) {
+            return node;
+        }
+        if (node instanceof Application) {
+            Application application = (Application) node;
+            for (int i = 0; i < application.getArity(); i++) {
+                if (!application.getArg(i).isInterned()) {
+                    return Traverse.transform(node, n -> n); // rebuilds bottom-up through the factory
+                }
+            }
+        }
+        return internShallow(node);
+    }
+
+    /**
+     * Node's arguments are expected to be interned
+     */
+    static Node internShallow(Node node) {
+        if (node.isInterned()) {
+            return node;
+        }
+        Key key;
+        if (node instanceof Application) {
+            Application application = (Application) node;
+            Node[] args = new Node[application.getArity()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = application.getArg(i);
+            }
+            Object data = (node instanceof UIFApplication) ? ((UIFApplication) node).getUIF() : null;
+            key = new Key(node.getClass(), data, args, node);
+        } else {
+            key = new Key(node.getClass(), node, new Node[0], node);
+        }
+        Key canonical = table.intern(key);
+        // the node is marked only after winning, until then it is compared structurally.
+        // The winner may not have marked it yet, so losers mark it too, with the same key:
+        canonical.node.setInternKey(canonical);
+        return canonical.node;
+    }
+
+}
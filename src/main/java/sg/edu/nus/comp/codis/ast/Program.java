@@ -54,6 +54,9 @@ public class Program {
                                                                                         e -> e.getValue().getSemantics()));
             semantics = Traverse.substitute(root.getSemantics(), map);
         }
+        if (parameterValuation.isEmpty()) {
+            return semantics;
+        }
         return Traverse.substitute(semantics, parameterValuation);
     }
 
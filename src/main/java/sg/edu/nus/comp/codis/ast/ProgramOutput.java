@@ -3,6 +3,8 @@ package sg.edu.nus.comp.codis.ast;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Variable used for CODIS, conflict learning, evaluation. Test-instantiated. Physical equality.
  */
@@ -21,30 +23,25 @@ public class ProgramOutput extends Variable {
 
     public ProgramOutput(Type type) {
         this.type = type;
-        this.objectCounter = classCounter;
-        classCounter++;
+        this.objectCounter = classCounter.getAndIncrement();
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
-    private static int classCounter = 0;
+    private static final AtomicInteger classCounter = new AtomicInteger();
     private final int objectCounter;
 
     @Override
@@ -53,6 +50,8 @@ public class ProgramOutput extends Variable {
             return false;
         if (obj == this)
             return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
 
         ProgramOutput rhs = (ProgramOutput) obj;
         return new EqualsBuilder().
@@ -61,7 +60,7 @@ public class ProgramOutput extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(objectCounter).
                 toHashCode();
@@ -6,6 +6,8 @@ import sg.edu.nus.comp.codis.ast.BottomUpVisitor;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 import sg.edu.nus.comp.codis.ast.Variable;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Created by Sergey Mechtaev on 16/4/2016.
  *
@@ -15,21 +17,20 @@ import sg.edu.nus.comp.codis.ast.Variable;
 public class Selector extends Variable {
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
     }
 
-    private static int classCounter = 0;
+    private static final AtomicInteger classCounter = new AtomicInteger();
     private final int objectCounter;
 
     public Selector() {
-        objectCounter = classCounter;
-        classCounter++;
+        objectCounter = classCounter.getAndIncrement();
     }
 
     @Override
@@ -38,6 +39,8 @@ public class Selector extends Variable {
             return false;
         if (obj == this)
             return true;
+        if (isInterned() && ((Node) obj).isInterned())
+            return false;
 
         Selector rhs = (Selector) obj;
         return new EqualsBuilder().
@@ -46,7 +49,7 @@ public class Selector extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(objectCounter).
                 toHashCode();
@@ -70,12 +73,8 @@ public class Selector extends Variable {
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
 }
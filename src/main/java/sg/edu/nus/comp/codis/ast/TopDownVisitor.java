@@ -26,6 +26,10 @@ public interface TopDownVisitor {
 
     void visit(Or or);
 
+    void visit(AndN andN);
+
+    void visit(OrN orN);
+
     void visit(Iff iff);
 
     void visit(Impl impl);
@@ -52,6 +56,10 @@ public interface TopDownVisitor {
 
     void visit(TestInstance testInstance);
 
+    void visit(InstantiatedClause instantiatedClause);
+
+    void visit(ArenaNode arenaNode);
+
     void visit(Parameter parameter);
 
     void visit(Hole hole);
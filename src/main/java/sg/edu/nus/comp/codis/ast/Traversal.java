@@ -0,0 +1,159 @@
+package sg.edu.nus.comp.codis.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Traversal engine with an explicit stack, so that the depth of a formula is not limited by the call stack.
+ * Nodes only dispatch to visitors, the order of visits is the same as in the recursive definition.
+ */
+class Traversal {
+
+    /**
+     * Stack of partially visited nodes with the index of the next child to visit
+     */
+    private static final class Frames {
+        private Node[] nodes = new Node[32];
+        private Application[] applications = new Application[32];
+        private int[] next = new int[32];
+        private int size = 0;
+
+        void push(Node node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                applications = Arrays.copyOf(applications, 2 * size);
+                next = Arrays.copyOf(next, 2 * size);
+            }
+            nodes[size] = node;
+            applications[size] = (node instanceof Application) ? (Application) node : null;
+            next[size] = 0;
+            size++;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return next unvisited child of the top node or null if all children are visited
+         */
+        Node nextChild() {
+            Application application = applications[size - 1];
+            if (application == null || next[size - 1] == application.getArity()) {
+                return null;
+            }
+            return application.getArg(next[size - 1]++);
+        }
+
+        Node pop() {
+            size--;
+            Node node = nodes[size];
+            nodes[size] = null;
+            applications[size] = null;
+            return node;
+        }
+    }
+
+    static void bottomUp(Node root, BottomUpVisitor visitor) {
+        Frames frames = new Frames();
+        frames.push(root);
+        while (!frames.isEmpty()) {
+            Node child = frames.nextChild();
+            if (child != null) {
+                frames.push(child);
+            } else {
+                frames.pop().dispatch(visitor);
+            }
+        }
+    }
+
+    static void bottomUpMemo(Node root, BottomUpMemoVisitor visitor) {
+        if (visitor.alreadyVisited(root)) {
+            visitor.visitAgain(root);
+            return;
+        }
+        Frames frames = new Frames();
+        frames.push(root);
+        while (!frames.isEmpty()) {
+            Node child = frames.nextChild();
+            if (child == null) {
+                frames.pop().dispatch(visitor);
+            } else if (visitor.alreadyVisited(child)) {
+                visitor.visitAgain(child);
+            } else {
+                frames.push(child);
+            }
+        }
+    }
+
+    static void topDown(Node root, TopDownVisitor visitor) {
+        List<Node> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            node.dispatch(visitor);
+            if (node instanceof Application) {
+                Application application = (Application) node;
+                for (int i = application.getArity() - 1; i >= 0; i--) {
+                    stack.add(application.getArg(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills hash code caches bottom-up, skipping subtrees whose hash codes are already known
+     */
+    static void computeHashCodes(Node root) {
+        Frames frames = new Frames();
+        frames.push(root);
+        while (!frames.isEmpty()) {
+            Node child = frames.nextChild();
+            if (child == null) {
+                frames.pop().cacheHashCode();
+            } else if (!child.hasHashCode()) {
+                frames.push(child);
+            }
+        }
+    }
+
+    /**
+     * Structural equality with a stack of node pairs still to compare.
+     * Interned nodes are equal only if they are the same object, leaves are compared by their own equals.
+     */
+    static boolean equal(Node first, Node second) {
+        List<Node> stack = new ArrayList<>();
+        stack.add(first);
+        stack.add(second);
+        while (!stack.isEmpty()) {
+            Node right = stack.remove(stack.size() - 1);
+            Node left = stack.remove(stack.size() - 1);
+            if (left == right) {
+                continue;
+            }
+            if (left.isInterned() && right.isInterned()) {
+                return false;
+            }
+            if (!(left instanceof Application) || !(right instanceof Application)) {
+                if (left instanceof Application || right instanceof Application || !left.equals(right)) {
+                    return false;
+                }
+                continue;
+            }
+            Application leftApplication = (Application) left;
+            Application rightApplication = (Application) right;
+            if (leftApplication.hashCode() != rightApplication.hashCode()
+                    || leftApplication.getArity() != rightApplication.getArity()
+                    || !leftApplication.equalsOperator(rightApplication)) {
+                return false;
+            }
+            for (int i = leftApplication.getArity() - 1; i >= 0; i--) {
+                stack.add(leftApplication.getArg(i));
+                stack.add(rightApplication.getArg(i));
+            }
+        }
+        return true;
+    }
+
+}
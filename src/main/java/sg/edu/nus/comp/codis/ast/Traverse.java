@@ -10,9 +10,24 @@ import java.util.function.Function;
  */
 public class Traverse {
 
+    /**
+     * Nodes are rebuilt bottom-up and interned by NodeFactory.
+     * The function is applied once per distinct subterm, so it is expected to be pure.
+     */
     public static Node transform(Node node, Function<Node, Node> function) {
-        TransformationVisitor visitor = new TransformationVisitor(function);
-        node.accept(visitor);
+        return transform(node, function, true);
+    }
+
+    /**
+     * @param memoization transform shared subterms once, otherwise once per occurrence
+     */
+    public static Node transform(Node node, Function<Node, Node> function, boolean memoization) {
+        TransformationVisitor visitor = new TransformationVisitor(function, memoization);
+        if (memoization) {
+            node.accept((BottomUpMemoVisitor) visitor);
+        } else {
+            node.accept((BottomUpVisitor) visitor);
+        }
         return visitor.getTransformedNode();
     }
 
@@ -107,6 +122,16 @@ public class Traverse {
             addIfMatches(or);
         }
 
+        @Override
+        public void visit(AndN andN) {
+            addIfMatches(andN);
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            addIfMatches(orN);
+        }
+
         @Override
         public void visit(Iff iff) {
             addIfMatches(iff);
@@ -172,6 +197,36 @@ public class Traverse {
             addIfMatches(testInstance);
         }
 
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            addIfMatches(instantiatedClause);
+            Node template = instantiatedClause.getTemplate();
+            if (type.isAssignableFrom(Application.class) || Application.class.isAssignableFrom(type)) {
+                // applications of the instance differ from those of the template:
+                for (T node : collectByType(instantiatedClause.getInstance(), type)) {
+                    addIfMatches((Node) node);
+                }
+                return;
+            }
+            // leaves of the instance are the leaves of the template with resolved variables:
+            for (T node : collectByType(template, type)) {
+                if (!(node instanceof Variable)) {
+                    addIfMatches((Node) node);
+                }
+            }
+            for (Variable variable : collectByType(template, Variable.class)) {
+                addIfMatches(instantiatedClause.resolve(variable));
+            }
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            addIfMatches(arenaNode);
+            for (T node : collectByType(arenaNode.toNode(), type)) {
+                addIfMatches((Node) node);
+            }
+        }
+
         @Override
         public void visit(Parameter parameter) {
             addIfMatches(parameter);
@@ -353,14 +408,22 @@ public class Traverse {
         }
     }
 
-    private static class TransformationVisitor implements BottomUpVisitor {
+    /**
+     * Subtrees that are not changed by the function are returned as they are, without rebuilding.
+     * With memoization, each distinct subterm is transformed once, so that sharing is preserved.
+     */
+    private static class TransformationVisitor implements BottomUpVisitor, BottomUpMemoVisitor {
 
         private Stack<Node> nodes;
         private Function<Node, Node> function;
+        private Map<Node, Node> memo;
 
-        TransformationVisitor(Function<Node, Node> function) {
+        TransformationVisitor(Function<Node, Node> function, boolean memoization) {
             this.function = function;
             nodes = new Stack<>();
+            if (memoization) {
+                memo = new IdentityHashMap<>();
+            }
         }
 
         Node getTransformedNode() {
@@ -368,163 +431,227 @@ public class Traverse {
             return nodes.peek();
         }
 
+        private void push(Node original, Node rebuilt) {
+            Node result = NodeFactory.intern(function.apply(rebuilt));
+            if (memo != null) {
+                memo.put(original, result);
+            }
+            nodes.push(result);
+        }
+
+        @Override
+        public boolean alreadyVisited(Node node) {
+            return memo != null && memo.containsKey(node);
+        }
+
+        @Override
+        public void visitAgain(Node node) {
+            nodes.push(memo.get(node));
+        }
+
         @Override
         public void visit(ProgramVariable programVariable) {
-            nodes.push(function.apply(programVariable));
+            push(programVariable, programVariable);
         }
 
         @Override
         public void visit(Location location) {
-            nodes.push(function.apply(location));
+            push(location, location);
         }
 
         @Override
         public void visit(UIFApplication UIFApplication) {
-            int argsNum = UIFApplication.getArgs().size();
-            ArrayList<Node> args = new ArrayList<>();
-            for (int i=0; i< argsNum; i++) {
-                args.add(nodes.pop());
-            }
-            Collections.reverse(args);
-            nodes.push(function.apply(new UIFApplication(UIFApplication.getUIF(), args)));
+            List<Node> args = popArgs(UIFApplication.getArity());
+            push(UIFApplication, sameArgs(UIFApplication, args) ?
+                    UIFApplication : new UIFApplication(UIFApplication.getUIF(), new ArrayList<>(args)));
         }
 
         @Override
         public void visit(Equal equal) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Equal(left, right)));
+            push(equal, equal.getLeft() == left && equal.getRight() == right ? equal : new Equal(left, right));
         }
 
         @Override
         public void visit(Add add) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Add(left, right)));
+            push(add, add.getLeft() == left && add.getRight() == right ? add : new Add(left, right));
         }
 
         @Override
         public void visit(Sub sub) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Sub(left, right)));
+            push(sub, sub.getLeft() == left && sub.getRight() == right ? sub : new Sub(left, right));
         }
 
         @Override
         public void visit(Mult mult) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Mult(left, right)));
+            push(mult, mult.getLeft() == left && mult.getRight() == right ? mult : new Mult(left, right));
         }
 
         @Override
         public void visit(Div div) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Div(left, right)));
+            push(div, div.getLeft() == left && div.getRight() == right ? div : new Div(left, right));
         }
 
         @Override
         public void visit(And and) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new And(left, right)));
+            push(and, and.getLeft() == left && and.getRight() == right ? and : new And(left, right));
         }
 
         @Override
         public void visit(Or or) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Or(left, right)));
+            push(or, or.getLeft() == left && or.getRight() == right ? or : new Or(left, right));
+        }
+
+        @Override
+        public void visit(AndN andN) {
+            List<Node> args = popArgs(andN.getArity());
+            push(andN, sameArgs(andN, args) ? andN : new AndN(args));
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            List<Node> args = popArgs(orN.getArity());
+            push(orN, sameArgs(orN, args) ? orN : new OrN(args));
+        }
+
+        private boolean sameArgs(Application application, List<Node> args) {
+            for (int i=0; i<args.size(); i++) {
+                if (application.getArg(i) != args.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private List<Node> popArgs(int argsNum) {
+            ArrayList<Node> args = new ArrayList<>();
+            for (int i=0; i< argsNum; i++) {
+                args.add(nodes.pop());
+            }
+            Collections.reverse(args);
+            return args;
         }
 
         @Override
         public void visit(Iff iff) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Iff(left, right)));
+            push(iff, iff.getLeft() == left && iff.getRight() == right ? iff : new Iff(left, right));
         }
 
         @Override
         public void visit(Impl impl) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Impl(left, right)));
+            push(impl, impl.getLeft() == left && impl.getRight() == right ? impl : new Impl(left, right));
         }
 
         @Override
         public void visit(Greater greater) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Greater(left, right)));
+            push(greater, greater.getLeft() == left && greater.getRight() == right ? greater : new Greater(left, right));
         }
 
         @Override
         public void visit(Less less) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Less(left, right)));
+            push(less, less.getLeft() == left && less.getRight() == right ? less : new Less(left, right));
         }
 
         @Override
         public void visit(GreaterOrEqual greaterOrEqual) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new GreaterOrEqual(left, right)));
+            push(greaterOrEqual, greaterOrEqual.getLeft() == left && greaterOrEqual.getRight() == right ? greaterOrEqual : new GreaterOrEqual(left, right));
         }
 
         @Override
         public void visit(LessOrEqual lessOrEqual) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new LessOrEqual(left, right)));
+            push(lessOrEqual, lessOrEqual.getLeft() == left && lessOrEqual.getRight() == right ? lessOrEqual : new LessOrEqual(left, right));
         }
 
         @Override
         public void visit(Minus minus) {
             Node arg = nodes.pop();
-            nodes.push(function.apply(new Minus(arg)));
+            push(minus, minus.getArg() == arg ? minus : new Minus(arg));
         }
 
         @Override
         public void visit(Not not) {
             Node arg = nodes.pop();
-            nodes.push(function.apply(new Not(arg)));
+            push(not, not.getArg() == arg ? not : new Not(arg));
         }
 
         @Override
         public void visit(IntConst intConst) {
-            nodes.push(function.apply(intConst));
+            push(intConst, intConst);
         }
 
         @Override
         public void visit(BoolConst boolConst) {
-            nodes.push(function.apply(boolConst));
+            push(boolConst, boolConst);
         }
 
         @Override
         public void visit(ComponentInput componentInput) {
-            nodes.push(function.apply(componentInput));
+            push(componentInput, componentInput);
         }
 
         @Override
         public void visit(ComponentOutput componentOutput) {
-            nodes.push(function.apply(componentOutput));
+            push(componentOutput, componentOutput);
         }
 
         @Override
         public void visit(TestInstance testInstance) {
-            nodes.push(function.apply(testInstance));
+            push(testInstance, testInstance);
+        }
+
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            // transforming the template with resolved leaves is transforming the instance:
+            Node result = transform(instantiatedClause.getTemplate(), n -> function.apply(n instanceof Variable ?
+                    instantiatedClause.resolve((Variable) n) : n), memo != null);
+            if (memo != null) {
+                memo.put(instantiatedClause, result);
+            }
+            nodes.push(result);
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            Node result = transform(arenaNode.toNode(), function, memo != null);
+            if (memo != null) {
+                memo.put(arenaNode, result);
+            }
+            nodes.push(result);
         }
 
         @Override
         public void visit(Parameter parameter) {
-            nodes.push(function.apply(parameter));
+            push(parameter, parameter);
         }
 
         @Override
         public void visit(Hole hole) {
-            nodes.push(function.apply(hole));
+            push(hole, hole);
         }
 
         @Override
@@ -532,65 +659,66 @@ public class Traverse {
             Node elseBranch = nodes.pop();
             Node thenBranch = nodes.pop();
             Node condition = nodes.pop();
-            nodes.push(function.apply(new ITE(condition, thenBranch, elseBranch)));
+            push(ite, ite.getCondition() == condition && ite.getThenBranch() == thenBranch && ite.getElseBranch() == elseBranch ?
+                    ite : new ITE(condition, thenBranch, elseBranch));
         }
 
         @Override
         public void visit(Selector selector) {
-            nodes.push(function.apply(selector));
+            push(selector, selector);
         }
 
         @Override
         public void visit(BVConst bvConst) {
-            nodes.push(function.apply(bvConst));
+            push(bvConst, bvConst);
         }
 
         @Override
         public void visit(BVAdd bvAdd) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVAdd(left, right)));
+            push(bvAdd, bvAdd.getLeft() == left && bvAdd.getRight() == right ? bvAdd : new BVAdd(left, right));
         }
 
         @Override
         public void visit(BVAnd bvAnd) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVAnd(left, right)));
+            push(bvAnd, bvAnd.getLeft() == left && bvAnd.getRight() == right ? bvAnd : new BVAnd(left, right));
         }
 
         @Override
         public void visit(BVMult bvMult) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new Mult(left, right)));
+            push(bvMult, bvMult.getLeft() == left && bvMult.getRight() == right ? bvMult : new BVMult(left, right));
 
         }
 
         @Override
         public void visit(BVNeg bvNeg) {
             Node arg = nodes.pop();
-            nodes.push(function.apply(new BVNeg(arg)));
+            push(bvNeg, bvNeg.getArg() == arg ? bvNeg : new BVNeg(arg));
         }
 
         @Override
         public void visit(BVNot bvNot) {
             Node arg = nodes.pop();
-            nodes.push(function.apply(new BVNot(arg)));
+            push(bvNot, bvNot.getArg() == arg ? bvNot : new BVNot(arg));
         }
 
         @Override
         public void visit(BVOr bvOr) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVOr(left, right)));
+            push(bvOr, bvOr.getLeft() == left && bvOr.getRight() == right ? bvOr : new BVOr(left, right));
         }
 
         @Override
         public void visit(BVShiftLeft bvShiftLeft) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVShiftLeft(left, right)));
+            push(bvShiftLeft, bvShiftLeft.getLeft() == left && bvShiftLeft.getRight() == right ? bvShiftLeft : new BVShiftLeft(left, right));
 
         }
 
@@ -598,160 +726,160 @@ public class Traverse {
         public void visit(BVSignedDiv bvSignedDiv) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedDiv(left, right)));
+            push(bvSignedDiv, bvSignedDiv.getLeft() == left && bvSignedDiv.getRight() == right ? bvSignedDiv : new BVSignedDiv(left, right));
         }
 
         @Override
         public void visit(BVSignedGreater bvSignedGreater) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedGreater(left, right)));
+            push(bvSignedGreater, bvSignedGreater.getLeft() == left && bvSignedGreater.getRight() == right ? bvSignedGreater : new BVSignedGreater(left, right));
         }
 
         @Override
         public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedGreaterOrEqual(left, right)));
+            push(bvSignedGreaterOrEqual, bvSignedGreaterOrEqual.getLeft() == left && bvSignedGreaterOrEqual.getRight() == right ? bvSignedGreaterOrEqual : new BVSignedGreaterOrEqual(left, right));
         }
 
         @Override
         public void visit(BVSignedLess bvSignedLess) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVShiftLeft(left, right)));
+            push(bvSignedLess, bvSignedLess.getLeft() == left && bvSignedLess.getRight() == right ? bvSignedLess : new BVSignedLess(left, right));
         }
 
         @Override
         public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedLessOrEqual(left, right)));
+            push(bvSignedLessOrEqual, bvSignedLessOrEqual.getLeft() == left && bvSignedLessOrEqual.getRight() == right ? bvSignedLessOrEqual : new BVSignedLessOrEqual(left, right));
         }
 
         @Override
         public void visit(BVSignedModulo bvSignedModulo) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedModulo(left, right)));
+            push(bvSignedModulo, bvSignedModulo.getLeft() == left && bvSignedModulo.getRight() == right ? bvSignedModulo : new BVSignedModulo(left, right));
         }
 
         @Override
         public void visit(BVSignedRemainder bvSignedRemainder) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedRemainder(left, right)));
+            push(bvSignedRemainder, bvSignedRemainder.getLeft() == left && bvSignedRemainder.getRight() == right ? bvSignedRemainder : new BVSignedRemainder(left, right));
         }
 
         @Override
         public void visit(BVSignedShiftRight bvSignedShiftRight) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedShiftRight(left, right)));
+            push(bvSignedShiftRight, bvSignedShiftRight.getLeft() == left && bvSignedShiftRight.getRight() == right ? bvSignedShiftRight : new BVSignedShiftRight(left, right));
         }
 
         @Override
         public void visit(BVSub bvSub) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVSub(left, right)));
+            push(bvSub, bvSub.getLeft() == left && bvSub.getRight() == right ? bvSub : new BVSub(left, right));
         }
 
         @Override
         public void visit(BVUnsignedDiv bvUnsignedDiv) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedDiv(left, right)));
+            push(bvUnsignedDiv, bvUnsignedDiv.getLeft() == left && bvUnsignedDiv.getRight() == right ? bvUnsignedDiv : new BVUnsignedDiv(left, right));
         }
 
         @Override
         public void visit(BVUnsignedGreater bvUnsignedGreater) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedGreater(left, right)));
+            push(bvUnsignedGreater, bvUnsignedGreater.getLeft() == left && bvUnsignedGreater.getRight() == right ? bvUnsignedGreater : new BVUnsignedGreater(left, right));
         }
 
         @Override
         public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedGreaterOrEqual(left, right)));
+            push(bvUnsignedGreaterOrEqual, bvUnsignedGreaterOrEqual.getLeft() == left && bvUnsignedGreaterOrEqual.getRight() == right ? bvUnsignedGreaterOrEqual : new BVUnsignedGreaterOrEqual(left, right));
         }
 
         @Override
         public void visit(BVUnsignedLess bvUnsignedLess) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedLess(left, right)));
+            push(bvUnsignedLess, bvUnsignedLess.getLeft() == left && bvUnsignedLess.getRight() == right ? bvUnsignedLess : new BVUnsignedLess(left, right));
         }
 
         @Override
         public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedLessOrEqual(left, right)));
+            push(bvUnsignedLessOrEqual, bvUnsignedLessOrEqual.getLeft() == left && bvUnsignedLessOrEqual.getRight() == right ? bvUnsignedLessOrEqual : new BVUnsignedLessOrEqual(left, right));
         }
 
         @Override
         public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedRemainder(left, right)));
+            push(bvUnsignedRemainder, bvUnsignedRemainder.getLeft() == left && bvUnsignedRemainder.getRight() == right ? bvUnsignedRemainder : new BVUnsignedRemainder(left, right));
         }
 
         @Override
         public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedShiftRight(left, right)));
+            push(bvUnsignedShiftRight, bvUnsignedShiftRight.getLeft() == left && bvUnsignedShiftRight.getRight() == right ? bvUnsignedShiftRight : new BVUnsignedShiftRight(left, right));
         }
 
         @Override
         public void visit(BranchOutput branchOutput) {
-            nodes.push(function.apply(branchOutput));
+            push(branchOutput, branchOutput);
         }
 
         @Override
         public void visit(BVNand bvNand) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVNand(left, right)));
+            push(bvNand, bvNand.getLeft() == left && bvNand.getRight() == right ? bvNand : new BVNand(left, right));
         }
 
         @Override
         public void visit(BVXor bvXor) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVXor(left, right)));
+            push(bvXor, bvXor.getLeft() == left && bvXor.getRight() == right ? bvXor : new BVXor(left, right));
         }
 
         @Override
         public void visit(BVNor bvNor) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVNor(left, right)));
+            push(bvNor, bvNor.getLeft() == left && bvNor.getRight() == right ? bvNor : new BVNor(left, right));
         }
 
         @Override
         public void visit(BVXnor bvXnor) {
             Node right = nodes.pop();
             Node left = nodes.pop();
-            nodes.push(function.apply(new BVXnor(left, right)));
+            push(bvXnor, bvXnor.getLeft() == left && bvXnor.getRight() == right ? bvXnor : new BVXnor(left, right));
         }
 
         @Override
         public void visit(ProgramOutput programOutput) {
-            nodes.push(function.apply(programOutput));
+            push(programOutput, programOutput);
         }
 
         @Override
         public void visit(Dummy dummy) {
-            nodes.push(function.apply(dummy));
+            push(dummy, dummy);
         }
 
         @Override
         public void visit(Indexed indexed) {
-            nodes.push(function.apply(indexed));
+            push(indexed, indexed);
         }
 
     }
@@ -4,6 +4,7 @@ import sg.edu.nus.comp.codis.ast.theory.*;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Stack;
 
@@ -12,7 +13,69 @@ import java.util.Stack;
  */
 public class TypeInference {
 
+    /**
+     * The type is inferred once and cached in the node
+     */
     public static Type typeOf(Node node) {
+        Type type = node.getCachedType();
+        if (type != null) {
+            return type;
+        }
+        // nodes typed by one of their arguments are resolved along the chain without recursion:
+        List<Node> chain = new ArrayList<>();
+        Node current = node;
+        while (current.getCachedType() == null && typeSource(current) != null) {
+            chain.add(current);
+            current = typeSource(current);
+        }
+        type = current.getCachedType();
+        if (type == null) {
+            type = inferType(current);
+            current.setCachedType(type);
+        }
+        for (Node typed : chain) {
+            typed.setCachedType(type);
+        }
+        return type;
+    }
+
+    /**
+     * @return argument that has the same type as the node, or null
+     */
+    private static Node typeSource(Node node) {
+        if (node instanceof ITE) {
+            return ((ITE) node).getThenBranch();
+        }
+
+        if (node instanceof BVAdd ||
+                node instanceof BVAnd ||
+                node instanceof BVMult ||
+                node instanceof BVOr ||
+                node instanceof BVShiftLeft ||
+                node instanceof BVSignedDiv ||
+                node instanceof BVSignedModulo ||
+                node instanceof BVSignedRemainder ||
+                node instanceof BVSignedShiftRight ||
+                node instanceof BVSub ||
+                node instanceof BVUnsignedDiv ||
+                node instanceof BVUnsignedRemainder ||
+                node instanceof BVUnsignedShiftRight ||
+                node instanceof BVNand ||
+                node instanceof BVXor ||
+                node instanceof BVNor ||
+                node instanceof BVXnor) {
+            return ((BinaryOp) node).getLeft();
+        }
+
+        if (node instanceof BVNeg ||
+                node instanceof BVNot) {
+            return ((UnaryOp) node).getArg();
+        }
+
+        return null;
+    }
+
+    private static Type inferType(Node node) {
         if (node instanceof Add ||
                 node instanceof Sub ||
                 node instanceof Mult ||
@@ -24,6 +87,8 @@ public class TypeInference {
 
         if (node instanceof And ||
                 node instanceof Or ||
+                node instanceof AndN ||
+                node instanceof OrN ||
                 node instanceof Iff ||
                 node instanceof Impl ||
                 node instanceof Equal ||
@@ -44,47 +109,23 @@ public class TypeInference {
             return BoolType.TYPE;
         }
 
+        if (node instanceof ArenaNode) {
+            return typeOf(((ArenaNode) node).toNode());
+        }
+
+        if (node instanceof InstantiatedClause) {
+            return typeOf(((InstantiatedClause) node).getTemplate());
+        }
+
         if (node instanceof Variable) {
             Variable variable = (Variable) node;
             return variable.getType();
         }
 
-        if (node instanceof ITE) {
-            Node thenBranch = ((ITE) node).getThenBranch();
-            return typeOf(thenBranch);
-        }
-
         if (node instanceof BVConst) {
             return ((BVConst) node).getType();
         }
 
-        if (node instanceof BVAdd ||
-                node instanceof BVAnd ||
-                node instanceof BVMult ||
-                node instanceof BVOr ||
-                node instanceof BVShiftLeft ||
-                node instanceof BVSignedDiv ||
-                node instanceof BVSignedModulo ||
-                node instanceof BVSignedRemainder ||
-                node instanceof BVSignedShiftRight ||
-                node instanceof BVSub ||
-                node instanceof BVUnsignedDiv ||
-                node instanceof BVUnsignedRemainder ||
-                node instanceof BVUnsignedShiftRight ||
-                node instanceof BVNand ||
-                node instanceof BVXor ||
-                node instanceof BVNor ||
-                node instanceof BVXnor) {
-            Node left = ((BinaryOp) node).getLeft();
-            return typeOf(left);
-        }
-
-        if (node instanceof BVNeg ||
-                node instanceof BVNot) {
-            Node arg = ((UnaryOp) node).getArg();
-            return typeOf(arg);
-        }
-
         throw new UnsupportedOperationException();
     }
 
@@ -222,6 +263,31 @@ public class TypeInference {
             types.push(BoolType.TYPE);
         }
 
+        @Override
+        public void visit(AndN andN) {
+            visitBoolN(andN.getArity());
+        }
+
+        @Override
+        public void visit(OrN orN) {
+            visitBoolN(orN.getArity());
+        }
+
+        private void visitBoolN(int argsNum) {
+            if (typeError) return;
+            if (types.size() < argsNum) {
+                typeError = true;
+                return;
+            }
+            for (int i=0; i<argsNum; i++) {
+                if (!types.pop().equals(BoolType.TYPE)) {
+                    typeError = true;
+                    return;
+                }
+            }
+            types.push(BoolType.TYPE);
+        }
+
         @Override
         public void visit(Iff iff) {
             if (typeError) return;
@@ -332,6 +398,26 @@ public class TypeInference {
             types.push(typeOf(testInstance.getVariable()));
         }
 
+        @Override
+        public void visit(InstantiatedClause instantiatedClause) {
+            if (typeError) return;
+            try {
+                types.push(checkType(instantiatedClause.getTemplate()));
+            } catch (TypeInferenceException e) {
+                typeError = true;
+            }
+        }
+
+        @Override
+        public void visit(ArenaNode arenaNode) {
+            if (typeError) return;
+            try {
+                types.push(checkType(arenaNode.toNode()));
+            } catch (TypeInferenceException e) {
+                typeError = true;
+            }
+        }
+
         @Override
         public void visit(Parameter parameter) {
             if (typeError) return;
@@ -1,6 +1,5 @@
 package sg.edu.nus.comp.codis.ast.theory;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import sg.edu.nus.comp.codis.ast.*;
 
@@ -27,28 +26,18 @@ public class Add extends BinaryOp {
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
-        left.accept(visitor);
-        right.accept(visitor);
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
-        left.accept(visitor);
-        right.accept(visitor);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            left.accept(visitor);
-            right.accept(visitor);
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
     @Override
@@ -60,30 +49,11 @@ public class Add extends BinaryOp {
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (!(obj instanceof Add))
-            return false;
-        if (obj == this)
-            return true;
-
-        Add rhs = (Add) obj;
-        return new EqualsBuilder().
-                append(left, rhs.left).
-                append(right, rhs.right).
-                isEquals();
-    }
-
-    @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(left).
                 append(right).
                 toHashCode();
     }
 
-    @Override
-    public String toString() {
-        return "(" + left.toString() + "+" + right.toString() + ")";
-    }
-
 }
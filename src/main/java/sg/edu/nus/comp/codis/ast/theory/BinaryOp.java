@@ -9,4 +9,21 @@ import sg.edu.nus.comp.codis.ast.Node;
 public abstract class BinaryOp extends Application {
     public abstract Node getLeft();
     public abstract Node getRight();
+
+    @Override
+    public int getArity() {
+        return 2;
+    }
+
+    @Override
+    public Node getArg(int index) {
+        switch (index) {
+            case 0:
+                return getLeft();
+            case 1:
+                return getRight();
+            default:
+                throw new IndexOutOfBoundsException("binary operator has no argument " + index);
+        }
+    }
 }
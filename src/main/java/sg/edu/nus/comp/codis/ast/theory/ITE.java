@@ -1,6 +1,5 @@
 package sg.edu.nus.comp.codis.ast.theory;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import sg.edu.nus.comp.codis.ast.*;
 
@@ -35,50 +34,22 @@ public class ITE extends Application {
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
-        condition.accept(visitor);
-        thenBranch.accept(visitor);
-        elseBranch.accept(visitor);
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
-        condition.accept(visitor);
-        thenBranch.accept(visitor);
-        elseBranch.accept(visitor);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            condition.accept(visitor);
-            thenBranch.accept(visitor);
-            elseBranch.accept(visitor);
-            visitor.visit(this);
-        }
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (!(obj instanceof ITE))
-            return false;
-        if (obj == this)
-            return true;
-
-        ITE rhs = (ITE) obj;
-        return new EqualsBuilder().
-                append(condition, rhs.condition).
-                append(thenBranch, rhs.thenBranch).
-                append(elseBranch, rhs.elseBranch).
-                isEquals();
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(condition).
                 append(thenBranch).
@@ -86,11 +57,6 @@ public class ITE extends Application {
                 toHashCode();
     }
 
-    @Override
-    public String toString() {
-        return "(if " + condition.toString() + " " + thenBranch.toString() + " " + elseBranch.toString() + ")";
-    }
-
     @Override
     public List<Node> getArgs() {
         List<Node> result = new ArrayList<>();
@@ -99,4 +65,23 @@ public class ITE extends Application {
         result.add(elseBranch);
         return result;
     }
+
+    @Override
+    public int getArity() {
+        return 3;
+    }
+
+    @Override
+    public Node getArg(int index) {
+        switch (index) {
+            case 0:
+                return condition;
+            case 1:
+                return thenBranch;
+            case 2:
+                return elseBranch;
+            default:
+                throw new IndexOutOfBoundsException("ITE has no argument " + index);
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package sg.edu.nus.comp.codis.ast.theory;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import sg.edu.nus.comp.codis.Unifier;
 import sg.edu.nus.comp.codis.ast.*;
@@ -22,25 +21,18 @@ public class Not extends UnaryOp {
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
-        arg.accept(visitor);
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
-        arg.accept(visitor);
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            arg.accept(visitor);
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
 
@@ -52,29 +44,10 @@ public class Not extends UnaryOp {
     }
 
     @Override
-    public String toString() {
-        return "!" + arg.toString();
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (!(obj instanceof Not))
-            return false;
-        if (obj == this)
-            return true;
-
-        Not rhs = (Not) obj;
-        return new EqualsBuilder().
-                append(arg, rhs.arg).
-                isEquals();
-    }
-
-    @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(arg).
                 toHashCode();
     }
 
-
 }
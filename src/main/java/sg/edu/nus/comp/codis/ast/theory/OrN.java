@@ -0,0 +1,57 @@
+package sg.edu.nus.comp.codis.ast.theory;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * N-ary disjunction, flat alternative to nested Or
+ */
+public class OrN extends Application {
+    private List<Node> args;
+
+    public OrN(List<? extends Node> args) {
+        this.args = Collections.unmodifiableList(new ArrayList<>(args));
+    }
+
+    @Override
+    protected void dispatch(BottomUpVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected void dispatch(TopDownVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public List<Node> getArgs() {
+        return args;
+    }
+
+    @Override
+    public int getArity() {
+        return args.size();
+    }
+
+    @Override
+    public Node getArg(int index) {
+        return args.get(index);
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return new HashCodeBuilder(17, 31).
+                append(args).
+                toHashCode();
+    }
+
+}
@@ -1,6 +1,5 @@
 package sg.edu.nus.comp.codis.ast.theory;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import sg.edu.nus.comp.codis.ast.*;
 
@@ -19,31 +18,18 @@ public class UIFApplication extends Application {
     }
 
     @Override
-    public void accept(BottomUpVisitor visitor) {
-        for (Node arg : args) {
-            arg.accept(visitor);
-        }
+    protected void dispatch(BottomUpVisitor visitor) {
         visitor.visit(this);
     }
 
     @Override
-    public void accept(TopDownVisitor visitor) {
+    protected void dispatch(TopDownVisitor visitor) {
         visitor.visit(this);
-        for (Node arg : args) {
-            arg.accept(visitor);
-        }
     }
 
     @Override
-    public void accept(BottomUpMemoVisitor visitor) {
-        if (visitor.alreadyVisited(this)) {
-            visitor.visitAgain(this);
-        } else {
-            for (Node arg : args) {
-                arg.accept(visitor);
-            }
-            visitor.visit(this);
-        }
+    protected void dispatch(BottomUpMemoVisitor visitor) {
+        visitor.visit(this);
     }
 
 
@@ -57,37 +43,26 @@ public class UIFApplication extends Application {
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (!(obj instanceof UIFApplication))
-            return false;
-        if (obj == this)
-            return true;
+    public int getArity() {
+        return args.size();
+    }
 
-        UIFApplication rhs = (UIFApplication) obj;
-        return new EqualsBuilder().
-                append(UIF, rhs.UIF).
-                append(args, rhs.args).
-                isEquals();
+    @Override
+    public Node getArg(int index) {
+        return args.get(index);
     }
 
     @Override
-    public int hashCode() {
+    protected boolean equalsOperator(Application other) {
+        return other instanceof UIFApplication && UIF.equals(((UIFApplication) other).UIF);
+    }
+
+    @Override
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(UIF).
                 append(args).
                 toHashCode();
     }
 
-    @Override
-    public String toString() {
-        String argsString = "";
-        if (args.size() > 0) {
-            argsString += args.get(0);
-            for (int i=1; i<args.size(); i++) {
-                argsString += "," + args.get(i);
-            }
-        }
-        return UIF + "(" + argsString + ")";
-    }
-
 }
\ No newline at end of file
@@ -8,4 +8,17 @@ import sg.edu.nus.comp.codis.ast.Node;
  */
 public abstract class UnaryOp extends Application {
     public abstract Node getArg();
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public Node getArg(int index) {
+        if (index != 0) {
+            throw new IndexOutOfBoundsException("unary operator has no argument " + index);
+        }
+        return getArg();
+    }
 }
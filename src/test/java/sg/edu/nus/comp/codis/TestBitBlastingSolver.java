@@ -0,0 +1,214 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBitBlastingSolver {
+
+    private static Solver solver;
+
+    private static final int SIZE = 8;
+
+    @BeforeClass
+    public static void initSolver() {
+        solver = BitBlastingSolver.build();
+    }
+
+    @Test
+    public void testBitvectors() {
+        ArrayList<Node> clauses = new ArrayList<>();
+        ProgramVariable x = ProgramVariable.mkBV("x", 32);
+        ProgramVariable y = ProgramVariable.mkBV("y", 32);
+        clauses.add(new Equal(new BVAdd(x, y), BVConst.ofLong(5, 32)));
+        clauses.add(new Equal(y, BVConst.ofLong(2, 32)));
+        Optional<Map<Variable, Constant>> model = solver.getModel(clauses);
+        assertTrue(model.isPresent());
+        assertEquals(BVConst.ofLong(3, 32), model.get().get(x));
+    }
+
+    @Test
+    public void testMultiplicativeInverse() {
+        ArrayList<Node> clauses = new ArrayList<>();
+        ProgramVariable x = ProgramVariable.mkBV("x", SIZE);
+        clauses.add(new Equal(new BVMult(x, BVConst.ofLong(3, SIZE)), BVConst.ofLong(7, SIZE)));
+        Optional<Map<Variable, Constant>> model = solver.getModel(clauses);
+        assertTrue(model.isPresent());
+        assertEquals(BVConst.ofLong(173, SIZE), model.get().get(x));
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        ArrayList<Node> clauses = new ArrayList<>();
+        ProgramVariable x = ProgramVariable.mkBV("x", SIZE);
+        clauses.add(new BVUnsignedLess(x, BVConst.ofLong(3, SIZE)));
+        clauses.add(new BVSignedGreater(x, BVConst.ofLong(3, SIZE)));
+        assertFalse(solver.isSatisfiable(clauses));
+    }
+
+    @Test
+    public void testUnsatCore() {
+        ArrayList<Node> clauses = new ArrayList<>();
+        ProgramVariable x = ProgramVariable.mkBV("x", SIZE);
+        ProgramVariable y = ProgramVariable.mkBV("y", SIZE);
+        ProgramVariable a = ProgramVariable.mkBool("a");
+        ProgramVariable b = ProgramVariable.mkBool("b");
+        clauses.add(new Equal(x, BVConst.ofLong(1, SIZE)));
+        clauses.add(new Equal(y, BVConst.ofLong(2, SIZE)));
+        clauses.add(new Or(a, new Equal(x, y)));
+        clauses.add(new Or(b, new BVSignedLessOrEqual(x, y)));
+        ArrayList<Node> assumptions = new ArrayList<>();
+        assumptions.add(new Not(a));
+        assumptions.add(new Not(b));
+        Either<Map<Variable, Constant>, List<Node>> unsatCore = solver.getModelOrCore(clauses, assumptions);
+        assertTrue(unsatCore.isRight());
+        assertTrue(unsatCore.right().value().contains(new Not(a)));
+        assertFalse(unsatCore.right().value().contains(new Not(b)));
+    }
+
+    @Test
+    public void testModelUnderAssumptions() {
+        ArrayList<Node> clauses = new ArrayList<>();
+        ProgramVariable x = ProgramVariable.mkBV("x", SIZE);
+        ProgramVariable a = ProgramVariable.mkBool("a");
+        clauses.add(new Impl(a, new Equal(x, BVConst.ofLong(42, SIZE))));
+        ArrayList<Node> assumptions = new ArrayList<>();
+        assumptions.add(a);
+        Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(clauses, assumptions);
+        assertTrue(result.isLeft());
+        assertEquals(BVConst.ofLong(42, SIZE), result.left().value().get(x));
+        assertEquals(BoolConst.TRUE, result.left().value().get(a));
+    }
+
+    @Test
+    public void testRepeatedAssumptions() {
+        Selector selector = new Selector();
+        List<Node> assumptions = new ArrayList<>(Collections.nCopies(5, selector));
+        Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(new ArrayList<>(), assumptions);
+        assertTrue(result.isLeft());
+        assertEquals(BoolConst.TRUE, result.left().value().get(selector));
+
+        ProgramVariable a = ProgramVariable.mkBool("a");
+        assumptions = new ArrayList<>(Collections.nCopies(8, BoolConst.TRUE));
+        assumptions.addAll(Collections.nCopies(3, a));
+        assumptions.add(new Not(a));
+        result = solver.getModelOrCore(new ArrayList<>(), assumptions);
+        assertTrue(result.isRight());
+        assertTrue(result.right().value().contains(new Not(a)));
+    }
+
+    @Test
+    public void testDivisionByZero() {
+        BVConst zero = BVConst.ofLong(0, SIZE);
+        BVConst five = BVConst.ofLong(5, SIZE);
+        BVConst minusFive = BVConst.ofLong(-5 & 0xff, SIZE);
+        assertEquals(0xff, evaluate(new BVUnsignedDiv(five, zero)));
+        assertEquals(5, evaluate(new BVUnsignedRemainder(five, zero)));
+        assertEquals(0xff, evaluate(new BVSignedDiv(five, zero)));
+        assertEquals(1, evaluate(new BVSignedDiv(minusFive, zero)));
+        assertEquals(-5 & 0xff, evaluate(new BVSignedRemainder(minusFive, zero)));
+        assertEquals(-5 & 0xff, evaluate(new BVSignedModulo(minusFive, zero)));
+    }
+
+    @Test
+    public void testOperators() {
+        check(BVAdd::new, (a, b) -> a + b);
+        check(BVSub::new, (a, b) -> a - b);
+        check(BVMult::new, (a, b) -> a * b);
+        check(BVAnd::new, (a, b) -> a & b);
+        check(BVOr::new, (a, b) -> a | b);
+        check(BVXor::new, (a, b) -> a ^ b);
+        check(BVNand::new, (a, b) -> ~(a & b));
+        check(BVNor::new, (a, b) -> ~(a | b));
+        check(BVXnor::new, (a, b) -> ~(a ^ b));
+        check(BVUnsignedDiv::new, (a, b) -> b == 0 ? -1 : a / b);
+        check(BVUnsignedRemainder::new, (a, b) -> b == 0 ? a : a % b);
+        check(BVSignedDiv::new, (a, b) -> b == 0 ? (signed(a) < 0 ? 1 : -1) : signed(a) / signed(b));
+        check(BVSignedRemainder::new, (a, b) -> b == 0 ? a : signed(a) % signed(b));
+        check(BVSignedModulo::new, (a, b) -> b == 0 ? a : Math.floorMod(signed(a), signed(b)));
+        check(BVShiftLeft::new, (a, b) -> b >= SIZE ? 0 : a << b);
+        check(BVUnsignedShiftRight::new, (a, b) -> b >= SIZE ? 0 : a >> b);
+        check(BVSignedShiftRight::new, (a, b) -> signed(a) >> Math.min(b, SIZE - 1));
+        check(BVUnsignedLess::new, (a, b) -> a < b ? 1 : 0);
+        check(BVUnsignedLessOrEqual::new, (a, b) -> a <= b ? 1 : 0);
+        check(BVUnsignedGreater::new, (a, b) -> a > b ? 1 : 0);
+        check(BVUnsignedGreaterOrEqual::new, (a, b) -> a >= b ? 1 : 0);
+        check(BVSignedLess::new, (a, b) -> signed(a) < signed(b) ? 1 : 0);
+        check(BVSignedLessOrEqual::new, (a, b) -> signed(a) <= signed(b) ? 1 : 0);
+        check(BVSignedGreater::new, (a, b) -> signed(a) > signed(b) ? 1 : 0);
+        check(BVSignedGreaterOrEqual::new, (a, b) -> signed(a) >= signed(b) ? 1 : 0);
+    }
+
+    @Test
+    public void testInstantiatedClause() {
+        ProgramVariable x = ProgramVariable.mkBV("x", SIZE);
+        ProgramVariable y = ProgramVariable.mkBV("y", SIZE);
+        Node template = new Equal(y, new BVAdd(x, BVConst.ofLong(1, SIZE)));
+        ArrayList<Node> clauses = new ArrayList<>();
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, BVConst.ofLong(10 * i, SIZE));
+            TestCase test = new AssignmentTestCase(assignment, BVConst.ofLong(10 * i + 1, SIZE));
+            tests.add(test);
+            clauses.add(new InstantiatedClause(template, test));
+            clauses.add(new Equal(new TestInstance(x, test), BVConst.ofLong(10 * i, SIZE)));
+        }
+        Optional<Map<Variable, Constant>> model = solver.getModel(clauses);
+        assertTrue(model.isPresent());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(BVConst.ofLong(10 * i + 1, SIZE), model.get().get(new TestInstance(y, tests.get(i))));
+        }
+    }
+
+    private static long signed(long value) {
+        return (byte) value;
+    }
+
+    private void check(BiFunction<Node, Node, Node> operator, LongBinaryOperator expected) {
+        Random random = new Random(0);
+        for (int i = 0; i < 30; i++) {
+            long a = random.nextInt(1 << SIZE);
+            long b = (i < 10) ? i : random.nextInt(1 << SIZE);
+            if (i == 10) {
+                b = a;
+            }
+            Node application = operator.apply(BVConst.ofLong(a, SIZE), BVConst.ofLong(b, SIZE));
+            assertEquals(application.toString(), expected.applyAsLong(a, b) & 0xff, evaluate(application));
+        }
+    }
+
+    private long evaluate(Node term) {
+        ArrayList<Node> clauses = new ArrayList<>();
+        Optional<Map<Variable, Constant>> model;
+        if (TypeInference.typeOf(term).equals(BoolType.TYPE)) {
+            ProgramVariable result = ProgramVariable.mkBool("result");
+            clauses.add(new Iff(result, term));
+            model = solver.getModel(clauses);
+            assertTrue(model.isPresent());
+            return ((BoolConst) model.get().get(result)).getValue() ? 1 : 0;
+        }
+        ProgramVariable result = ProgramVariable.mkBV("result", SIZE);
+        clauses.add(new Equal(result, term));
+        model = solver.getModel(clauses);
+        assertTrue(model.isPresent());
+        return ((BVConst) model.get().get(result)).getLong();
+    }
+
+}
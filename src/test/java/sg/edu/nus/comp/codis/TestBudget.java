@@ -0,0 +1,119 @@
+package sg.edu.nus.comp.codis;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBudget {
+
+    private static Solver solver;
+
+    @BeforeClass
+    public static void initSolver() {
+        solver = BitBlastingSolver.build();
+    }
+
+    private final ProgramVariable x = ProgramVariable.mkBV("x", 8);
+    private final ProgramVariable y = ProgramVariable.mkBV("y", 8);
+
+    private List<TestCase> testSuite() {
+        List<TestCase> testSuite = new ArrayList<>();
+        int[][] inputs = { {1, 2}, {3, 4}, {10, 5} };
+        for (int[] input : inputs) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, BVConst.ofLong(input[0], 8));
+            assignment.put(y, BVConst.ofLong(input[1], 8));
+            testSuite.add(new AssignmentTestCase(assignment, BVConst.ofLong(input[0] + input[1], 8)));
+        }
+        return testSuite;
+    }
+
+    private Multiset<Node> components() {
+        Multiset<Node> components = HashMultiset.create();
+        components.add(x);
+        components.add(y);
+        components.add(new BVAdd(new Hole("i", new BVType(8), Node.class), new Hole("j", new BVType(8), Node.class)));
+        return components;
+    }
+
+    @Test
+    public void testExpired() {
+        Budget budget = Budget.ofMillis(0);
+        assertTrue(budget.isExhausted());
+        assertFalse(budget.isCancelled());
+        assertEquals(0, budget.remainingMillis());
+        try {
+            budget.check();
+            fail("budget is exhausted");
+        } catch (BudgetExhaustedException e) {
+            assertEquals("synthesis timed out", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCancelledParent() {
+        Budget parent = Budget.unlimited();
+        Budget child = parent.child(100000);
+        assertFalse(child.isExhausted());
+        parent.cancel();
+        assertTrue(child.isCancelled());
+        assertTrue(child.isExhausted());
+        assertEquals(0, child.remainingMillis());
+    }
+
+    @Test
+    public void testTwoParents() {
+        Budget first = Budget.unlimited();
+        Budget second = Budget.ofMillis(100000);
+        Budget child = first.child(second);
+        assertFalse(child.isExhausted());
+        assertTrue(child.remainingMillis() <= 100000);
+        second.cancel();
+        assertTrue(child.isCancelled());
+        assertFalse(first.isExhausted());
+        assertTrue(second.child(Budget.ofMillis(0)).isExhausted());
+    }
+
+    @Test
+    public void testTimedOut() {
+        Synthesis synthesizer = new CODISBuilder(solver, 2).build();
+        Budget budget = Budget.unlimited();
+        budget.cancel();
+        SynthesisResult result = synthesizer.synthesize(testSuite(), components(), budget);
+        assertTrue(result.isTimedOut());
+        assertFalse(result.isFound());
+        // the budget is only in effect for the call:
+        assertTrue(synthesizer.synthesize(testSuite(), components(), Budget.unlimited()).isFound());
+        assertTrue(synthesizer.synthesize(testSuite(), components()).isPresent());
+    }
+
+    @Test
+    public void testExhaustedBuilderBudget() {
+        Budget budget = Budget.unlimited();
+        budget.cancel();
+        Synthesis synthesizer = new CODISBuilder(solver, 2).setBudget(budget).build();
+        try {
+            synthesizer.synthesize(testSuite(), components());
+            fail();
+        } catch (BudgetExhaustedException e) {
+            // synthesis without its own budget reports exhaustion as an exception
+        }
+        assertTrue(synthesizer.synthesize(testSuite(), components(), budget).isTimedOut());
+        // the builder budget still applies when the call is given its own:
+        assertTrue(synthesizer.synthesize(testSuite(), components(), Budget.unlimited().child()).isTimedOut());
+    }
+
+}
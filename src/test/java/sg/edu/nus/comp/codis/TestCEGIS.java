@@ -0,0 +1,76 @@
+package sg.edu.nus.comp.codis;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.Add;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCEGIS {
+
+    @Test
+    public void testSelectDiverse() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        int[] outputs = { 0, 1, 1, 0, 2, 1 };
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < outputs.length; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(outputs[i])));
+        }
+        TestSuite suite = new TestSuite(tests);
+        BitSet failing = suite.all();
+        failing.clear(0);
+
+        BitSet expected = new BitSet();
+        expected.set(1);
+        expected.set(3);
+        expected.set(4);
+        assertEquals(expected, CEGIS.selectDiverse(suite, failing, 3));
+
+        expected.set(2);
+        assertEquals(expected, CEGIS.selectDiverse(suite, failing, 4));
+    }
+
+    @Test
+    public void testBudgetCoversChecking() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Program program = Program.leaf(new Component(new Add(x, IntConst.of(1))));
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(i + 1)));
+        }
+        Budget budget = Budget.unlimited();
+        Pair<Program, Map<Parameter, Constant>> candidate = new ImmutablePair<>(program, Collections.emptyMap());
+        // the budget runs out after the candidate is found, while it is checked:
+        Synthesis synthesizer = new Synthesis() {
+            @Override
+            public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite,
+                                                                                Multiset<Node> components) {
+                budget.cancel();
+                return Optional.of(candidate);
+            }
+
+            @Override
+            public List<Pair<Program, Map<Parameter, Constant>>> synthesizeAll(List<? extends TestCase> testSuite,
+                                                                               Multiset<Node> components) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        CEGIS cegis = new CEGIS(synthesizer, CounterexampleFinder.sequential(new EvaluationTester()));
+        SynthesisResult result = cegis.synthesize(tests, HashMultiset.create(), budget);
+        assertTrue(result.isTimedOut());
+        assertEquals(Optional.of(candidate), result.getProgram());
+    }
+
+}
@@ -0,0 +1,96 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Before;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCachingInterpolatingSolver {
+
+    /**
+     * Answers with the first left clause as interpolant if the right clauses mention a constant 0,
+     * otherwise with a model, and counts calls
+     */
+    private static class CountingSolver implements InterpolatingSolver {
+        private int calls = 0;
+
+        @Override
+        public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+            calls++;
+            for (Node clause : rightClauses) {
+                if (Traverse.collectByType(clause, IntConst.class).contains(IntConst.of(0))) {
+                    return Either.right(leftClauses.get(0));
+                }
+            }
+            Map<Variable, Constant> model = new HashMap<>();
+            for (Node clause : leftClauses) {
+                for (Variable variable : Traverse.collectByType(clause, Variable.class)) {
+                    model.put(variable, IntConst.of(1));
+                }
+            }
+            return Either.left(model);
+        }
+    }
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+    private final ProgramVariable a = ProgramVariable.mkInt("a");
+    private final ProgramVariable b = ProgramVariable.mkInt("b");
+
+    private CountingSolver counting;
+    private CachingInterpolatingSolver solver;
+
+    @Before
+    public void initSolver() {
+        counting = new CountingSolver();
+        solver = new CachingInterpolatingSolver(counting);
+    }
+
+    @Test
+    public void testRepeatedInterpolant() {
+        List<Node> left = Collections.singletonList(new Less(x, y));
+        List<Node> right = Collections.singletonList(new Equal(y, IntConst.of(0)));
+        Node interpolant = solver.getModelOrInterpolant(left, right).right().value();
+        Node cached = solver.getModelOrInterpolant(left, right).right().value();
+        assertEquals(1, counting.calls);
+        assertEquals(interpolant, cached);
+        Node renamed = solver.getModelOrInterpolant(Collections.singletonList(new Less(a, b)),
+                Collections.singletonList(new Equal(b, IntConst.of(0)))).right().value();
+        assertEquals(1, counting.calls);
+        assertEquals(new Less(a, b), renamed);
+        assertEquals(2, solver.getHits());
+        assertEquals(1, solver.getMisses());
+    }
+
+    @Test
+    public void testRepeatedModel() {
+        List<Node> left = Collections.singletonList(new Less(x, y));
+        List<Node> right = Collections.singletonList(new Equal(y, IntConst.of(2)));
+        Map<Variable, Constant> model = solver.getModelOrInterpolant(left, right).left().value();
+        Map<Variable, Constant> cached = solver.getModelOrInterpolant(left, right).left().value();
+        assertEquals(1, counting.calls);
+        assertEquals(model, cached);
+        assertEquals(1, solver.getHits());
+    }
+
+    @Test
+    public void testChangedQuery() {
+        List<Node> left = Collections.singletonList(new Less(x, y));
+        assertTrue(solver.getModelOrInterpolant(left,
+                Collections.singletonList(new Equal(y, IntConst.of(0)))).isRight());
+        assertTrue(solver.getModelOrInterpolant(left,
+                Collections.singletonList(new Equal(y, IntConst.of(2)))).isLeft());
+        assertTrue(solver.getModelOrInterpolant(Collections.singletonList(new Less(y, x)),
+                Collections.singletonList(new Equal(y, IntConst.of(0)))).isRight());
+        assertEquals(3, counting.calls);
+        assertEquals(0, solver.getHits());
+        assertEquals(3, solver.getMisses());
+    }
+
+}
@@ -0,0 +1,105 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Before;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCachingSolver {
+
+    /**
+     * Answers queries with fixed results and counts calls
+     */
+    private static class CountingSolver implements Solver {
+        private int calls = 0;
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            calls++;
+            return Either.right(assumptions.subList(0, 1));
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            calls++;
+            Map<Variable, Constant> model = new HashMap<>();
+            for (Node clause : clauses) {
+                for (Variable variable : Traverse.collectByType(clause, Variable.class)) {
+                    model.put(variable, IntConst.of(1));
+                }
+            }
+            return Optional.of(model);
+        }
+
+        @Override
+        public boolean isSatisfiable(List<Node> clauses) {
+            calls++;
+            return true;
+        }
+    }
+
+    private CountingSolver counting;
+    private CachingSolver solver;
+
+    @Before
+    public void initSolver() {
+        counting = new CountingSolver();
+        solver = new CachingSolver(counting, 2);
+    }
+
+    @Test
+    public void testAlphaEquivalence() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        ProgramVariable a = ProgramVariable.mkInt("a");
+        ProgramVariable b = ProgramVariable.mkInt("b");
+        List<Node> first = Arrays.asList(new Less(x, y), new Equal(y, IntConst.of(2)));
+        List<Node> second = Arrays.asList(new Equal(b, IntConst.of(2)), new Less(a, b));
+        Optional<Map<Variable, Constant>> model = solver.getModel(first);
+        Optional<Map<Variable, Constant>> renamed = solver.getModel(second);
+        assertEquals(1, counting.calls);
+        assertTrue(renamed.isPresent());
+        assertEquals(model.get().get(x), renamed.get().get(a));
+        assertEquals(2, renamed.get().size());
+        assertTrue(solver.isSatisfiable(second));
+        assertEquals(1, counting.calls);
+        assertEquals(2, solver.getHits());
+    }
+
+    @Test
+    public void testDifferentTypes() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable p = ProgramVariable.mkBool("p");
+        solver.isSatisfiable(Collections.singletonList(new Equal(x, x)));
+        solver.isSatisfiable(Collections.singletonList(new Equal(p, p)));
+        assertEquals(2, counting.calls);
+    }
+
+    @Test
+    public void testCore() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        List<Node> assumptions = Arrays.asList(new Equal(x, IntConst.of(1)), new Less(x, y));
+        List<Node> reordered = Arrays.asList(new Less(x, y), new Equal(x, IntConst.of(1)));
+        Either<Map<Variable, Constant>, List<Node>> core = solver.getModelOrCore(new ArrayList<>(), assumptions);
+        Either<Map<Variable, Constant>, List<Node>> cached = solver.getModelOrCore(new ArrayList<>(), reordered);
+        assertEquals(1, counting.calls);
+        assertEquals(core.right().value(), cached.right().value());
+    }
+
+    @Test
+    public void testEviction() {
+        for (int i = 0; i < 3; i++) {
+            solver.isSatisfiable(Collections.singletonList(new Equal(ProgramVariable.mkInt("x"), IntConst.of(i))));
+        }
+        solver.isSatisfiable(Collections.singletonList(new Equal(ProgramVariable.mkInt("x"), IntConst.of(0))));
+        assertEquals(4, counting.calls);
+    }
+
+}
@@ -0,0 +1,98 @@
+package sg.edu.nus.comp.codis;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import fj.data.Either;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCoreInterpolatingSolver {
+
+    private static InterpolatingSolver iSolver;
+
+    private static Solver solver;
+
+    @BeforeClass
+    public static void initSolver() {
+        solver = BitBlastingSolver.build();
+        iSolver = new CoreInterpolatingSolver(solver, true);
+    }
+
+    private final ProgramVariable x = ProgramVariable.mkBV("x", 8);
+    private final ProgramVariable y = ProgramVariable.mkBV("y", 8);
+    private final ProgramVariable z = ProgramVariable.mkBV("z", 8);
+
+    @Test
+    public void testInterpolant() {
+        List<Node> a = new ArrayList<>();
+        a.add(new Equal(x, BVConst.ofLong(1, 8)));
+        a.add(new Equal(y, BVConst.ofLong(5, 8)));
+        List<Node> b = new ArrayList<>();
+        b.add(new Equal(z, new BVAdd(x, BVConst.ofLong(1, 8))));
+        b.add(new Equal(z, BVConst.ofLong(3, 8)));
+        Either<Map<Variable, Constant>, Node> result = iSolver.getModelOrInterpolant(a, b);
+        assertTrue(result.isRight());
+        Node interpolant = result.right().value();
+        assertTrue(interpolant.contains(x));
+        assertFalse(interpolant.contains(y));
+
+        List<Node> implication = new ArrayList<>(a);
+        implication.add(new Not(interpolant));
+        assertFalse(solver.isSatisfiable(implication));
+        List<Node> inconsistency = new ArrayList<>(b);
+        inconsistency.add(interpolant);
+        assertFalse(solver.isSatisfiable(inconsistency));
+    }
+
+    @Test
+    public void testModel() {
+        List<Node> a = new ArrayList<>();
+        a.add(new Equal(x, BVConst.ofLong(2, 8)));
+        List<Node> b = new ArrayList<>();
+        b.add(new Equal(z, new BVAdd(x, BVConst.ofLong(1, 8))));
+        Either<Map<Variable, Constant>, Node> result = iSolver.getModelOrInterpolant(a, b);
+        assertTrue(result.isLeft());
+        assertEquals(BVConst.ofLong(3, 8), result.left().value().get(z));
+        assertFalse(result.left().value().keySet().stream().anyMatch(v -> v instanceof Selector));
+    }
+
+    @Test
+    public void testSynthesis() {
+        Hole i = new Hole("i", new BVType(8), Node.class);
+        Hole j = new Hole("j", new BVType(8), Node.class);
+        Multiset<Node> components = HashMultiset.create();
+        components.add(x, 2);
+        components.add(y);
+        components.add(new BVAdd(i, j));
+        components.add(new BVMult(i, j));
+
+        List<TestCase> testSuite = new ArrayList<>();
+        int[][] inputs = { {1, 2}, {3, 4}, {10, 5} };
+        for (int[] input : inputs) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, BVConst.ofLong(input[0], 8));
+            assignment.put(y, BVConst.ofLong(input[1], 8));
+            testSuite.add(new AssignmentTestCase(assignment, BVConst.ofLong(input[0] * input[1] + input[0], 8)));
+        }
+
+        Synthesis synthesizer = new CODISBuilder(solver, 3).build();
+        Optional<Pair<Program, Map<Parameter, Constant>>> result = synthesizer.synthesize(testSuite, components);
+        assertTrue(result.isPresent());
+        Program program = result.get().getLeft();
+        assertTrue(new EvaluationTester().getFailing(program, result.get().getRight(), testSuite).isEmpty());
+    }
+
+}
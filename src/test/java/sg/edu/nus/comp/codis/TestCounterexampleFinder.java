@@ -0,0 +1,169 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.Add;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCounterexampleFinder {
+
+    private static ForkJoinPool pool;
+
+    private static final ProgramVariable x = ProgramVariable.mkInt("x");
+
+    private static final Program program = Program.leaf(new Component(new Add(x, IntConst.of(1))));
+
+    private static TestSuite suite;
+
+    @BeforeClass
+    public static void initPool() {
+        pool = new ForkJoinPool(4);
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(i == 13 || i == 31 ? 0 : i + 1)));
+        }
+        suite = new TestSuite(tests);
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testExactScore() {
+        CounterexampleFinder finder = new CounterexampleFinder(EvaluationTester::new, pool, 3);
+        CounterexampleFinder.Result result = finder.find(program, Collections.emptyMap(), suite, suite.all(), true);
+        assertEquals(OptionalInt.of(13), result.getCounterexample());
+        assertTrue(result.isExhaustive());
+        assertEquals(38, result.getPassing().cardinality());
+    }
+
+    @Test
+    public void testFirstFailure() {
+        CounterexampleFinder finder = new CounterexampleFinder(EvaluationTester::new, pool, 3);
+        BitSet lanes = suite.all();
+        lanes.clear(13);
+        CounterexampleFinder.Result result = finder.find(program, Collections.emptyMap(), suite, lanes, false);
+        assertEquals(OptionalInt.of(31), result.getCounterexample());
+        lanes.clear(31);
+        result = finder.find(program, Collections.emptyMap(), suite, lanes, false);
+        assertFalse(result.getCounterexample().isPresent());
+        assertEquals(lanes, result.getPassing());
+    }
+
+    @Test
+    public void testSequentialFirstFailure() {
+        AtomicInteger checked = new AtomicInteger();
+        EvaluationTester evaluationTester = new EvaluationTester();
+        Tester tester = (p, v, t) -> {
+            checked.incrementAndGet();
+            return evaluationTester.isPassing(p, v, t);
+        };
+        CounterexampleFinder finder = CounterexampleFinder.sequential(tester);
+        CounterexampleFinder.Result result = finder.find(program, Collections.emptyMap(), suite, suite.all(), false);
+        assertEquals(OptionalInt.of(13), result.getCounterexample());
+        assertFalse(result.isExhaustive());
+        assertTrue(checked.get() < suite.size());
+        assertEquals(checked.get(), result.getPassing().cardinality() + 1);
+
+        checked.set(0);
+        result = finder.find(program, Collections.emptyMap(), suite, suite.all(), true);
+        assertEquals(OptionalInt.of(13), result.getCounterexample());
+        assertTrue(result.isExhaustive());
+        assertEquals(suite.size(), checked.get());
+    }
+
+    @Test(expected = BudgetExhaustedException.class)
+    public void testExhaustedBudget() {
+        Budget budget = Budget.unlimited();
+        budget.cancel();
+        CounterexampleFinder finder = new CounterexampleFinder(EvaluationTester::new, pool, 3);
+        finder.find(program, Collections.emptyMap(), suite, suite.all(), true, budget);
+    }
+
+    @Test
+    public void testSequentialBudget() {
+        Budget budget = Budget.unlimited();
+        AtomicInteger checked = new AtomicInteger();
+        EvaluationTester evaluationTester = new EvaluationTester();
+        Tester tester = (p, v, t) -> {
+            if (checked.incrementAndGet() == 5) {
+                budget.cancel();
+            }
+            return evaluationTester.isPassing(p, v, t);
+        };
+        CounterexampleFinder finder = CounterexampleFinder.sequential(tester);
+        try {
+            finder.find(program, Collections.emptyMap(), suite, suite.all(), true, budget);
+            fail();
+        } catch (BudgetExhaustedException e) {
+            assertTrue(checked.get() < suite.size());
+        }
+    }
+
+    @Test
+    public void testClose() {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        CounterexampleFinder finder = new CounterexampleFinder(() -> {
+            created.incrementAndGet();
+            return new EvaluationTester();
+        }, tester -> released.incrementAndGet(), pool, 3);
+        try (CounterexampleFinder closing = finder) {
+            closing.find(program, Collections.emptyMap(), suite, suite.all(), true);
+        }
+        assertTrue(created.get() > 0);
+        assertEquals(created.get(), released.get());
+        CounterexampleFinder.Result result = finder.find(program, Collections.emptyMap(), suite, suite.all(), true);
+        assertEquals(OptionalInt.of(13), result.getCounterexample());
+        finder.close();
+        assertEquals(created.get(), released.get());
+    }
+
+    @Test
+    public void testExclusiveTesters() {
+        AtomicInteger shared = new AtomicInteger();
+        CounterexampleFinder finder = new CounterexampleFinder(() -> {
+            AtomicInteger users = new AtomicInteger();
+            CompiledTester compiledTester = new CompiledTester();
+            return new Tester() {
+                @Override
+                public boolean isPassing(Program p, Map<Parameter, Constant> v, TestCase t) {
+                    return compiledTester.isPassing(p, v, t);
+                }
+
+                @Override
+                public BitSet getPassing(Program p, Map<Parameter, Constant> v, TestSuite s, BitSet l) {
+                    if (users.incrementAndGet() > 1) {
+                        shared.incrementAndGet();
+                    }
+                    try {
+                        return compiledTester.getPassing(p, v, s, l);
+                    } finally {
+                        users.decrementAndGet();
+                    }
+                }
+            };
+        }, pool, 1);
+        for (int i = 0; i < 20; i++) {
+            CounterexampleFinder.Result result = finder.find(program, Collections.emptyMap(), suite, suite.all(), true);
+            assertEquals(38, result.getPassing().cardinality());
+        }
+        assertEquals(0, shared.get());
+    }
+
+}
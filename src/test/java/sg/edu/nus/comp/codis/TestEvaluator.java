@@ -0,0 +1,133 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestEvaluator {
+
+    private static Constant evaluate(Node node) {
+        return Evaluator.evaluate(node, Collections.emptyMap());
+    }
+
+    @Test
+    public void testIntegerDivision() {
+        assertEquals(IntConst.of(-4), evaluate(new Div(IntConst.of(-7), IntConst.of(2))));
+        assertEquals(IntConst.of(4), evaluate(new Div(IntConst.of(-7), IntConst.of(-2))));
+        assertEquals(IntConst.of(-3), evaluate(new Div(IntConst.of(7), IntConst.of(-2))));
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Node guarded = new ITE(new Equal(x, IntConst.of(0)), IntConst.of(0), new Div(IntConst.of(10), x));
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(0));
+        assertEquals(IntConst.of(0), Evaluator.evaluate(guarded, assignment));
+    }
+
+    @Test
+    public void testIntegerOverflow() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Node cube = new Mult(x, new Mult(x, x));
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(Integer.MAX_VALUE));
+        try {
+            Evaluator.evaluate(cube, assignment);
+            fail("overflow is undefined");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+        Map<ProgramVariable, Node> small = new HashMap<>();
+        small.put(x, IntConst.of(-3));
+        assertEquals(IntConst.of(-27), Evaluator.evaluate(cube, small));
+
+        TestSuite suite = new TestSuite(Arrays.asList(
+                new AssignmentTestCase(small, IntConst.of(-27)),
+                new AssignmentTestCase(assignment, IntConst.of(0))));
+        BitSet undefined = new BitSet();
+        long[] values = new Evaluator(cube).evaluate(suite, undefined);
+        assertEquals(-27, values[0]);
+        assertEquals(Collections.singleton(1), undefined.stream().boxed().collect(Collectors.toSet()));
+
+        // the overflowing test is decided by the fallback tester:
+        Program program = Program.leaf(new Component(cube));
+        Tester accepting = (p, v, test) -> true;
+        assertEquals(suite.all(), new EvaluationTester(accepting).getPassing(program, Collections.emptyMap(), suite, suite.all()));
+        assertEquals(suite.all(), new CompiledTester(accepting).getPassing(program, Collections.emptyMap(), suite, suite.all()));
+        assertEquals(Collections.singletonList(suite.get(1)),
+                new EvaluationTester().getFailing(program, Collections.emptyMap(), suite.getTests()));
+    }
+
+    @Test
+    public void testBitvectors() {
+        BVConst minusSeven = BVConst.ofLong(0xF9, 8);
+        BVConst two = BVConst.ofLong(2, 8);
+        assertEquals(BVConst.ofLong(0xFD, 8), evaluate(new BVSignedDiv(minusSeven, two)));
+        assertEquals(BVConst.ofLong(0xFF, 8), evaluate(new BVSignedRemainder(minusSeven, two)));
+        assertEquals(BVConst.ofLong(1, 8), evaluate(new BVSignedModulo(minusSeven, two)));
+        assertEquals(BVConst.ofLong(0xFF, 8), evaluate(new BVUnsignedDiv(two, BVConst.ofLong(0, 8))));
+        assertEquals(BVConst.ofLong(0xFE, 8), evaluate(new BVSignedShiftRight(minusSeven, two)));
+        assertEquals(BoolConst.TRUE, evaluate(new BVSignedLess(minusSeven, two)));
+        assertEquals(BoolConst.FALSE, evaluate(new BVUnsignedLess(minusSeven, two)));
+        assertEquals(new BVConst(new BigInteger("FFFFFFFFFFFFFFFF", 16), 64),
+                evaluate(new BVNot(BVConst.ofLong(0, 64))));
+    }
+
+    @Test
+    public void testFailingTests() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Program program = Program.leaf(new Component(new Add(x, IntConst.of(1))));
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(i == 2 ? 0 : i + 1)));
+        }
+        List<TestCase> failing = new EvaluationTester().getFailing(program, Collections.emptyMap(), tests);
+        assertEquals(Collections.singletonList(tests.get(2)), failing);
+    }
+
+    @Test
+    public void testColumnarEvaluation() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        Node node = new ITE(new Greater(x, IntConst.of(0)), new Div(IntConst.of(6), x), new Minus(x));
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = -2; i <= 3; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(i == 2 ? 4 : (i > 0 ? 6 / i : -i))));
+        }
+        Map<ProgramVariable, Node> unassigned = new HashMap<>();
+        unassigned.put(y, IntConst.of(0));
+        tests.add(new AssignmentTestCase(unassigned, IntConst.of(0)));
+        TestSuite suite = new TestSuite(tests);
+
+        BitSet undefined = new BitSet();
+        long[] values = new Evaluator(node).evaluate(suite, undefined);
+        assertEquals(Collections.singleton(6), undefined.stream().boxed().collect(Collectors.toSet()));
+        for (int lane = 0; lane < 6; lane++) {
+            AssignmentTestCase test = (AssignmentTestCase) suite.get(lane);
+            assertEquals(Evaluator.evaluate(node, test.getAssignment()), IntConst.of((int) values[lane]));
+        }
+
+        Program program = Program.leaf(new Component(node));
+        BitSet lanes = suite.all();
+        lanes.clear(6);
+        BitSet passing = new EvaluationTester().getPassing(program, Collections.emptyMap(), suite, lanes);
+        BitSet expected = (BitSet) lanes.clone();
+        expected.clear(4);
+        assertEquals(expected, passing);
+    }
+
+}
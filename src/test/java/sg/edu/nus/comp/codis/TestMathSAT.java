@@ -6,6 +6,7 @@ import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -71,4 +72,144 @@ public class TestMathSAT {
         assertEquals(model.get().get(x), BVConst.ofLong(3, 32));
     }
 
+    @Test
+    public void testIncremental() {
+        IncrementalSolver incrementalSolver = MathSAT.buildIncrementalSolver();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        ArrayList<Node> background = new ArrayList<>();
+        background.add(new Equal(x, new Add(y, IntConst.of(1))));
+        incrementalSolver.assertClauses(background);
+
+        ArrayList<Node> first = new ArrayList<>();
+        first.add(new Equal(y, IntConst.of(2)));
+        incrementalSolver.push();
+        incrementalSolver.assertClauses(first);
+        assertTrue(incrementalSolver.check());
+        assertEquals(incrementalSolver.getModel().get(x), IntConst.of(3));
+        incrementalSolver.pop();
+
+        ArrayList<Node> second = new ArrayList<>();
+        second.add(new Equal(x, y));
+        incrementalSolver.push();
+        incrementalSolver.assertClauses(second);
+        assertFalse(incrementalSolver.check());
+        incrementalSolver.pop();
+
+        assertTrue(incrementalSolver.isSatisfiable(first));
+        assertFalse(incrementalSolver.isSatisfiable(second));
+    }
+
+    @Test
+    public void testOneShotInsideBacktrackPoint() {
+        assertFalse(MathSAT.buildSolver() instanceof IncrementalSolver);
+        MathSAT mathsat = (MathSAT) MathSAT.buildSolver();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ArrayList<Node> background = new ArrayList<>();
+        background.add(new Equal(x, IntConst.of(1)));
+        ArrayList<Node> query = new ArrayList<>();
+        query.add(new Equal(x, IntConst.of(2)));
+        mathsat.push();
+        mathsat.assertClauses(background);
+        assertFalse(mathsat.isSatisfiable(query));
+        assertTrue(mathsat.check());
+        mathsat.pop();
+        assertTrue(mathsat.isSatisfiable(query));
+    }
+
+    @Test
+    public void testTranslationCache() {
+        MathSAT mathsat = (MathSAT) MathSAT.buildIncrementalSolver();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        ArrayList<Node> clauses = new ArrayList<>();
+        clauses.add(new Equal(new Add(x, y), IntConst.of(3)));
+        clauses.add(new Less(new Add(x, y), IntConst.of(4)));
+        assertTrue(mathsat.isSatisfiable(clauses));
+        long hits = mathsat.getTranslationCacheHits();
+        assertTrue(hits > 0);
+        Optional<Map<Variable, Constant>> model = mathsat.getModel(clauses);
+        assertTrue(model.isPresent());
+        assertTrue(model.get().containsKey(x));
+        assertTrue(mathsat.getTranslationCacheHits() > hits);
+    }
+
+    @Test
+    public void testTranslationCacheCapacity() {
+        MathSAT mathsat = (MathSAT) MathSAT.buildIncrementalSolver();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        ArrayList<Node> clauses = new ArrayList<>();
+        clauses.add(new Equal(new Add(x, y), IntConst.of(3)));
+        assertTrue(mathsat.isSatisfiable(clauses));
+        int size = mathsat.getTranslationCacheSize();
+        assertTrue(size > 0);
+        mathsat.setTranslationCacheCapacity(size);
+        assertTrue(mathsat.isSatisfiable(clauses));
+        assertEquals(size, mathsat.getTranslationCacheSize());
+        clauses.add(new Less(new Sub(x, y), IntConst.of(4)));
+        assertTrue(mathsat.isSatisfiable(clauses));
+        assertEquals(0, mathsat.getTranslationCacheSize());
+    }
+
+    @Test
+    public void testTranslationCacheCapacityAtBaseLevel() {
+        IncrementalSolver incremental = MathSAT.buildIncrementalSolver();
+        MathSAT mathsat = (MathSAT) incremental;
+        mathsat.setTranslationCacheCapacity(4);
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        for (int i = 0; i < 10; i++) {
+            ArrayList<Node> clauses = new ArrayList<>();
+            clauses.add(new Less(new Add(x, IntConst.of(i)), IntConst.of(100)));
+            incremental.assertClauses(clauses);
+            assertTrue(mathsat.getTranslationCacheSize() <= 4);
+        }
+        assertTrue(incremental.check());
+    }
+
+    @Test
+    public void testInstantiatedClauseModel() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        Node template = new Equal(y, new Add(x, IntConst.of(1)));
+        IncrementalSolver incremental = MathSAT.buildIncrementalSolver();
+        List<TestCase> tests = new ArrayList<>();
+        List<Node> clauses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(10 * i));
+            TestCase test = new AssignmentTestCase(assignment, IntConst.of(10 * i + 1));
+            tests.add(test);
+            clauses.add(new InstantiatedClause(template, test));
+            clauses.add(new Equal(new TestInstance(x, test), IntConst.of(10 * i)));
+        }
+        incremental.push();
+        incremental.assertClauses(clauses);
+        assertTrue(incremental.check());
+        Map<Variable, Constant> model = incremental.getModel();
+        incremental.pop();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(IntConst.of(10 * i + 1), model.get(new TestInstance(y, tests.get(i))));
+            assertEquals(IntConst.of(10 * i), model.get(new TestInstance(x, tests.get(i))));
+        }
+    }
+
+    @Test
+    public void testBudgetRestored() {
+        MathSAT mathsat = (MathSAT) solver;
+        Budget outer = mathsat.getBudget();
+        Budget exhausted = Budget.unlimited();
+        exhausted.cancel();
+        List<Node> clauses = new ArrayList<>();
+        clauses.add(new Equal(ProgramVariable.mkInt("x"), IntConst.of(1)));
+        try {
+            mathsat.withBudget(exhausted, () -> mathsat.isSatisfiable(clauses));
+            Assert.fail("budget is exhausted");
+        } catch (BudgetExhaustedException e) {
+            assertEquals("synthesis cancelled", e.getMessage());
+        }
+        assertTrue(mathsat.getBudget() == outer);
+        assertTrue(mathsat.isSatisfiable(clauses));
+    }
+
 }
@@ -0,0 +1,78 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TestNode {
+
+    private static ProgramVariable counting(String name, Type type, AtomicInteger hashes, AtomicInteger types) {
+        return new ProgramVariable(name, type) {
+            @Override
+            protected int computeHashCode() {
+                hashes.incrementAndGet();
+                return 0;
+            }
+
+            @Override
+            public Type getType() {
+                types.incrementAndGet();
+                return super.getType();
+            }
+        };
+    }
+
+    @Test
+    public void testCachedHashCode() {
+        AtomicInteger hashes = new AtomicInteger();
+        ProgramVariable x = counting("x", IntType.TYPE, hashes, new AtomicInteger());
+        Node sum = new Add(x, IntConst.of(1));
+        int hash = sum.hashCode();
+        assertEquals(hash, sum.hashCode());
+        assertEquals(0, x.hashCode()); // zero hash codes are cached too
+        assertEquals(1, hashes.get());
+        assertEquals(hash, new Add(x, IntConst.of(1)).hashCode());
+        assertNotEquals(hash, new Add(IntConst.of(1), x).hashCode());
+        assertEquals(1, hashes.get());
+    }
+
+    @Test
+    public void testDeepHashCode() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Node left = x;
+        Node right = x;
+        for (int i = 0; i < 100000; i++) {
+            left = new Add(left, IntConst.of(i));
+            right = new Add(right, IntConst.of(i));
+        }
+        assertEquals(left.hashCode(), right.hashCode());
+    }
+
+    @Test
+    public void testCachedType() {
+        AtomicInteger types = new AtomicInteger();
+        ProgramVariable x = counting("x", new BVType(8), new AtomicInteger(), types);
+        Node middle = x;
+        for (int i = 0; i < 1000; i++) {
+            middle = new BVAdd(middle, BVConst.ofLong(i, 8));
+        }
+        Node root = middle;
+        for (int i = 0; i < 100000; i++) {
+            root = new BVMult(root, BVConst.ofLong(i, 8));
+        }
+        int before = types.get();
+        assertEquals(new BVType(8), TypeInference.typeOf(root));
+        int inferred = types.get();
+        assertEquals(new BVType(8), TypeInference.typeOf(root));
+        assertEquals(new BVType(8), TypeInference.typeOf(middle));
+        assertEquals(inferred, types.get());
+        assertEquals(BoolType.TYPE, TypeInference.typeOf(new BVUnsignedLess(middle, x)));
+        assertEquals(1, inferred - before);
+    }
+
+}
@@ -0,0 +1,116 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestNodeArena {
+
+    @Test
+    public void testRoundTrip() {
+        ProgramVariable x = ProgramVariable.mkBV("x", 8);
+        ProgramVariable p = ProgramVariable.mkBool("p");
+        Node sum = new BVAdd(x, BVConst.ofLong(1, 8));
+        Node node = new And(new ITE(p, new Equal(sum, x), BoolConst.FALSE), new BVSignedLess(sum, x));
+        NodeArena arena = new NodeArena();
+        int entry = arena.add(node);
+        assertEquals(node, arena.toNode(entry));
+        assertEquals(9, arena.size());
+        assertEquals(2, arena.getVariables(entry).size());
+        And rebuilt = (And) arena.toNode(entry);
+        assertSame(((BinaryOp) ((ITE) rebuilt.getLeft()).getThenBranch()).getLeft(),
+                ((BinaryOp) rebuilt.getRight()).getLeft());
+    }
+
+    @Test
+    public void testSortingNetwork() {
+        List<Selector> bits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            bits.add(new Selector());
+        }
+        Solver solver = BitBlastingSolver.build();
+        List<Node> network = Cardinality.SortingNetwork.atMostK(2, bits);
+        assertTrue(network.get(0) instanceof ArenaNode);
+
+        List<Node> clauses = new ArrayList<>(network);
+        clauses.add(bits.get(0));
+        clauses.add(bits.get(3));
+        assertTrue(solver.isSatisfiable(clauses));
+        clauses.add(bits.get(4));
+        assertFalse(solver.isSatisfiable(clauses));
+    }
+
+    @Test
+    public void testVariablesUnderLeaves() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        ProgramVariable z = ProgramVariable.mkInt("z");
+        ArrayList<Type> argTypes = new ArrayList<>();
+        argTypes.add(IntType.TYPE);
+        ArrayList<Node> args = new ArrayList<>();
+        args.add(y);
+        Node application = new UIFApplication(new UIF("f", IntType.TYPE, argTypes), args);
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(z, IntConst.of(0));
+        TestCase test = new AssignmentTestCase(assignment, IntConst.of(0));
+        Node clause = new InstantiatedClause(new Equal(z, IntConst.of(0)), test);
+        NodeArena arena = new NodeArena();
+        int entry = arena.add(new And(new Equal(x, application), clause));
+        HashSet<Variable> expected = new HashSet<>();
+        expected.add(x);
+        expected.add(y);
+        expected.add(new TestInstance(z, test));
+        assertEquals(expected, new HashSet<>(arena.getVariables(entry)));
+    }
+
+    @Test
+    public void testScanningAllRootsIsLinear() {
+        List<Selector> bits = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            bits.add(new Selector());
+        }
+        List<Node> network = Cardinality.SortingNetwork.atMostK(2, bits);
+        NodeArena arena = ((ArenaNode) network.get(0)).getArena();
+        BitSet scanned = new BitSet(arena.size());
+        Set<Variable> variables = new HashSet<>();
+        int count = 0;
+        for (Node root : network) {
+            count += arena.collectVariables(((ArenaNode) root).getEntry(), scanned, variables);
+        }
+        assertTrue(count <= arena.size());
+        assertTrue(variables.containsAll(bits));
+        for (Node root : network) {
+            arena.toNode(((ArenaNode) root).getEntry());
+        }
+        int last = ((ArenaNode) network.get(network.size() - 1)).getEntry();
+        assertEquals(new HashSet<>(arena.getVariables(last)),
+                new HashSet<>(Traverse.collectByType(arena.toNode(last), Variable.class)));
+    }
+
+    @Test
+    public void testUnfoldingIsShared() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        NodeArena arena = new NodeArena();
+        int sum = arena.apply(NodeArena.Op.ADD, arena.leaf(x), arena.leaf(y));
+        int first = arena.apply(NodeArena.Op.EQUAL, sum, arena.leaf(IntConst.of(1)));
+        int second = arena.apply(NodeArena.Op.LESS, sum, arena.leaf(IntConst.of(2)));
+        assertEquals(new Equal(new Add(x, y), IntConst.of(1)), arena.toNode(first));
+        assertSame(((BinaryOp) arena.toNode(first)).getLeft(), ((BinaryOp) arena.toNode(second)).getLeft());
+        assertSame(arena.toNode(second), arena.toNode(second));
+    }
+
+}
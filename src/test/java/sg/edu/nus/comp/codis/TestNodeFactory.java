@@ -0,0 +1,75 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class TestNodeFactory {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+
+    @Test
+    public void testStructurallyEqualNodesAreShared() {
+        Node first = NodeFactory.intern(new Add(new Mult(x, IntConst.of(2)), y));
+        Node second = NodeFactory.intern(new Add(new Mult(x, IntConst.of(2)), y));
+        assertTrue(first.isInterned());
+        assertSame(first, second);
+        assertSame(((Add) first).getLeft(), ((Add) second).getLeft());
+    }
+
+    @Test
+    public void testDistinctNodes() {
+        Node first = NodeFactory.intern(new Add(x, y));
+        Node second = NodeFactory.intern(new Add(y, x));
+        assertNotSame(first, second);
+        assertNotEquals(first, second);
+        assertEquals(first, new Add(x, y));
+    }
+
+    @Test
+    public void testTransformInterns() {
+        Map<Variable, Node> mapping = new HashMap<>();
+        mapping.put(y, new Minus(x));
+        Node substituted = Traverse.substitute(new Equal(y, IntConst.of(1)), mapping);
+        assertTrue(substituted.isInterned());
+        assertSame(substituted, NodeFactory.intern(new Equal(new Minus(x), IntConst.of(1))));
+    }
+
+    @Test
+    public void testConcurrentInterning() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<Node[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                Node[] nodes = new Node[200];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = NodeFactory.intern(new Add(new Mult(x, IntConst.of(i)), new Minus(y)));
+                }
+                return nodes;
+            }));
+        }
+        Node[] first = futures.get(0).get();
+        for (Future<Node[]> future : futures) {
+            Node[] nodes = future.get();
+            for (int i = 0; i < nodes.length; i++) {
+                assertTrue(nodes[i].isInterned());
+                assertSame(first[i], nodes[i]);
+                assertSame(((Add) first[i]).getRight(), ((Add) nodes[i]).getRight());
+            }
+        }
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,78 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelEncoder {
+
+    @Test
+    public void testDeterministicOrder() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramOutput output = new ProgramOutput(IntType.TYPE);
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(2 * i)));
+        }
+        Node template = new Equal(output, new Add(x, x));
+        Function<TestCase, List<Node>> block = test -> {
+            List<Node> clauses = new ArrayList<>();
+            clauses.add(new InstantiatedClause(template, test));
+            for (Node constraint : test.getConstraints(output)) {
+                clauses.add(constraint.instantiate(test));
+            }
+            return clauses;
+        };
+        List<Node> expected = ParallelEncoder.sequential().encode(tests, block);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, new ParallelEncoder(pool, 1).encode(tests, block));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(150, expected.size());
+    }
+
+    @Test
+    public void testBlocksOverlap() {
+        // each block waits for the other one, so encoding completes in time only if blocks are built concurrently:
+        CountDownLatch started = new CountDownLatch(2);
+        List<Boolean> overlapped = new ArrayList<>();
+        Function<Integer, List<Node>> block = i -> {
+            started.countDown();
+            try {
+                boolean both = started.await(10, TimeUnit.SECONDS);
+                synchronized (overlapped) {
+                    overlapped.add(both);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Collections.singletonList(IntConst.of(i));
+        };
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<Node> clauses = new ParallelEncoder(pool, 1).encode(Arrays.asList(0, 1), block);
+            assertEquals(Arrays.asList(IntConst.of(0), IntConst.of(1)), clauses);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(Arrays.asList(true, true), overlapped);
+    }
+
+}
@@ -0,0 +1,127 @@
+package sg.edu.nus.comp.codis;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestPortfolioSynthesis {
+
+    private static class FixedSynthesis implements Synthesis {
+        private final CountDownLatch ready;
+        private final Optional<Pair<Program, Map<Parameter, Constant>>> result;
+
+        FixedSynthesis(CountDownLatch ready, Optional<Pair<Program, Map<Parameter, Constant>>> result) {
+            this.ready = ready;
+            this.result = result;
+        }
+
+        @Override
+        public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<? extends TestCase> testSuite,
+                                                                            Multiset<Node> components) {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                return Optional.empty();
+            }
+            return result;
+        }
+
+        @Override
+        public List<Pair<Program, Map<Parameter, Constant>>> synthesizeAll(List<? extends TestCase> testSuite,
+                                                                           Multiset<Node> components) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Runs until interrupted, reporting the budget it was given
+     */
+    private static class BlockingSynthesis extends FixedSynthesis {
+        private final CountDownLatch started;
+        private final AtomicReference<Budget> budget;
+
+        BlockingSynthesis(CountDownLatch started, AtomicReference<Budget> budget) {
+            super(new CountDownLatch(1), Optional.empty());
+            this.started = started;
+            this.budget = budget;
+        }
+
+        @Override
+        public SynthesisResult synthesize(List<? extends TestCase> testSuite, Multiset<Node> components, Budget budget) {
+            this.budget.set(budget);
+            started.countDown();
+            return super.synthesize(testSuite, components, budget);
+        }
+    }
+
+    /**
+     * Times out with the given partial program
+     */
+    private static class TimedOutSynthesis extends FixedSynthesis {
+        private final Optional<Pair<Program, Map<Parameter, Constant>>> partial;
+
+        TimedOutSynthesis(Optional<Pair<Program, Map<Parameter, Constant>>> partial) {
+            super(new CountDownLatch(0), Optional.empty());
+            this.partial = partial;
+        }
+
+        @Override
+        public SynthesisResult synthesize(List<? extends TestCase> testSuite, Multiset<Node> components, Budget budget) {
+            return SynthesisResult.timedOut(partial);
+        }
+    }
+
+    private static Optional<Pair<Program, Map<Parameter, Constant>>> leaf(Node node) {
+        return Optional.of(new ImmutablePair<>(Program.leaf(new Component(node)), new HashMap<>()));
+    }
+
+    @Test
+    public void testFirstFound() {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<Budget> blockedBudget = new AtomicReference<>();
+        List<Supplier<? extends Synthesis>> members = new ArrayList<>();
+        members.add(() -> new BlockingSynthesis(started, blockedBudget));
+        members.add(() -> new FixedSynthesis(new CountDownLatch(0), Optional.empty()));
+        members.add(() -> new FixedSynthesis(started, leaf(IntConst.of(2))));
+        PortfolioSynthesis portfolio = new PortfolioSynthesis(members);
+        SynthesisResult result = portfolio.synthesize(new ArrayList<>(), HashMultiset.create(), Budget.unlimited());
+        assertTrue(result.isFound());
+        assertEquals(IntConst.of(2), result.getProgram().get().getLeft().getSemantics());
+        // the member still running is told to stop:
+        assertTrue(blockedBudget.get().isCancelled());
+    }
+
+    @Test
+    public void testTimedOut() {
+        List<Supplier<? extends Synthesis>> members = new ArrayList<>();
+        members.add(() -> new TimedOutSynthesis(Optional.empty()));
+        members.add(() -> new TimedOutSynthesis(leaf(IntConst.of(3))));
+        PortfolioSynthesis portfolio = new PortfolioSynthesis(members);
+        SynthesisResult result = portfolio.synthesize(new ArrayList<>(), HashMultiset.create(), Budget.ofMillis(0));
+        assertTrue(result.isTimedOut());
+        assertEquals(IntConst.of(3), result.getProgram().get().getLeft().getSemantics());
+    }
+
+    @Test
+    public void testNotFound() {
+        List<Supplier<? extends Synthesis>> members = new ArrayList<>();
+        members.add(() -> new FixedSynthesis(new CountDownLatch(0), Optional.empty()));
+        members.add(() -> { throw new UnsupportedOperationException(); });
+        PortfolioSynthesis portfolio = new PortfolioSynthesis(members);
+        assertFalse(portfolio.synthesize(new ArrayList<>(), HashMultiset.create()).isPresent());
+    }
+
+}
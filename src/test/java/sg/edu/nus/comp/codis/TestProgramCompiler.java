@@ -0,0 +1,124 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestProgramCompiler {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+
+    private final Hole condition = new Hole("c", BoolType.TYPE, Node.class);
+    private final Hole left = new Hole("l", IntType.TYPE, Node.class);
+    private final Hole right = new Hole("r", IntType.TYPE, Node.class);
+
+    private Program ite(Program conditionProgram, Program leftProgram, Program rightProgram) {
+        Map<Hole, Program> args = new HashMap<>();
+        args.put(condition, conditionProgram);
+        args.put(left, leftProgram);
+        args.put(right, rightProgram);
+        return Program.app(new Component(new ITE(condition, left, right)), args);
+    }
+
+    @Test
+    public void testAgreesWithEvaluator() {
+        Program isZero = Program.leaf(new Component(new Equal(y, IntConst.of(0))));
+        Program quotient = Program.leaf(new Component(new Div(x, y)));
+        Program program = ite(isZero, Program.leaf(new Component(x)), quotient);
+        ProgramCompiler compiler = new ProgramCompiler();
+        ProgramCompiler.CompiledProgram compiled = compiler.compile(program, Collections.emptyMap());
+        for (int i = -3; i <= 3; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(7));
+            assignment.put(y, IntConst.of(i));
+            assertEquals(Evaluator.evaluate(program.getSemantics(), assignment), compiled.apply(compiler.toInputs(assignment)));
+        }
+    }
+
+    @Test
+    public void testFragmentCache() {
+        Program isPositive = Program.leaf(new Component(new Greater(x, IntConst.of(0))));
+        Program variable = Program.leaf(new Component(x));
+        Program negated = Program.leaf(new Component(new Minus(x)));
+        ProgramCompiler compiler = new ProgramCompiler();
+        ProgramCompiler.CompiledProgram original = compiler.compile(ite(isPositive, variable, negated), Collections.emptyMap());
+        ProgramCompiler.CompiledProgram condition = compiler.compile(isPositive, Collections.emptyMap());
+        Program expanded = ite(isPositive, variable, Program.leaf(new Component(IntConst.of(0))));
+        assertNotSame(original, compiler.compile(expanded, Collections.emptyMap()));
+        assertSame(condition, compiler.compile(isPositive, Collections.emptyMap()));
+    }
+
+    @Test
+    public void testBoundedFragmentCache() {
+        ProgramCompiler compiler = new ProgramCompiler(16);
+        Node isPositive = new Greater(x, IntConst.of(0));
+        for (int i = 0; i < 1000; i++) {
+            // synthesizers decode each candidate into fresh components:
+            compiler.compile(ite(Program.leaf(new Component(isPositive)),
+                    Program.leaf(new Component(x)),
+                    Program.leaf(new Component(IntConst.of(i)))), Collections.emptyMap());
+            assertTrue(compiler.getCacheSize() <= 16);
+        }
+    }
+
+    @Test
+    public void testCompiledTester() {
+        Program program = Program.leaf(new Component(new Mult(x, IntConst.of(2))));
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(i == 1 ? 3 : 2 * i)));
+        }
+        List<TestCase> failing = new CompiledTester().getFailing(program, Collections.emptyMap(), tests);
+        assertEquals(Collections.singletonList(tests.get(1)), failing);
+    }
+
+    @Test
+    public void testOutputTypeMismatch() {
+        Program program = Program.leaf(new Component(new Greater(x, IntConst.of(0))));
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(5));
+        TestCase test = new AssignmentTestCase(assignment, IntConst.of(1));
+        List<TestCase> tests = Collections.singletonList(test);
+        assertEquals(tests, new CompiledTester().getFailing(program, Collections.emptyMap(), tests));
+        TestSuite suite = new TestSuite(tests);
+        assertEquals(new BitSet(), new CompiledTester().getPassing(program, Collections.emptyMap(), suite, suite.all()));
+    }
+
+    @Test
+    public void testPassingLanes() {
+        Program program = Program.leaf(new Component(new Add(x, IntConst.of(1))));
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<ProgramVariable, Node> assignment = new HashMap<>();
+            assignment.put(x, IntConst.of(i));
+            tests.add(new AssignmentTestCase(assignment, IntConst.of(i == 2 ? 0 : i + 1)));
+        }
+        tests.add(tests.get(2)); // same failing test in two lanes
+        TestSuite suite = new TestSuite(tests);
+        BitSet lanes = suite.all();
+        lanes.clear(3);
+
+        BitSet expected = new BitSet();
+        expected.set(0, 2);
+        assertEquals(expected, new EvaluationTester().getPassing(program, Collections.emptyMap(), suite, lanes));
+        assertEquals(expected, new CompiledTester().getPassing(program, Collections.emptyMap(), suite, lanes));
+        Tester tester = (p, v, t) -> new EvaluationTester().isPassing(p, v, t);
+        assertEquals(expected, tester.getPassing(program, Collections.emptyMap(), suite, lanes));
+    }
+
+}
@@ -0,0 +1,102 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestQueryLog {
+
+    private static String roundTrip(QueryRecord.Kind kind, List<Node> clauses, List<Node> assumptions) throws IOException {
+        Path path = Files.createTempFile("queries", ".smt2");
+        try {
+            try (QueryLog log = new QueryLog(path)) {
+                log.write(kind, "unsat", 42, clauses, assumptions);
+            }
+            List<QueryRecord> records = QueryLog.read(path);
+            assertEquals(1, records.size());
+            QueryRecord record = records.get(0);
+            assertEquals(kind, record.getKind());
+            assertEquals("unsat", record.getVerdict());
+            assertEquals(42, record.getMicros());
+            return QueryLog.format(kind, "unsat", 42, record.getClauses(), record.getAssumptions());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testIntegers() throws IOException {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable b = ProgramVariable.mkBool("b");
+        List<Node> clauses = Arrays.asList(
+                new Equal(new ITE(b, new Minus(x), new Sub(x, IntConst.of(-3))), IntConst.of(7)),
+                new Impl(b, new Not(new Less(x, IntConst.of(0)))));
+        List<Node> assumptions = Arrays.asList(b, new GreaterOrEqual(x, IntConst.of(2)));
+        String original = QueryLog.format(QueryRecord.Kind.GET_MODEL_OR_CORE, "unsat", 42, clauses, assumptions);
+        assertEquals(original, roundTrip(QueryRecord.Kind.GET_MODEL_OR_CORE, clauses, assumptions));
+    }
+
+    @Test
+    public void testBitvectors() throws IOException {
+        ProgramVariable x = ProgramVariable.mkBV("x", 8);
+        ProgramVariable y = ProgramVariable.mkBV("y", 8);
+        List<Node> left = Arrays.asList(new Equal(new BVAdd(x, BVConst.ofLong(200, 8)), y));
+        List<Node> right = Arrays.asList(new BVUnsignedLess(y, new BVShiftLeft(x, BVConst.ofLong(1, 8))));
+        String original = QueryLog.format(QueryRecord.Kind.GET_MODEL_OR_INTERPOLANT, "unsat", 42, left, right);
+        assertEquals(original, roundTrip(QueryRecord.Kind.GET_MODEL_OR_INTERPOLANT, left, right));
+    }
+
+    @Test
+    public void testSharedSubterms() throws IOException {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Node sum = new Add(x, IntConst.of(1));
+        Node product = new Mult(sum, sum);
+        List<Node> clauses = Arrays.asList(new Less(product, new Add(product, sum)));
+        String original = QueryLog.format(QueryRecord.Kind.IS_SATISFIABLE, "unsat", 42, clauses, Collections.emptyList());
+        assertTrue(original.contains("(let ((t1 (+ v1 1))) (let ((t2 (* t1 t1))) (< t2 (+ t2 t1))))"));
+        assertEquals(original, roundTrip(QueryRecord.Kind.IS_SATISFIABLE, clauses, Collections.emptyList()));
+    }
+
+    @Test
+    public void testInstantiatedClause() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(1));
+        TestCase test = new AssignmentTestCase(assignment, IntConst.of(2));
+        Node shared = new Add(x, y);
+        Node template = new Equal(new Mult(shared, shared), new Minus(x));
+        InstantiatedClause clause = new InstantiatedClause(template, test);
+        assertEquals(Printer.print(clause.getInstance()), Printer.print(clause));
+        // instantiated clauses are not let-bound, so the term is compared without sharing:
+        InstantiatedClause unshared = new InstantiatedClause(new Less(new Add(x, y), new Minus(x)), test);
+        VariableMarshaller marshaller = new VariableMarshaller();
+        assertEquals(Printer.printSMTLIB(unshared.getInstance(), marshaller), Printer.printSMTLIB(unshared, marshaller));
+    }
+
+    @Test
+    public void testToString() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable b = ProgramVariable.mkBool("b");
+        Node node = new AndN(Arrays.asList(b, new Less(new Add(x, IntConst.of(1)), IntConst.of(3)), new Not(b)));
+        assertEquals("(b & ((x + 1) < 3) & !b)", node.toString());
+        Node deep = x;
+        for (int i = 0; i < 100000; i++) {
+            deep = new Add(deep, IntConst.of(1));
+        }
+        assertEquals(Printer.print(deep), deep.toString());
+    }
+
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -53,5 +55,15 @@ public class TestSimplifier {
         assertEquals(new Sub(a, b), s);
     }
 
+    @Test
+    public void testFlattening() {
+        Parameter a = Parameter.mkBool("a");
+        Parameter b = Parameter.mkBool("b");
+        Parameter c = Parameter.mkBool("c");
+        Node n = new And(new And(a, BoolConst.TRUE), new AndN(Arrays.asList(b, c, a)));
+        Node s = Simplifier.simplify(n);
+        assertEquals(new AndN(Arrays.asList(a, b, c)), s);
+        assertEquals(BoolConst.TRUE, Simplifier.simplify(new OrN(Arrays.asList(a, new Or(b, new Not(a))))));
+    }
 
 }
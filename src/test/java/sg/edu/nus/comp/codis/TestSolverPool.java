@@ -0,0 +1,105 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSolverPool {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+
+    private List<Node> clauses() {
+        List<Node> clauses = new ArrayList<>();
+        clauses.add(new Equal(new Add(x, y), IntConst.of(3)));
+        clauses.add(new Less(x, y));
+        return clauses;
+    }
+
+    @Test
+    public void testReuse() {
+        SolverPool pool = new SolverPool(2, false);
+        MathSAT first = pool.checkout();
+        assertSame(first, pool.checkout());
+        pool.release(first);
+        pool.release(first);
+        MathSAT second = pool.checkout();
+        assertSame(first, second);
+        pool.release(second);
+        assertEquals(1, pool.getCreated());
+        assertEquals(2, pool.getCheckouts());
+    }
+
+    @Test
+    public void testReleaseNotHeld() {
+        SolverPool pool = new SolverPool(1, false);
+        MathSAT solver = pool.checkout();
+        pool.release(solver);
+        try {
+            pool.release(solver);
+            fail("solver is already released");
+        } catch (IllegalStateException e) {
+            assertEquals("solver is not held by this thread", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowing() throws Exception {
+        int threads = 8;
+        SolverPool pool = new SolverPool(2, false);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return pool.withSolver(solver -> {
+                    maximum.accumulateAndGet(held.incrementAndGet(), Math::max);
+                    try {
+                        return solver.isSatisfiable(clauses());
+                    } finally {
+                        held.decrementAndGet();
+                    }
+                });
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+        executor.shutdown();
+        assertTrue(maximum.get() <= 2);
+        assertTrue(pool.getCreated() <= 2);
+        assertEquals(threads, pool.getCheckouts());
+    }
+
+    @Test
+    public void testSymbolCapacity() {
+        SolverPool pool = new SolverPool(1, false);
+        pool.setSymbolCapacity(1);
+        assertTrue(pool.asSolver().isSatisfiable(clauses()));
+        MathSAT solver = pool.checkout();
+        assertEquals(0, solver.getSymbolTableSize());
+        assertTrue(solver.isSatisfiable(clauses()));
+        assertEquals(2, solver.getSymbolTableSize());
+        pool.release(solver);
+        solver = pool.checkout();
+        assertEquals(0, solver.getSymbolTableSize());
+        pool.release(solver);
+    }
+
+}
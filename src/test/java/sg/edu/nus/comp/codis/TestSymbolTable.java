@@ -0,0 +1,68 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestSymbolTable {
+
+    private static long config;
+
+    private long env;
+
+    private SymbolTable table;
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable b = ProgramVariable.mkBool("b");
+    private final ProgramVariable v = ProgramVariable.mkBV("v", 8);
+
+    @BeforeClass
+    public static void initConfig() {
+        config = MathSAT.createConfig(false);
+    }
+
+    @Before
+    public void initEnv() {
+        env = mathsat.api.msat_create_env(config);
+        table = new SymbolTable(env);
+    }
+
+    @After
+    public void destroyEnv() {
+        mathsat.api.msat_destroy_env(env);
+    }
+
+    @Test
+    public void testDeclare() {
+        SymbolTable.Symbol symbol = table.get(x);
+        assertSame(symbol, table.get(x));
+        assertEquals(x, symbol.getVariable());
+        assertEquals(IntType.TYPE, symbol.getType());
+        assertEquals(BoolType.TYPE, table.get(b).getType());
+        assertEquals(new BVType(8), table.get(v).getType());
+        assertEquals(3, table.size());
+        assertEquals(new HashSet<>(Arrays.asList(x, b, v)), table.getVariables());
+    }
+
+    @Test
+    public void testReverseLookup() {
+        SymbolTable.Symbol first = table.get(x);
+        SymbolTable.Symbol second = table.get(v);
+        assertEquals(x, table.toVariable("v1"));
+        assertEquals(v, table.toVariable("v2"));
+        assertNull(table.toVariable("v3"));
+        assertSame(first, table.ofTerm(first.getTerm()));
+        assertSame(second, table.ofTerm(second.getTerm()));
+        assertNull(table.ofTerm(mathsat.api.msat_make_true(env)));
+    }
+
+}
@@ -0,0 +1,117 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestTraversal {
+
+    private static final int DEPTH = 100000;
+
+    @Test
+    public void testDeepConjunction() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        List<Node> clauses = new ArrayList<>();
+        for (int i = 0; i < DEPTH; i++) {
+            clauses.add(new Less(x, IntConst.of(i)));
+        }
+        Node conjunction = chain(clauses);
+        assertEquals(1, Traverse.collectByType(conjunction, Variable.class).size());
+        Map<Variable, Node> mapping = new HashMap<>();
+        mapping.put(x, y);
+        Node substituted = Traverse.substitute(conjunction, mapping);
+        assertTrue(substituted.contains(y));
+        assertEquals(conjunction.hashCode(), chain(clauses).hashCode());
+        assertEquals(BoolType.TYPE, TypeInference.typeOf(conjunction));
+        assertTrue(NodeCounter.count(conjunction) > DEPTH);
+    }
+
+    @Test
+    public void testDeepEquality() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        List<Node> clauses = new ArrayList<>();
+        for (int i = 0; i < DEPTH; i++) {
+            clauses.add(new Less(x, IntConst.of(i)));
+        }
+        Node first = chain(clauses);
+        Node second = chain(clauses);
+        assertEquals(first, second);
+        Set<Node> nodes = new HashSet<>();
+        nodes.add(first);
+        assertTrue(nodes.contains(second));
+        clauses.set(0, new Less(x, IntConst.of(-1)));
+        Node changed = chain(clauses);
+        assertFalse(first.equals(changed));
+        assertFalse(nodes.contains(changed));
+        assertFalse(first.equals(new Or(((And) first).getLeft(), ((And) first).getRight())));
+    }
+
+    @Test
+    public void testDeepBitvectorTerm() {
+        Node term = ProgramVariable.mkBV("x", 8);
+        for (int i = 0; i < DEPTH; i++) {
+            term = new BVAdd(term, BVConst.ofLong(1, 8));
+        }
+        assertEquals(new BVType(8), TypeInference.typeOf(term));
+    }
+
+    @Test
+    public void testSharedSubterms() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkInt("y");
+        Node term = x;
+        for (int i = 0; i < 64; i++) {
+            term = new Add(term, term); // 2^64 paths, 65 distinct subterms
+        }
+        Map<Variable, Node> mapping = new HashMap<>();
+        mapping.put(x, y);
+        Add substituted = (Add) Traverse.substitute(term, mapping);
+        assertSame(substituted.getLeft(), substituted.getRight());
+        Map<Variable, Node> unrelated = new HashMap<>();
+        unrelated.put(ProgramVariable.mkInt("z"), y);
+        Node interned = NodeFactory.intern(term);
+        assertSame(interned, Traverse.substitute(interned, unrelated));
+    }
+
+    private static Node chain(List<Node> clauses) {
+        Node node = BoolConst.TRUE;
+        for (Node clause : clauses) {
+            node = new And(node, clause);
+        }
+        return node;
+    }
+
+    @Test
+    public void testInstantiatedClause() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Parameter p = new Parameter("p", IntType.TYPE);
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(1));
+        TestCase test = new AssignmentTestCase(assignment, IntConst.of(2));
+        Node template = new Equal(new Add(x, p), IntConst.of(2));
+        InstantiatedClause clause = new InstantiatedClause(template, test);
+        Node instance = clause.getInstance();
+        assertEquals(new HashSet<>(Traverse.collectByType(instance, Variable.class)),
+                new HashSet<>(Traverse.collectByType(clause, Variable.class)));
+        assertEquals(new HashSet<>(Traverse.collectByType(instance, Add.class)),
+                new HashSet<>(Traverse.collectByType(clause, Add.class)));
+        Map<Variable, Node> mapping = new HashMap<>();
+        mapping.put(p, IntConst.of(1));
+        assertEquals(Traverse.substitute(instance, mapping), Traverse.substitute(clause, mapping));
+        assertEquals(NodeCounter.count(instance), NodeCounter.count(clause));
+    }
+
+}
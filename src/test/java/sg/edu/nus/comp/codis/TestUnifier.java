@@ -7,7 +7,11 @@ import sg.edu.nus.comp.codis.ast.IntType;
 import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.theory.Add;
 import sg.edu.nus.comp.codis.ast.theory.IntConst;
+import sg.edu.nus.comp.codis.ast.theory.UIF;
+import sg.edu.nus.comp.codis.ast.theory.UIFApplication;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 
@@ -66,4 +70,16 @@ public class TestUnifier {
         assertTrue(!unifier.isPresent());
     }
 
+    @Test
+    public void testUIFArgumentOrder() {
+        UIF f = new UIF("f", IntType.TYPE, new ArrayList<>(Arrays.asList(IntType.TYPE, IntType.TYPE)));
+        Hole h = new Hole("i", IntType.TYPE, IntConst.class);
+        Node n1 = new UIFApplication(f, new ArrayList<>(Arrays.asList(h, IntConst.of(2))));
+        UIFApplication n2 = new UIFApplication(f, new ArrayList<>(Arrays.asList(IntConst.of(1), IntConst.of(2))));
+        Optional<Map<Hole, Node>> unifier = Unifier.unify(n1, n2);
+        assertTrue(unifier.isPresent());
+        assertEquals(IntConst.of(1), unifier.get().get(h));
+        assertEquals(IntConst.of(1), n2.getArg(0));
+    }
+
 }